@@ -0,0 +1,226 @@
+package net.ontopia.presto.spi.jackson;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.ontopia.presto.spi.PrestoField;
+import net.ontopia.presto.spi.PrestoTopic;
+import net.ontopia.presto.spi.utils.PrestoDefaultChangeSet.Change;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Wraps a JacksonDataProvider with a JacksonTopicCache. Topics are
+ * invalidated in the cache when they are created, updated or deleted
+ * through this data provider. The resolver is created by the wrapped
+ * data provider, see JacksonDataProvider.createResolver.
+ * <p>
+ * Caching is opt-in. To enable it, keep one JacksonTopicCache per database
+ * for the lifetime of the application. Then wrap the data provider that
+ * EditorResource.createPresto passes to Presto, as DemoEditorResource in
+ * presto-webdemo does:
+ * <pre>
+ * new CachingJacksonDataProvider(dataProvider, topicCache)
+ * </pre>
+ * Only use this when all writes to the database go through caching data
+ * providers sharing the same cache, as other writes are not seen. Use
+ * JacksonIdentityMapDataProvider.unwrap to get at the wrapped data provider.
+ */
+public class CachingJacksonDataProvider extends JacksonDataProvider {
+
+    private final JacksonDataProvider dataProvider;
+    private final JacksonTopicCache cache;
+
+    public CachingJacksonDataProvider(JacksonDataProvider dataProvider, JacksonTopicCache cache) {
+        super(dataProvider);
+        this.dataProvider = dataProvider;
+        this.cache = cache;
+    }
+
+    public JacksonDataProvider getDataProvider() {
+        return dataProvider;
+    }
+
+    public JacksonTopicCache getCache() {
+        return cache;
+    }
+
+    @Override
+    protected JacksonDataStrategy createDataStrategy(ObjectMapper mapper) {
+        return dataProvider.getDataStrategy();
+    }
+
+    @Override
+    protected IdentityStrategy createIdentityStrategy() {
+        return dataProvider.getIdentityStrategy();
+    }
+
+    @Override
+    public String getProviderId() {
+        return dataProvider.getProviderId();
+    }
+
+    @Override
+    public PrestoTopic getTopicById(String topicId) {
+        if (topicId == null) {
+            return dataProvider.getTopicById(topicId);
+        }
+        ObjectNode doc = cache.get(topicId);
+        if (doc != null) {
+            return existing(doc);
+        }
+        long generation = cache.getGeneration(topicId);
+        return cached(dataProvider.getTopicById(topicId), generation);
+    }
+
+    @Override
+    public Collection<PrestoTopic> getTopicsByIds(Collection<String> topicIds) {
+        Map<String,PrestoTopic> found = new HashMap<String,PrestoTopic>(topicIds.size());
+        Map<String,Long> missingIds = getMissingIds(topicIds, found);
+        if (!missingIds.isEmpty()) {
+            for (PrestoTopic topic : dataProvider.getTopicsByIds(missingIds.keySet())) {
+                found.put(topic.getId(), cached(topic, missingIds.get(topic.getId())));
+            }
+        }
+        return getTopics(topicIds, found);
+    }
+
+    @Override
+    public Collection<PrestoTopic> getTopicStubsByIds(Collection<String> topicIds) {
+        Map<String,PrestoTopic> found = new HashMap<String,PrestoTopic>(topicIds.size());
+        Map<String,Long> missingIds = getMissingIds(topicIds, found);
+        if (!missingIds.isEmpty()) {
+            // stubs are not cached, but load their documents through the cache
+            for (PrestoTopic topic : dataProvider.getTopicStubsByIds(missingIds.keySet())) {
+                if (topic instanceof JacksonStubTopic) {
+                    found.put(topic.getId(), stub(((JacksonStubTopic)topic).data));
+                } else {
+                    found.put(topic.getId(), cached(topic, missingIds.get(topic.getId())));
+                }
+            }
+        }
+        return getTopics(topicIds, found);
+    }
+
+    // looks up cached topics, returning the generations of the ones missing
+    private Map<String,Long> getMissingIds(Collection<String> topicIds, Map<String,PrestoTopic> found) {
+        Map<String,Long> missingIds = new LinkedHashMap<String,Long>();
+        for (String topicId : topicIds) {
+            ObjectNode doc = cache.get(topicId);
+            if (doc != null) {
+                found.put(topicId, existing(doc));
+            } else {
+                missingIds.put(topicId, cache.getGeneration(topicId));
+            }
+        }
+        return missingIds;
+    }
+
+    private Collection<PrestoTopic> getTopics(Collection<String> topicIds, Map<String,PrestoTopic> found) {
+        Collection<PrestoTopic> result = new ArrayList<PrestoTopic>(topicIds.size());
+        for (String topicId : topicIds) {
+            PrestoTopic topic = found.get(topicId);
+            if (topic != null) {
+                result.add(topic);
+            }
+        }
+        return result;
+    }
+
+    // rebind topic to this data provider and remember its document
+    private PrestoTopic cached(PrestoTopic topic, Long generation) {
+        if (topic instanceof JacksonTopic && !topic.isLazy() && !topic.isInline()) {
+            ObjectNode doc = ((JacksonTopic)topic).getData();
+            if (generation != null) {
+                cache.put(topic.getId(), doc, generation);
+            }
+            return existing(doc);
+        }
+        return topic;
+    }
+
+    @Override
+    protected boolean isStubField(PrestoField field) {
+        return dataProvider.isStubField(field);
+    }
+
+    @Override
+    public Collection<? extends Object> getAvailableFieldValues(PrestoTopic topic, PrestoField field, String query) {
+        return dataProvider.getAvailableFieldValues(topic, field, query);
+    }
+
+    @Override
+    public void create(PrestoTopic topic) {
+        try {
+            dataProvider.create(topic);
+        } finally {
+            invalidate(topic);
+        }
+    }
+
+    @Override
+    public void update(PrestoTopic topic) {
+        try {
+            dataProvider.update(topic);
+        } finally {
+            invalidate(topic);
+        }
+    }
+
+    @Override
+    public void update(PrestoTopic topic, Collection<PrestoField> updatedFields) {
+        try {
+            dataProvider.update(topic, updatedFields);
+        } finally {
+            invalidate(topic);
+        }
+    }
+
+    @Override
+    public boolean delete(PrestoTopic topic) {
+        try {
+            return dataProvider.delete(topic);
+        } finally {
+            invalidate(topic);
+        }
+    }
+
+    @Override
+    public void updateBulk(List<Change> changes) {
+        try {
+            dataProvider.updateBulk(changes);
+        } finally {
+            for (Change change : changes) {
+                invalidate(change.getTopic());
+            }
+        }
+    }
+
+    private void invalidate(PrestoTopic topic) {
+        String topicId = topic.getId();
+        if (topicId != null) {
+            cache.invalidate(topicId);
+        }
+    }
+
+    @Override
+    public Object deserializeFieldValue(PrestoField field, Object value) {
+        return dataProvider.deserializeFieldValue(field, value);
+    }
+
+    @Override
+    public Object serializeFieldValue(PrestoField field, Object value) {
+        return dataProvider.serializeFieldValue(field, value);
+    }
+
+    @Override
+    public void close() {
+        dataProvider.close();
+    }
+
+}
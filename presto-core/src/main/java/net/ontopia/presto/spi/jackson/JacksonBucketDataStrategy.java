@@ -118,6 +118,16 @@ public abstract class JacksonBucketDataStrategy implements JacksonDataStrategy {
         }
     }
     
+    /**
+     * Returns true if field values are written to the property named by the
+     * actual field id in the write bucket, so that data providers may store
+     * only the updated fields. Subclasses that write field values elsewhere
+     * must return false.
+     */
+    public boolean supportsPartialUpdate() {
+        return true;
+    }
+
     public ObjectNode getBucket(String bucketId, ObjectNode doc) {
         return (ObjectNode)doc.get(bucketId);
     }
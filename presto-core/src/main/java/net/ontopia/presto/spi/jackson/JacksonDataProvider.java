@@ -18,14 +18,21 @@ import net.ontopia.presto.spi.PrestoType;
 import net.ontopia.presto.spi.resolve.PrestoResolver;
 import net.ontopia.presto.spi.utils.PrestoDefaultChangeSet;
 import net.ontopia.presto.spi.utils.PrestoDefaultChangeSet.Change;
-import net.ontopia.presto.spi.utils.PrestoDefaultChangeSet.DefaultDataProvider;
 import net.ontopia.presto.spi.utils.PrestoDefaultChangeSet.DefaultTopic;
+import net.ontopia.presto.spi.utils.PrestoDefaultChangeSet.PartialUpdateDataProvider;
 import net.ontopia.presto.spi.utils.Utils;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
-public abstract class JacksonDataProvider implements DefaultDataProvider {
+/**
+ * Base class for data providers storing topics as Jackson documents.
+ * Implementations must be safe for concurrent reads, as resolvers may
+ * resolve their branches on several threads.
+ * Writes happen on one thread through change sets.
+ */
+public abstract class JacksonDataProvider implements PartialUpdateDataProvider {
     
     protected final ObjectMapper mapper;
     protected final JacksonDataStrategy dataStrategy;
@@ -43,8 +50,33 @@ public abstract class JacksonDataProvider implements DefaultDataProvider {
         this.resolver = createResolver();
     }
 
+    // shares the configuration of another data provider, used by decorators
+    protected JacksonDataProvider(JacksonDataProvider dataProvider) {
+        this.schemaProvider = dataProvider.schemaProvider;
+        this.mapper = dataProvider.mapper;
+        this.dataStrategy = dataProvider.dataStrategy;
+        this.inlineDataStrategy = dataProvider.inlineDataStrategy;
+        this.identityStrategy = dataProvider.identityStrategy;
+        this.resolver = dataProvider.createResolver(this, getVirtualFieldCacheSize());
+    }
+
     protected PrestoResolver createResolver() {
-        return new PrestoResolver(this, schemaProvider);
+        return createResolver(this, getVirtualFieldCacheSize());
+    }
+
+    // the number of virtual field values the resolver remembers, see PrestoResolver
+    protected int getVirtualFieldCacheSize() {
+        return 0;
+    }
+
+    /**
+     * Creates a resolver that looks topics up through the given data provider,
+     * which is this data provider or a decorator of it. Override this rather
+     * than createResolver() to use another resolver, so that decorators use
+     * it too.
+     */
+    protected PrestoResolver createResolver(JacksonDataProvider dataProvider, int virtualFieldCacheSize) {
+        return new PrestoResolver(dataProvider, schemaProvider, virtualFieldCacheSize);
     }
 
     protected ObjectMapper createObjectMapper() {
@@ -85,6 +117,33 @@ public abstract class JacksonDataProvider implements DefaultDataProvider {
         return doc == null ? null : new JacksonTopic(this, doc);
     }
 
+    protected JacksonTopic stub(ObjectNode doc) {
+        return doc == null ? null : new JacksonStubTopic(this, doc);
+    }
+
+    /**
+     * Returns topics that only carry id, type and name, loading the rest of
+     * the document on demand. Data providers that can fetch partial documents
+     * should override this; the default fetches complete documents.
+     */
+    public Collection<PrestoTopic> getTopicStubsByIds(Collection<String> topicIds) {
+        return getTopicsByIds(topicIds);
+    }
+
+    /**
+     * Returns true if the values of the reference field are fetched as stubs.
+     * A stub fetches its complete document when anything but id, type or name
+     * is read, so this is only enabled for fields with the extra property
+     * "stubValues" set to true. Fields that are embedded never use stubs.
+     */
+    protected boolean isStubField(PrestoField field) {
+        if (field.isEmbedded()) {
+            return false;
+        }
+        ObjectNode extra = (ObjectNode)field.getExtra();
+        return extra != null && extra.path("stubValues").asBoolean(false);
+    }
+
     @Override
     public DefaultTopic newInstance(PrestoType type, String topicId) {
         return new JacksonTopic(this, createObjectNode(type, topicId));
@@ -121,12 +180,35 @@ public abstract class JacksonDataProvider implements DefaultDataProvider {
 
     private static final class JacksonChangeSet extends PrestoDefaultChangeSet {
         
+        private final JacksonDataProvider dataProvider;
+
         public JacksonChangeSet(JacksonDataProvider dataProvider, ChangeSetHandler handler) {
             super(dataProvider, handler);
+            this.dataProvider = dataProvider;
+        }
+
+        @Override
+        public void save() {
+            try {
+                super.save();
+            } finally {
+                // memoized virtual field values may be stale now
+                dataProvider.getResolver().clearVirtualFields();
+            }
         }
 
     }
     
+    /**
+     * Updates the topic knowing which fields were changed. Data providers that
+     * can write partial documents should override this; the default writes
+     * the whole document.
+     */
+    @Override
+    public void update(PrestoTopic topic, Collection<PrestoField> updatedFields) {
+        update(topic);
+    }
+
     @Override
     public void updateBulk(List<Change> changes) {
         for (Change c : changes) {
@@ -139,7 +221,7 @@ public abstract class JacksonDataProvider implements DefaultDataProvider {
                 create(topic);
                 break;
             case UPDATE:
-                update(topic);
+                update(topic, c.getUpdatedFields());
                 break;
             case DELETE:
                 delete(topic);
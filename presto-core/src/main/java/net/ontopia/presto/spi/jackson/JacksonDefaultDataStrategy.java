@@ -78,4 +78,14 @@ public class JacksonDefaultDataStrategy implements JacksonDataStrategy {
         doc.remove(field.getActualId());
     }
 
+    /**
+     * Returns true if field values are written to the top-level property
+     * named by the actual field id, so that data providers may store only
+     * the updated fields. Subclasses that write field values elsewhere must
+     * return false.
+     */
+    public boolean supportsPartialUpdate() {
+        return true;
+    }
+
 }
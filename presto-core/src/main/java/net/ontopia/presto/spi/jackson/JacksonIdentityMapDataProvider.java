@@ -0,0 +1,243 @@
+package net.ontopia.presto.spi.jackson;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.ontopia.presto.spi.PrestoDataProvider;
+import net.ontopia.presto.spi.PrestoField;
+import net.ontopia.presto.spi.PrestoTopic;
+import net.ontopia.presto.spi.utils.PrestoDefaultChangeSet.Change;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Identity map for JacksonDataProviders, remembering topics by id for the
+ * lifetime of a session. Create one per request. Topics are rebound to this
+ * data provider, so references followed from them, and from the resolver of
+ * this data provider, are looked up in the identity map too. The map is
+ * cleared whenever topics are created, updated or deleted through it.
+ */
+public class JacksonIdentityMapDataProvider extends JacksonDataProvider {
+
+    // the number of virtual field values the resolver of a session remembers
+    public static final int VIRTUAL_FIELD_CACHE_SIZE = 1000;
+
+    private final JacksonDataProvider dataProvider;
+
+    private final ConcurrentMap<String,PrestoTopic> topics = new ConcurrentHashMap<String,PrestoTopic>();
+
+    public JacksonIdentityMapDataProvider(JacksonDataProvider dataProvider) {
+        super(dataProvider);
+        this.dataProvider = dataProvider;
+    }
+
+    public JacksonDataProvider getDataProvider() {
+        return dataProvider;
+    }
+
+    /**
+     * Returns the data provider behind the identity map and the topic cache, 
+     * if any. For code that needs the concrete data provider class.
+     */
+    public static PrestoDataProvider unwrap(PrestoDataProvider dataProvider) {
+        while (true) {
+            if (dataProvider instanceof JacksonIdentityMapDataProvider) {
+                dataProvider = ((JacksonIdentityMapDataProvider)dataProvider).getDataProvider();
+            } else if (dataProvider instanceof CachingJacksonDataProvider) {
+                dataProvider = ((CachingJacksonDataProvider)dataProvider).getDataProvider();
+            } else {
+                return dataProvider;
+            }
+        }
+    }
+
+    public void clear() {
+        topics.clear();
+        getResolver().clearVirtualFields();
+    }
+
+    @Override
+    protected int getVirtualFieldCacheSize() {
+        return VIRTUAL_FIELD_CACHE_SIZE;
+    }
+
+    @Override
+    protected JacksonDataStrategy createDataStrategy(ObjectMapper mapper) {
+        return dataProvider.getDataStrategy();
+    }
+
+    @Override
+    protected IdentityStrategy createIdentityStrategy() {
+        return dataProvider.getIdentityStrategy();
+    }
+
+    @Override
+    public String getProviderId() {
+        return dataProvider.getProviderId();
+    }
+
+    @Override
+    public PrestoTopic getTopicById(String topicId) {
+        if (topicId == null) {
+            return dataProvider.getTopicById(topicId);
+        }
+        PrestoTopic topic = topics.get(topicId);
+        if (topic == null) {
+            topic = remember(dataProvider.getTopicById(topicId));
+        }
+        return topic;
+    }
+
+    @Override
+    public Collection<PrestoTopic> getTopicsByIds(Collection<String> topicIds) {
+        Map<String,PrestoTopic> found = new HashMap<String,PrestoTopic>(topicIds.size());
+        Set<String> missingIds = new LinkedHashSet<String>();
+        for (String topicId : topicIds) {
+            if (topicId == null) {
+                continue;
+            }
+            PrestoTopic topic = topics.get(topicId);
+            if (topic != null) {
+                found.put(topicId, topic);
+            } else {
+                missingIds.add(topicId);
+            }
+        }
+        if (!missingIds.isEmpty()) {
+            for (PrestoTopic topic : dataProvider.getTopicsByIds(missingIds)) {
+                found.put(topic.getId(), remember(topic));
+            }
+        }
+        return getTopics(topicIds, found);
+    }
+
+    @Override
+    public Collection<PrestoTopic> getTopicStubsByIds(Collection<String> topicIds) {
+        Map<String,PrestoTopic> found = new HashMap<String,PrestoTopic>(topicIds.size());
+        Set<String> missingIds = new LinkedHashSet<String>();
+        for (String topicId : topicIds) {
+            if (topicId == null) {
+                continue;
+            }
+            PrestoTopic topic = topics.get(topicId);
+            if (topic != null) {
+                found.put(topicId, topic);
+            } else {
+                missingIds.add(topicId);
+            }
+        }
+        if (!missingIds.isEmpty()) {
+            // stubs are not remembered, but load their documents through the identity map
+            for (PrestoTopic topic : dataProvider.getTopicStubsByIds(missingIds)) {
+                if (topic instanceof JacksonStubTopic) {
+                    found.put(topic.getId(), stub(((JacksonStubTopic)topic).data));
+                } else {
+                    found.put(topic.getId(), remember(topic));
+                }
+            }
+        }
+        return getTopics(topicIds, found);
+    }
+
+    private Collection<PrestoTopic> getTopics(Collection<String> topicIds, Map<String,PrestoTopic> found) {
+        Collection<PrestoTopic> result = new ArrayList<PrestoTopic>(topicIds.size());
+        for (String topicId : topicIds) {
+            PrestoTopic topic = found.get(topicId);
+            if (topic != null) {
+                result.add(topic);
+            }
+        }
+        return result;
+    }
+
+    // rebind topic to this data provider and remember it by id
+    private PrestoTopic remember(PrestoTopic topic) {
+        if (topic instanceof JacksonTopic && !topic.isLazy() && !topic.isInline()) {
+            ObjectNode doc = ((JacksonTopic)topic).getData();
+            PrestoTopic result = existing(doc);
+            PrestoTopic existing = topics.putIfAbsent(result.getId(), result);
+            return existing == null ? result : existing;
+        }
+        return topic;
+    }
+
+    @Override
+    protected boolean isStubField(PrestoField field) {
+        return dataProvider.isStubField(field);
+    }
+
+    @Override
+    public Collection<? extends Object> getAvailableFieldValues(PrestoTopic topic, PrestoField field, String query) {
+        return dataProvider.getAvailableFieldValues(topic, field, query);
+    }
+
+    @Override
+    public void create(PrestoTopic topic) {
+        try {
+            dataProvider.create(topic);
+        } finally {
+            clear();
+        }
+    }
+
+    @Override
+    public void update(PrestoTopic topic) {
+        try {
+            dataProvider.update(topic);
+        } finally {
+            clear();
+        }
+    }
+
+    @Override
+    public void update(PrestoTopic topic, Collection<PrestoField> updatedFields) {
+        try {
+            dataProvider.update(topic, updatedFields);
+        } finally {
+            clear();
+        }
+    }
+
+    @Override
+    public boolean delete(PrestoTopic topic) {
+        try {
+            return dataProvider.delete(topic);
+        } finally {
+            clear();
+        }
+    }
+
+    @Override
+    public void updateBulk(List<Change> changes) {
+        try {
+            dataProvider.updateBulk(changes);
+        } finally {
+            clear();
+        }
+    }
+
+    @Override
+    public Object deserializeFieldValue(PrestoField field, Object value) {
+        return dataProvider.deserializeFieldValue(field, value);
+    }
+
+    @Override
+    public Object serializeFieldValue(PrestoField field, Object value) {
+        return dataProvider.serializeFieldValue(field, value);
+    }
+
+    @Override
+    public void close() {
+        clear();
+        dataProvider.close();
+    }
+
+}
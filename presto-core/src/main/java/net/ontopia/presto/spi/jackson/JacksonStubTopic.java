@@ -0,0 +1,68 @@
+package net.ontopia.presto.spi.jackson;
+
+import net.ontopia.presto.spi.PrestoField;
+import net.ontopia.presto.spi.PrestoTopic;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Topic that only holds the id, type and name of a document. The full
+ * document is loaded the first time anything else is asked for.
+ */
+public class JacksonStubTopic extends JacksonTopic {
+
+    private volatile ObjectNode fullData;
+
+    public JacksonStubTopic(JacksonDataProvider dataProvider, ObjectNode stubData) {
+        super(dataProvider, stubData);
+    }
+
+    @Override
+    public ObjectNode getData() {
+        ObjectNode result = fullData;
+        if (result == null) {
+            synchronized (this) {
+                result = fullData;
+                if (result == null) {
+                    result = loadData();
+                    fullData = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private ObjectNode loadData() {
+        PrestoTopic topic = dataProvider.getTopicById(getId());
+        if (topic instanceof JacksonTopic) {
+            return ((JacksonTopic)topic).getData();
+        }
+        return data;
+    }
+
+    @Override
+    public String getId() {
+        return getDataStrategy().getId(data);
+    }
+
+    @Override
+    public String getName() {
+        return getDataStrategy().getName(data);
+    }
+
+    @Override
+    public String getName(PrestoField field) {
+        return getDataStrategy().getName(data, field);
+    }
+
+    @Override
+    public String getTypeId() {
+        return getDataStrategy().getTypeId(data);
+    }
+
+    @Override
+    public String toString() {
+        return "StubTopic[" + getId() + " " + getName() + "]";
+    }
+
+}
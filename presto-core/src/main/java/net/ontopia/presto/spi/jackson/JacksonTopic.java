@@ -2,6 +2,7 @@ package net.ontopia.presto.spi.jackson;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -102,6 +103,31 @@ public class JacksonTopic implements DefaultTopic {
     protected void clearFieldValue(PrestoField field) {
         getDataStrategy().clearFieldValue(getData(), field);
     }
+
+    /**
+     * Returns true if the topics referenced by the field are fetched as stubs.
+     */
+    public boolean isStubField(PrestoField field) {
+        return dataProvider.isStubField(field);
+    }
+
+    /**
+     * Returns the ids stored in a non-inline reference field without
+     * looking up the topics. Used to batch lookups across many topics.
+     */
+    public List<String> getStoredTopicIds(PrestoField field) {
+        ArrayNode fieldNode = getFieldValue(field);
+        if (fieldNode == null) {
+            return Collections.emptyList();
+        }
+        List<String> topicIds = new ArrayList<String>(fieldNode.size());
+        for (JsonNode value : fieldNode) {
+            if (value.isTextual()) {
+                topicIds.add(value.textValue());
+            }
+        }
+        return topicIds;
+    }
     
     // methods for retrieving the state of a topic
 
@@ -167,7 +193,11 @@ public class JacksonTopic implements DefaultTopic {
                             topicIds.add(value.textValue());
                         }
                     }
-                    values.addAll(dataProvider.getTopicsByIds(topicIds));
+                    if (dataProvider.isStubField(field)) {
+                        values.addAll(dataProvider.getTopicStubsByIds(topicIds));
+                    } else {
+                        values.addAll(dataProvider.getTopicsByIds(topicIds));
+                    }
                 }
             } else {
                 for (int i=start; i < end; i ++) {
@@ -362,7 +392,7 @@ public class JacksonTopic implements DefaultTopic {
     
     @Override
     public Object getInternalData() {
-        return data;
+        return getData();
     }
     
 }
@@ -0,0 +1,152 @@
+package net.ontopia.presto.spi.jackson;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Bounded LRU cache of topic documents, intended to be shared across
+ * requests. Documents are stored and handed out as deep copies, so
+ * callers are free to modify what they get back. Use one cache per
+ * database.
+ *
+ * Every invalidation gives the topic a new generation. Readers capture
+ * the generation before reading from the backend, and the document is
+ * only cached if the topic was not invalidated in the meantime.
+ */
+public class JacksonTopicCache {
+
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    private final int maxSize;
+    private final Map<String,ObjectNode> documents;
+    private final Map<String,Long> generations;
+
+    private long generation;
+    private long evictedGeneration;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public JacksonTopicCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public JacksonTopicCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.documents = new LinkedHashMap<String,ObjectNode>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,ObjectNode> eldest) {
+                if (size() > JacksonTopicCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.generations = new LinkedHashMap<String,Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,Long> eldest) {
+                if (size() > JacksonTopicCache.this.maxSize) {
+                    // forgotten topics share the generation of the last one forgotten
+                    evictedGeneration = Math.max(evictedGeneration, eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public ObjectNode get(String topicId) {
+        ObjectNode doc;
+        synchronized (documents) {
+            doc = documents.get(topicId);
+        }
+        if (doc == null) {
+            misses.incrementAndGet();
+            return null;
+        } else {
+            hits.incrementAndGet();
+            return doc.deepCopy();
+        }
+    }
+
+    public void put(String topicId, ObjectNode doc) {
+        ObjectNode snapshot = doc.deepCopy();
+        synchronized (documents) {
+            documents.put(topicId, snapshot);
+        }
+    }
+
+    /**
+     * Caches the document only if the topic has not been invalidated since
+     * the given generation was captured. Returns true if it was cached.
+     */
+    public boolean put(String topicId, ObjectNode doc, long generation) {
+        ObjectNode snapshot = doc.deepCopy();
+        synchronized (documents) {
+            if (getGeneration(topicId) != generation) {
+                return false;
+            }
+            documents.put(topicId, snapshot);
+            return true;
+        }
+    }
+
+    /**
+     * Returns the current generation of the topic. Capture it before reading
+     * the document from the backend and pass it on to put.
+     */
+    public long getGeneration(String topicId) {
+        synchronized (documents) {
+            Long result = generations.get(topicId);
+            return result == null ? evictedGeneration : result;
+        }
+    }
+
+    public void invalidate(String topicId) {
+        synchronized (documents) {
+            documents.remove(topicId);
+            generations.put(topicId, ++generation);
+        }
+    }
+
+    public void clear() {
+        synchronized (documents) {
+            documents.clear();
+            generations.clear();
+            evictedGeneration = ++generation;
+        }
+    }
+
+    public int getSize() {
+        synchronized (documents) {
+            return documents.size();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "JacksonTopicCache[size=" + getSize() + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+    }
+
+}
@@ -26,7 +26,16 @@ public class PrestoCoalesceResolver extends PrestoFieldResolver {
 
         if (config != null && config.has("resolve")) {
             JsonNode resolveParentConfig = config.get("resolve");
-            if (resolveParentConfig.isArray()) {
+            if (resolveParentConfig.isArray() && PrestoResolverBranches.isParallel(config)) {
+                PrestoResolverBranches branches = PrestoResolverBranches.submit(objects, field, projection, resolveParentConfig, prestoResolver, variableResolver, config);
+                for (int i=0; i < branches.size(); i++) {
+                    result = branches.get(i).getValues();
+                    if (result != null && !result.isEmpty()) {
+                        branches.cancel(); // later branches are not needed
+                        break;
+                    }
+                }
+            } else if (resolveParentConfig.isArray()) {
                 for (JsonNode resolveConfig : resolveParentConfig) {
                     PagedValues values = prestoResolver.resolveValues(objects, field, projection, resolveConfig, variableResolver);
                     result = values.getValues();
@@ -0,0 +1,164 @@
+package net.ontopia.presto.spi.resolve;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.ontopia.presto.spi.PrestoField;
+import net.ontopia.presto.spi.PrestoTopic;
+import net.ontopia.presto.spi.PrestoTopic.PagedValues;
+import net.ontopia.presto.spi.PrestoTopic.Projection;
+import net.ontopia.presto.spi.utils.PrestoPagedValues;
+import net.ontopia.presto.spi.utils.PrestoVariableResolver;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Merges the values of several resolve configs using set algebra, e.g.
+ * { "type" : "merge", 
+ *   "expression" : { "UNION" : [ "red", { "INTERSECTION" : [ "blue", "green" ] } ] },
+ *   "branches" : { "red" : [ ... ], "blue" : [ ... ], "green" : [ ... ] } }.
+ * Operands are either branch names or inline resolve arrays. Topics are
+ * compared by id. The projection is applied to the merged result.
+ */
+public class PrestoMergeResolver extends PrestoFieldResolver {
+
+    @Override
+    public PagedValues resolve(Collection<? extends Object> objects,
+            PrestoField field, boolean isReference, Projection projection, 
+            PrestoResolver prestoResolver, PrestoVariableResolver variableResolver) {
+
+        ObjectNode config = getConfig();
+
+        Map<Object,Object> rs = Collections.emptyMap();
+        if (config != null && config.has("expression")) {
+            Evaluator evaluator = new Evaluator(objects, field, prestoResolver, variableResolver, config.path("branches"));
+            rs = evaluator.evaluate(config.get("expression"));
+        }
+
+        List<Object> values = new ArrayList<Object>(rs.values());
+        int total = values.size();
+        if (projection != null && projection.isPaged()) {
+            int start = Math.min(Math.max(0, projection.getOffset()), total);
+            int end = Math.min(projection.getLimit()+start, total);
+            values = new ArrayList<Object>(values.subList(start, end));
+        }
+        return new PrestoPagedValues(values, projection, total);
+    }
+
+    private static class Evaluator {
+
+        private final Collection<? extends Object> objects;
+        private final PrestoField field;
+        private final PrestoResolver prestoResolver;
+        private final PrestoVariableResolver variableResolver;
+        private final JsonNode branches;
+
+        private Evaluator(Collection<? extends Object> objects, PrestoField field, 
+                PrestoResolver prestoResolver, PrestoVariableResolver variableResolver, JsonNode branches) {
+            this.objects = objects;
+            this.field = field;
+            this.prestoResolver = prestoResolver;
+            this.variableResolver = variableResolver;
+            this.branches = branches;
+        }
+
+        private Map<Object,Object> evaluate(JsonNode expression) {
+            if (expression.isTextual()) {
+                JsonNode resolveConfig = branches.path(expression.textValue());
+                if (!resolveConfig.isArray()) {
+                    throw new RuntimeException("Unknown merge branch '" + expression.textValue() + "' on field " + field.getId());
+                }
+                return resolve(resolveConfig);
+            } else if (expression.isArray()) {
+                return resolve(expression);
+            } else if (expression.isObject() && expression.size() == 1) {
+                Map.Entry<String,JsonNode> entry = expression.fields().next();
+                String operator = entry.getKey();
+                JsonNode operands = entry.getValue();
+                if (!operands.isArray()) {
+                    throw new RuntimeException("Operands of " + operator + " is not an array on field " + field.getId() + ": " + expression);
+                }
+                if ("UNION".equals(operator)) {
+                    return union(operands);
+                } else if ("INTERSECTION".equals(operator)) {
+                    return intersection(operands);
+                } else if ("MINUS".equals(operator)) {
+                    return minus(operands);
+                }
+            }
+            throw new RuntimeException("Invalid merge expression on field " + field.getId() + ": " + expression);
+        }
+
+        private Map<Object,Object> union(JsonNode operands) {
+            Map<Object,Object> result = new LinkedHashMap<Object,Object>();
+            for (JsonNode operand : operands) {
+                for (Map.Entry<Object,Object> entry : evaluate(operand).entrySet()) {
+                    if (!result.containsKey(entry.getKey())) {
+                        result.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            return result;
+        }
+
+        private Map<Object,Object> intersection(JsonNode operands) {
+            Map<Object,Object> result = null;
+            for (JsonNode operand : operands) {
+                Map<Object,Object> values = evaluate(operand);
+                if (result == null) {
+                    result = values;
+                } else {
+                    result.keySet().retainAll(values.keySet());
+                }
+                if (result.isEmpty()) {
+                    break; // remaining operands cannot add anything
+                }
+            }
+            return result == null ? new LinkedHashMap<Object,Object>() : result;
+        }
+
+        private Map<Object,Object> minus(JsonNode operands) {
+            Map<Object,Object> result = null;
+            for (JsonNode operand : operands) {
+                if (result == null) {
+                    result = evaluate(operand);
+                } else {
+                    result.keySet().removeAll(evaluate(operand).keySet());
+                }
+                if (result.isEmpty()) {
+                    break; // nothing left to subtract from
+                }
+            }
+            return result == null ? new LinkedHashMap<Object,Object>() : result;
+        }
+
+        private Map<Object,Object> resolve(JsonNode resolveConfig) {
+            Projection projection = null;
+            PagedValues values = prestoResolver.resolveValues(objects, field, projection, resolveConfig, variableResolver);
+            Map<Object,Object> result = new LinkedHashMap<Object,Object>();
+            Iterator<? extends Object> iter = values.getValues().iterator();
+            while (iter.hasNext()) {
+                Object value = iter.next();
+                Object key = getKey(value);
+                if (!result.containsKey(key)) {
+                    result.put(key, value);
+                }
+            }
+            return result;
+        }
+
+        private Object getKey(Object value) {
+            if (value instanceof PrestoTopic) {
+                return ((PrestoTopic)value).getId();
+            }
+            return value;
+        }
+    }
+
+}
@@ -12,8 +12,9 @@ import net.ontopia.presto.spi.PrestoTopic;
 import net.ontopia.presto.spi.PrestoTopic.PagedValues;
 import net.ontopia.presto.spi.PrestoTopic.Projection;
 import net.ontopia.presto.spi.PrestoType;
+import net.ontopia.presto.spi.utils.BoundedCache;
+import net.ontopia.presto.spi.utils.ExtraUtils;
 import net.ontopia.presto.spi.utils.PrestoContext;
-import net.ontopia.presto.spi.utils.PrestoPagedValues;
 import net.ontopia.presto.spi.utils.PrestoTopicFieldVariableResolver;
 import net.ontopia.presto.spi.utils.PrestoVariableContext;
 import net.ontopia.presto.spi.utils.PrestoVariableResolver;
@@ -23,7 +24,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 public class PrestoResolver {
@@ -33,9 +33,27 @@ public class PrestoResolver {
     private final PrestoDataProvider dataProvider;
     private final PrestoSchemaProvider schemaProvider;
 
+    private static final BoundedCache.PerSchema<String,Class<? extends PrestoFieldResolver>> resolverClasses =
+            new BoundedCache.PerSchema<String,Class<? extends PrestoFieldResolver>>();
+
+    private PrestoVariableContext variableContext;
+
+    // null if virtual field values are not memoized
+    private final BoundedCache<String,List<? extends Object>> virtualFields;
+
     public PrestoResolver(PrestoDataProvider dataProvider, PrestoSchemaProvider schemaProvider) {
+        this(dataProvider, schemaProvider, 0);
+    }
+
+    /**
+     * Creates a resolver that memoizes the values of up to virtualFieldCacheSize 
+     * virtual fields, see resolveVirtualField. Only use this for resolvers that 
+     * live no longer than a request.
+     */
+    public PrestoResolver(PrestoDataProvider dataProvider, PrestoSchemaProvider schemaProvider, int virtualFieldCacheSize) {
         this.dataProvider = dataProvider;
         this.schemaProvider = schemaProvider;
+        this.virtualFields = (virtualFieldCacheSize > 0 ? new BoundedCache<String,List<? extends Object>>(virtualFieldCacheSize) : null);
     }
 
     public PrestoDataProvider getDataProvider() {
@@ -81,42 +99,63 @@ public class PrestoResolver {
 
     public PagedValues resolveValues(Collection<? extends Object> objects, 
             PrestoField field, Projection projection, JsonNode resolveConfig, PrestoVariableResolver variableResolver) {
-        if (resolveConfig.isArray()) {
-            ArrayNode resolveArray = (ArrayNode)resolveConfig;
-            return resolveValues(objects, field, resolveArray, projection, variableResolver);
-        } else {
-            throw new RuntimeException("resolve on field " + field.getId() + " is not an array: " + resolveConfig);
+        PrestoResolverPipeline pipeline = PrestoResolverPipeline.getPipeline(this, field, resolveConfig);
+        return pipeline.resolve(objects, field, projection, this, variableResolver);
+    }
+
+    public JsonNode getVirtualFieldConfig(String name) {
+        ObjectNode extra = ExtraUtils.getSchemaExtraNode(schemaProvider);
+        if (extra != null && name != null) {
+            JsonNode resolveConfig = extra.path("virtualFields").path(name).path("resolve");
+            if (resolveConfig.isArray()) {
+                return resolveConfig;
+            }
         }
+        return null;
     }
 
-    private PagedValues resolveValues(Collection<? extends Object> objects, 
-            PrestoField field, ArrayNode resolveArray, Projection projection, PrestoVariableResolver variableResolver) {
-        PagedValues result = null;
-        int size = resolveArray.size();
-        for (int i=0; i < size; i++) {
-            boolean isLast = (i == size-1);
-            boolean isReference = field.isReferenceField() || !isLast;
-            ObjectNode resolveConfig = (ObjectNode)resolveArray.get(i);
-            result = resolveValues(objects, field, isReference, resolveConfig, projection, variableResolver);
-            objects = result.getValues();
+    /**
+     * Resolves the virtual field for a single object. If the resolver memoizes
+     * virtual fields, the values for topics resolved with a plain 
+     * PrestoTopicFieldVariableResolver are remembered until clearVirtualFields 
+     * is called. Other variable resolvers may depend on where the topic is 
+     * used, so their values are not remembered.
+     */
+    public List<? extends Object> resolveVirtualField(String name, Object object, 
+            PrestoField field, JsonNode resolveConfig, PrestoVariableResolver variableResolver) {
+        if (virtualFields == null || !(object instanceof PrestoTopic) || 
+                variableResolver == null || variableResolver.getClass() != PrestoTopicFieldVariableResolver.class) {
+            return resolveValues(Collections.singleton(object), field, null, resolveConfig, variableResolver).getValues();
+        }
+        String key = name + '\n' + ((PrestoTopic)object).getId() + '\n' + field.isReferenceField();
+        List<? extends Object> result = virtualFields.get(key);
+        if (result == null) {
+            result = resolveValues(Collections.singleton(object), field, null, resolveConfig, variableResolver).getValues();
+            result = virtualFields.put(key, result);
         }
         return result;
     }
 
-    private PagedValues resolveValues(Collection<? extends Object> objects,
-            PrestoField field, boolean isReference, ObjectNode resolveConfig, 
-            Projection projection, PrestoVariableResolver variableResolver) {
+    public void clearVirtualFields() {
+        if (virtualFields != null) {
+            virtualFields.clear();
+        }
+    }
 
-        PrestoFieldResolver resolver = createFieldResolver(resolveConfig);
-        if (resolver == null) {
-            return new PrestoPagedValues(Collections.emptyList(), projection, 0);            
-        } else {
-            return resolver.resolve(objects, field, isReference, projection, this, variableResolver);
+    protected synchronized PrestoVariableContext getVariableContext() {
+        if (variableContext == null) {
+            variableContext = new PrestoVariableContext(getSchemaProvider(), getDataProvider());
         }
+        return variableContext;
     }
 
+    /**
+     * Creates the field resolver for a step of a resolve pipeline. This is 
+     * the extension point for resolver subclasses. A new field resolver is 
+     * created for every resolve step.
+     */
     protected PrestoFieldResolver createFieldResolver(ObjectNode resolveConfig) {
-        String type = resolveConfig.get("type").textValue();
+        String type = resolveConfig.path("type").textValue();
         if (type == null) {
             log.error("'type' not specified on resolve item: " + resolveConfig);
             return null;
@@ -128,9 +167,8 @@ public class PrestoResolver {
     protected PrestoFieldResolver createFieldResolver(String type, ObjectNode resolveConfig) {
         String className = getFieldResolverClassName(type, getSchemaProvider(), resolveConfig);
         if (className != null) {
-            PrestoFieldResolver fieldResolver = Utils.newInstanceOf(className, PrestoFieldResolver.class);
-            PrestoVariableContext context = new PrestoVariableContext(getSchemaProvider(), getDataProvider());
-            fieldResolver.setVariableContext(context);
+            PrestoFieldResolver fieldResolver = Utils.newInstanceOf(getFieldResolverClass(className));
+            fieldResolver.setVariableContext(getVariableContext());
             fieldResolver.setConfig(resolveConfig);
             return fieldResolver;
         }
@@ -138,6 +176,16 @@ public class PrestoResolver {
         return null;
     }
 
+    // class lookups are cached per schema provider
+    private Class<? extends PrestoFieldResolver> getFieldResolverClass(String className) {
+        BoundedCache<String,Class<? extends PrestoFieldResolver>> cache = resolverClasses.get(getSchemaProvider());
+        Class<? extends PrestoFieldResolver> resolverClass = cache.get(className);
+        if (resolverClass == null) {
+            resolverClass = cache.put(className, Utils.classOf(className, PrestoFieldResolver.class));
+        }
+        return resolverClass;
+    }
+
     protected String getFieldResolverClassName(String type, PrestoSchemaProvider schemaProvider, ObjectNode config) {
         ObjectNode extra = (ObjectNode)schemaProvider.getExtra();
         if (extra != null) {
@@ -0,0 +1,145 @@
+package net.ontopia.presto.spi.resolve;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import net.ontopia.presto.spi.PrestoField;
+import net.ontopia.presto.spi.PrestoTopic.PagedValues;
+import net.ontopia.presto.spi.PrestoTopic.Projection;
+import net.ontopia.presto.spi.utils.PrestoExecutors;
+import net.ontopia.presto.spi.utils.PrestoPagedValues;
+import net.ontopia.presto.spi.utils.PrestoVariableResolver;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Evaluates the nested resolve configs of a resolver concurrently. Enabled with
+ * "parallel" : true on the resolver config; "timeout" is the number of milliseconds
+ * to wait for the branches. A branch that times out fails the resolver, unless
+ * "onTimeout" : "empty" is set, in which case the branch yields no values.
+ */
+public class PrestoResolverBranches {
+
+    private static Logger log = LoggerFactory.getLogger(PrestoResolverBranches.class);
+
+    public static final String EXECUTOR = "presto-resolve";
+
+    static final int THREADS = 16;
+    static final long DEFAULT_TIMEOUT = 30000;
+
+    // nested parallel resolvers run inline to avoid starving the pool
+    private static final ThreadLocal<Boolean> inBranch = new ThreadLocal<Boolean>();
+
+    private final PrestoField field;
+    private final Projection projection;
+    private final List<Future<PagedValues>> futures;
+    private final long deadline;
+    private final boolean emptyOnTimeout;
+
+    private PrestoResolverBranches(PrestoField field, Projection projection, List<Future<PagedValues>> futures, long timeout, boolean emptyOnTimeout) {
+        this.field = field;
+        this.projection = projection;
+        this.futures = futures;
+        this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        this.emptyOnTimeout = emptyOnTimeout;
+    }
+
+    public static boolean isParallel(ObjectNode config) {
+        return config != null && config.path("parallel").asBoolean(false);
+    }
+
+    public static PrestoResolverBranches submit(final Collection<? extends Object> objects, 
+            final PrestoField field, final Projection projection, JsonNode resolveConfigs, 
+            final PrestoResolver prestoResolver, final PrestoVariableResolver variableResolver, ObjectNode config) {
+
+        boolean nested = Boolean.TRUE.equals(inBranch.get());
+        List<Future<PagedValues>> futures = new ArrayList<Future<PagedValues>>(resolveConfigs.size());
+        for (final JsonNode resolveConfig : resolveConfigs) {
+            Callable<PagedValues> branch = new Callable<PagedValues>() {
+                @Override
+                public PagedValues call() throws Exception {
+                    Boolean wasInBranch = inBranch.get();
+                    inBranch.set(Boolean.TRUE);
+                    long start = System.nanoTime();
+                    try {
+                        return prestoResolver.resolveValues(objects, field, projection, resolveConfig, variableResolver);
+                    } finally {
+                        long elapsed = System.nanoTime() - start;
+                        inBranch.set(wasInBranch);
+                        if (log.isDebugEnabled()) {
+                            log.debug("Resolved branch of field {} in {} ms", field.getId(), TimeUnit.NANOSECONDS.toMillis(elapsed));
+                        }
+                    }
+                }
+            };
+            if (nested) {
+                FutureTask<PagedValues> future = new FutureTask<PagedValues>(branch);
+                future.run();
+                futures.add(future);
+            } else {
+                futures.add(getExecutor().submit(branch));
+            }
+        }
+        long timeout = config.path("timeout").asLong(DEFAULT_TIMEOUT);
+        boolean emptyOnTimeout = config.path("onTimeout").asText().equals("empty");
+        return new PrestoResolverBranches(field, projection, futures, timeout, emptyOnTimeout);
+    }
+
+    private static ExecutorService getExecutor() {
+        return PrestoExecutors.getExecutor(EXECUTOR, THREADS);
+    }
+
+    public int size() {
+        return futures.size();
+    }
+
+    public PagedValues get(int index) {
+        Future<PagedValues> future = futures.get(index);
+        try {
+            long remaining = Math.max(0, deadline - System.nanoTime());
+            return future.get(remaining, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            if (emptyOnTimeout) {
+                future.cancel(true);
+                log.warn("Timed out resolving branch " + index + " of field " + field.getId() + ", ignoring its values.");
+                return new PrestoPagedValues(Collections.emptyList(), projection, 0);
+            }
+            cancel();
+            throw new RuntimeException("Timed out resolving branch " + index + " of field " + field.getId(), e);
+        } catch (CancellationException e) {
+            return new PrestoPagedValues(Collections.emptyList(), projection, 0);
+        } catch (InterruptedException e) {
+            cancel();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            cancel();
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    public void cancel() {
+        for (Future<PagedValues> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+package net.ontopia.presto.spi.resolve;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import net.ontopia.presto.spi.PrestoField;
+import net.ontopia.presto.spi.PrestoSchemaProvider;
+import net.ontopia.presto.spi.PrestoTopic.PagedValues;
+import net.ontopia.presto.spi.PrestoTopic.Projection;
+import net.ontopia.presto.spi.utils.BoundedCache;
+import net.ontopia.presto.spi.utils.BoundedCache.IdentityKey;
+import net.ontopia.presto.spi.utils.PrestoPagedValues;
+import net.ontopia.presto.spi.utils.PrestoVariableResolver;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Immutable, compiled form of a 'resolve' array. Pipelines are cached per
+ * schema provider and keyed by the identity of the resolve config node. A 
+ * reloaded schema has new config nodes, and so gets new pipelines. The field 
+ * resolvers of the steps are created by PrestoResolver.createFieldResolver.
+ */
+public class PrestoResolverPipeline {
+
+    private static final BoundedCache.PerSchema<IdentityKey,PrestoResolverPipeline> pipelines =
+            new BoundedCache.PerSchema<IdentityKey,PrestoResolverPipeline>();
+
+    private final List<Step> steps;
+
+    private PrestoResolverPipeline(List<Step> steps) {
+        this.steps = Collections.unmodifiableList(steps);
+    }
+
+    public static PrestoResolverPipeline getPipeline(PrestoResolver prestoResolver, PrestoField field, JsonNode resolveConfig) {
+        PrestoSchemaProvider schemaProvider = prestoResolver.getSchemaProvider();
+        BoundedCache<IdentityKey,PrestoResolverPipeline> cache = pipelines.get(schemaProvider);
+
+        IdentityKey key = new IdentityKey(resolveConfig, field.isReferenceField());
+        PrestoResolverPipeline pipeline = cache.get(key);
+        if (pipeline == null) {
+            pipeline = cache.put(key, compile(field, resolveConfig));
+        }
+        return pipeline;
+    }
+
+    private static PrestoResolverPipeline compile(PrestoField field, JsonNode resolveConfig) {
+        if (!resolveConfig.isArray()) {
+            throw new RuntimeException("resolve on field " + field.getId() + " is not an array: " + resolveConfig);
+        }
+        ArrayNode resolveArray = (ArrayNode)resolveConfig;
+        int size = resolveArray.size();
+        List<Step> steps = new ArrayList<Step>(size);
+        for (int i=0; i < size; i++) {
+            boolean isLast = (i == size-1);
+            boolean isReference = field.isReferenceField() || !isLast;
+            ObjectNode config = (ObjectNode)resolveArray.get(i);
+            steps.add(new Step(config, isReference));
+        }
+        return new PrestoResolverPipeline(steps);
+    }
+
+    public PagedValues resolve(Collection<? extends Object> objects, PrestoField field, Projection projection,
+            PrestoResolver prestoResolver, PrestoVariableResolver variableResolver) {
+        PagedValues result = null;
+        for (Step step : steps) {
+            result = step.resolve(objects, field, projection, prestoResolver, variableResolver);
+            objects = result.getValues();
+        }
+        return result;
+    }
+
+    private static class Step {
+
+        private final ObjectNode config;
+        private final boolean isReference;
+
+        private Step(ObjectNode config, boolean isReference) {
+            this.config = config;
+            this.isReference = isReference;
+        }
+
+        private PagedValues resolve(Collection<? extends Object> objects, PrestoField field, Projection projection,
+                PrestoResolver prestoResolver, PrestoVariableResolver variableResolver) {
+            PrestoFieldResolver resolver = prestoResolver.createFieldResolver(config);
+            if (resolver == null) {
+                return new PrestoPagedValues(Collections.emptyList(), projection, 0);
+            }
+            return resolver.resolve(objects, field, isReference, projection, prestoResolver, variableResolver);
+        }
+    }
+
+}
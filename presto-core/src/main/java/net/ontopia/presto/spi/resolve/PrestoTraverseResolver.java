@@ -10,6 +10,7 @@ import net.ontopia.presto.spi.PrestoField;
 import net.ontopia.presto.spi.PrestoTopic.PagedValues;
 import net.ontopia.presto.spi.PrestoTopic.Projection;
 import net.ontopia.presto.spi.utils.PrestoPagedValues;
+import net.ontopia.presto.spi.utils.PrestoTopicFieldVariableResolver;
 import net.ontopia.presto.spi.utils.PrestoVariableResolver;
 
 import com.fasterxml.jackson.databind.JsonNode;
@@ -47,6 +48,11 @@ public class PrestoTraverseResolver extends PrestoFieldResolver {
             List<? extends Object> values = variableResolver.getValues(null, fieldId);
             result.addAll(values);
             
+        } else if (variableResolver instanceof PrestoTopicFieldVariableResolver) {
+            // one lookup per hop instead of one per object
+            List<? extends Object> values = ((PrestoTopicFieldVariableResolver)variableResolver).getValues(objects, fieldId);
+            result.addAll(values);
+
         } else {
             for (Object object : objects) {
                 List<? extends Object> values = variableResolver.getValues(object, fieldId);
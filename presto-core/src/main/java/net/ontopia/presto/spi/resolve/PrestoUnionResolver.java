@@ -27,7 +27,17 @@ public class PrestoUnionResolver extends PrestoFieldResolver {
 
         if (config != null && config.has("resolve")) {
             JsonNode resolveParentConfig = config.get("resolve");
-            if (resolveParentConfig.isArray()) {
+            if (resolveParentConfig.isArray() && PrestoResolverBranches.isParallel(config)) {
+                PrestoResolverBranches branches = PrestoResolverBranches.submit(objects, field, projection, resolveParentConfig, prestoResolver, variableResolver, config);
+                for (int i=0; i < branches.size(); i++) {
+                    PagedValues values = branches.get(i);
+                    if (result == null) {
+                        result = new ArrayList<Object>(values.getValues());
+                    } else {
+                        result.addAll(values.getValues());
+                    }
+                }
+            } else if (resolveParentConfig.isArray()) {
                 for (JsonNode resolveConfig : resolveParentConfig) {
                     PagedValues values = prestoResolver.resolveValues(objects, field, projection, resolveConfig, variableResolver);
                     if (result == null) {
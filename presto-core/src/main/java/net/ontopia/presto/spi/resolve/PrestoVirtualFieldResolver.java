@@ -0,0 +1,57 @@
+package net.ontopia.presto.spi.resolve;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.ontopia.presto.spi.PrestoField;
+import net.ontopia.presto.spi.PrestoTopic.PagedValues;
+import net.ontopia.presto.spi.PrestoTopic.Projection;
+import net.ontopia.presto.spi.utils.PrestoPagedValues;
+import net.ontopia.presto.spi.utils.PrestoVariableResolver;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Resolves the values of a virtual field declared in the schema extra, e.g.
+ * "virtualFields" : { "owner-department" : { "resolve" : [ { "type" : "traverse", "path" : ["owner", "department"] } ] } }.
+ * Register the class in "resolvers" and use { "type" : "virtual", "name" : "owner-department" }
+ * as the first step of other resolve configs. The values are memoized per topic by 
+ * the PrestoResolver of the session, so fields sharing a common traversal path only 
+ * walk it once per request.
+ */
+public class PrestoVirtualFieldResolver extends PrestoFieldResolver {
+
+    private static Logger log = LoggerFactory.getLogger(PrestoVirtualFieldResolver.class);
+
+    @Override
+    public PagedValues resolve(Collection<? extends Object> objects,
+            PrestoField field, boolean isReference, Projection projection, 
+            PrestoResolver prestoResolver, PrestoVariableResolver variableResolver) {
+
+        String name = getConfig().path("name").textValue();
+        JsonNode resolveConfig = prestoResolver.getVirtualFieldConfig(name);
+        if (resolveConfig == null) {
+            log.warn("Unknown virtual field '{}' on field {}", name, field.getId());
+            return new PrestoPagedValues(Collections.emptyList(), projection, 0);
+        }
+
+        if (objects.isEmpty()) {
+            List<? extends Object> values = prestoResolver.resolveValues(objects, field, null, resolveConfig, variableResolver).getValues();
+            return new PrestoPagedValues(values, projection, values.size());
+        }
+        Set<Object> rs = new LinkedHashSet<Object>();
+        for (Object object : objects) {
+            rs.addAll(prestoResolver.resolveVirtualField(name, object, field, resolveConfig, variableResolver));
+        }
+        List<Object> result = new ArrayList<Object>(rs);
+        return new PrestoPagedValues(result, projection, result.size());
+    }
+
+}
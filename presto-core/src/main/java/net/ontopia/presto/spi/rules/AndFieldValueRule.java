@@ -1,22 +1,22 @@
 package net.ontopia.presto.spi.rules;
 
 import net.ontopia.presto.spi.PrestoField;
-import net.ontopia.presto.spi.utils.AbstractHandler;
 import net.ontopia.presto.spi.utils.PrestoContextRules;
 import net.ontopia.presto.spi.utils.PrestoContextRules.FieldValueFlag;
 import net.ontopia.presto.spi.utils.PrestoContextRules.FieldValueRule;
+import net.ontopia.presto.spi.utils.SharedHandler;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
-public class AndFieldValueRule extends BooleanFieldValueRule {
+public class AndFieldValueRule extends BooleanFieldValueRule implements SharedHandler {
 
     @Override
     protected boolean getResult(FieldValueFlag flag, PrestoContextRules rules, PrestoField field, Object value, ObjectNode config) {
         if (config != null) {
             JsonNode handlers = config.path("handlers");
             if (!handlers.isMissingNode()) {
-                for (FieldValueRule handler : AbstractHandler.getHandlers(getDataProvider(), getSchemaProvider(), FieldValueRule.class, handlers)) {
+                for (FieldValueRule handler : CompiledRules.getRules(getSchemaProvider(), FieldValueRule.class, handlers).getHandlers(rules.getDataProvider(), getSchemaProvider())) {
                     Boolean result = handler.getValue(flag, rules, field, value);
                     if (result != null && !result) {
                         return false;
@@ -1,22 +1,22 @@
 package net.ontopia.presto.spi.rules;
 
 import net.ontopia.presto.spi.PrestoView;
-import net.ontopia.presto.spi.utils.AbstractHandler;
 import net.ontopia.presto.spi.utils.PrestoContextRules;
 import net.ontopia.presto.spi.utils.PrestoContextRules.ViewFlag;
 import net.ontopia.presto.spi.utils.PrestoContextRules.ViewRule;
+import net.ontopia.presto.spi.utils.SharedHandler;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
-public class AndViewRule extends BooleanViewRule {
+public class AndViewRule extends BooleanViewRule implements SharedHandler {
 
     @Override
     protected boolean getResult(ViewFlag flag, PrestoContextRules rules, PrestoView view, ObjectNode config) {
         if (config != null) {
             JsonNode handlers = config.path("handlers");
             if (!handlers.isMissingNode()) {
-                for (ViewRule handler : AbstractHandler.getHandlers(getDataProvider(), getSchemaProvider(), ViewRule.class, handlers)) {
+                for (ViewRule handler : CompiledRules.getRules(getSchemaProvider(), ViewRule.class, handlers).getHandlers(rules.getDataProvider(), getSchemaProvider())) {
                     Boolean result = handler.getValue(flag, rules, view);
                     if (result != null && !result) {
                         return false;
@@ -2,11 +2,12 @@ package net.ontopia.presto.spi.rules;
 
 import net.ontopia.presto.spi.utils.PrestoContextRules;
 import net.ontopia.presto.spi.utils.PrestoContextRules.TypeFlag;
+import net.ontopia.presto.spi.utils.SharedHandler;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
-public class BooleanValueTypeRule extends BooleanTypeRule {
+public class BooleanValueTypeRule extends BooleanTypeRule implements SharedHandler {
 
     @Override
     protected boolean getResult(TypeFlag flag, PrestoContextRules rules, ObjectNode config) {
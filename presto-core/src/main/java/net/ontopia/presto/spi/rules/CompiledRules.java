@@ -0,0 +1,93 @@
+package net.ontopia.presto.spi.rules;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.ontopia.presto.spi.PrestoDataProvider;
+import net.ontopia.presto.spi.PrestoSchemaProvider;
+import net.ontopia.presto.spi.utils.BoundedCache;
+import net.ontopia.presto.spi.utils.BoundedCache.IdentityKey;
+import net.ontopia.presto.spi.utils.Handler;
+import net.ontopia.presto.spi.utils.HandlerRegistry;
+import net.ontopia.presto.spi.utils.HandlerRegistry.HandlerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Immutable, compiled form of an And/Or rule list. The handler factories are 
+ * looked up once and ordered so that rules not reading field values are evaluated 
+ * first, letting the rule short-circuit before any field values are resolved. Rules 
+ * are classified by their class, so no handlers are created when compiling. Only 
+ * use this where the result does not depend on evaluation order. Compiled rules 
+ * are cached per schema provider and keyed by the identity of the rules node.
+ * <p>
+ * This is not a dependency tree: the fields a rule reads are not recorded up 
+ * front, and they are not resolved in one batch. Rules read field values through 
+ * PrestoContextRules.getRuleValues, which resolves each field or path once per 
+ * context and shares the result with every flag that reads it.
+ */
+public class CompiledRules<T extends Handler> {
+
+    private static final BoundedCache.PerSchema<IdentityKey,CompiledRules<?>> compiledRules =
+            new BoundedCache.PerSchema<IdentityKey,CompiledRules<?>>();
+
+    // no reference to the schema provider, as the cache is keyed weakly by it
+    private final List<HandlerFactory<T>> factories;
+
+    private CompiledRules(List<HandlerFactory<T>> factories) {
+        this.factories = Collections.unmodifiableList(factories);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T extends Handler> CompiledRules<T> getRules(PrestoSchemaProvider schemaProvider, Class<T> klass, JsonNode rulesNode) {
+        BoundedCache<IdentityKey,CompiledRules<?>> cache = compiledRules.get(schemaProvider);
+
+        IdentityKey key = new IdentityKey(rulesNode, klass);
+        CompiledRules<T> rules = (CompiledRules<T>)cache.get(key);
+        if (rules == null) {
+            rules = (CompiledRules<T>)cache.put(key, compile(schemaProvider, klass, rulesNode));
+        }
+        return rules;
+    }
+
+    private static <T extends Handler> CompiledRules<T> compile(PrestoSchemaProvider schemaProvider, Class<T> klass, JsonNode rulesNode) {
+        List<JsonNode> nodes = new ArrayList<JsonNode>();
+        if (rulesNode.isArray()) {
+            for (JsonNode handlerNode : rulesNode) {
+                nodes.add(handlerNode);
+            }
+        } else if (!rulesNode.isMissingNode()) {
+            nodes.add(rulesNode);
+        }
+        HandlerRegistry registry = HandlerRegistry.getRegistry(schemaProvider);
+        List<HandlerFactory<T>> cheapFactories = new ArrayList<HandlerFactory<T>>(nodes.size());
+        List<HandlerFactory<T>> fieldValuesFactories = new ArrayList<HandlerFactory<T>>(nodes.size());
+        for (JsonNode handlerNode : nodes) {
+            HandlerFactory<T> factory = registry.getFactory(schemaProvider, klass, handlerNode);
+            Class<? extends T> handlerClass = factory.getHandlerClass();
+            if (handlerClass == null) {
+                continue;
+            } else if (FieldValuesRule.class.isAssignableFrom(handlerClass)) {
+                fieldValuesFactories.add(factory);
+            } else {
+                cheapFactories.add(factory);
+            }
+        }
+        cheapFactories.addAll(fieldValuesFactories);
+        return new CompiledRules<T>(cheapFactories);
+    }
+
+    public boolean isEmpty() {
+        return factories.isEmpty();
+    }
+
+    public List<T> getHandlers(PrestoDataProvider dataProvider, PrestoSchemaProvider schemaProvider) {
+        List<T> result = new ArrayList<T>(factories.size());
+        for (HandlerFactory<T> factory : factories) {
+            result.add(factory.getHandler(dataProvider, schemaProvider));
+        }
+        return result;
+    }
+
+}
@@ -6,11 +6,12 @@ import java.util.Set;
 import net.ontopia.presto.spi.PrestoField;
 import net.ontopia.presto.spi.utils.PrestoContextRules;
 import net.ontopia.presto.spi.utils.PrestoContextRules.FieldFlag;
+import net.ontopia.presto.spi.utils.SharedHandler;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
-public class ContainsAttributeFieldRule extends BooleanFieldRule {
+public class ContainsAttributeFieldRule extends BooleanFieldRule implements SharedHandler {
 
     @Override
     protected boolean getResult(FieldFlag flag, PrestoContextRules rules, PrestoField field, ObjectNode config) {
@@ -3,14 +3,15 @@ package net.ontopia.presto.spi.rules;
 import net.ontopia.presto.spi.PrestoField;
 import net.ontopia.presto.spi.utils.PrestoContextRules;
 import net.ontopia.presto.spi.utils.PrestoContextRules.FieldFlag;
+import net.ontopia.presto.spi.utils.SharedHandler;
 
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
-public class ContainsFieldValuesFieldRule extends BooleanFieldRule {
+public class ContainsFieldValuesFieldRule extends BooleanFieldRule implements FieldValuesRule, SharedHandler {
 
     @Override
     protected boolean getResult(FieldFlag flag, PrestoContextRules rules, PrestoField field, ObjectNode config) {
-        return ContainsFieldValues.containsFieldValues(getDataProvider(), getSchemaProvider(), rules, field, config);
+        return ContainsFieldValues.containsFieldValues(rules.getDataProvider(), getSchemaProvider(), rules, field, config);
     }
     
 }
\ No newline at end of file
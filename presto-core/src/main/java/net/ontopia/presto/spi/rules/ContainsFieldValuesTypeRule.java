@@ -2,14 +2,15 @@ package net.ontopia.presto.spi.rules;
 
 import net.ontopia.presto.spi.utils.PrestoContextRules;
 import net.ontopia.presto.spi.utils.PrestoContextRules.TypeFlag;
+import net.ontopia.presto.spi.utils.SharedHandler;
 
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
-public class ContainsFieldValuesTypeRule extends BooleanTypeRule {
+public class ContainsFieldValuesTypeRule extends BooleanTypeRule implements FieldValuesRule, SharedHandler {
     
     @Override
     protected boolean getResult(TypeFlag flag, PrestoContextRules rules, ObjectNode config) {
-        return ContainsFieldValues.containsFieldValues(getDataProvider(), getSchemaProvider(), rules, config);
+        return ContainsFieldValues.containsFieldValues(rules.getDataProvider(), getSchemaProvider(), rules, config);
     }
     
 }
\ No newline at end of file
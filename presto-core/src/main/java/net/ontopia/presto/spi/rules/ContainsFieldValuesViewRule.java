@@ -3,14 +3,15 @@ package net.ontopia.presto.spi.rules;
 import net.ontopia.presto.spi.PrestoView;
 import net.ontopia.presto.spi.utils.PrestoContextRules;
 import net.ontopia.presto.spi.utils.PrestoContextRules.ViewFlag;
+import net.ontopia.presto.spi.utils.SharedHandler;
 
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
-public class ContainsFieldValuesViewRule extends BooleanViewRule {
+public class ContainsFieldValuesViewRule extends BooleanViewRule implements FieldValuesRule, SharedHandler {
     
     @Override
     protected boolean getResult(ViewFlag flag, PrestoContextRules rules, PrestoView view, ObjectNode config) {
-        return ContainsFieldValues.containsFieldValues(getDataProvider(), getSchemaProvider(), rules, config);
+        return ContainsFieldValues.containsFieldValues(rules.getDataProvider(), getSchemaProvider(), rules, config);
     }
     
 }
\ No newline at end of file
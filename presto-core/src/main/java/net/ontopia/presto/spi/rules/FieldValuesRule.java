@@ -0,0 +1,9 @@
+package net.ontopia.presto.spi.rules;
+
+/**
+ * Marker interface for rules that need to resolve field values. Such rules
+ * are evaluated after the other rules in the same list.
+ */
+public interface FieldValuesRule {
+
+}
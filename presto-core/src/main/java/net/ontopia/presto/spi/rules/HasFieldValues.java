@@ -5,7 +5,6 @@ import java.util.List;
 import net.ontopia.presto.spi.PrestoDataProvider;
 import net.ontopia.presto.spi.PrestoField;
 import net.ontopia.presto.spi.PrestoSchemaProvider;
-import net.ontopia.presto.spi.utils.FieldValues;
 import net.ontopia.presto.spi.utils.PrestoContextRules;
 
 import com.fasterxml.jackson.databind.JsonNode;
@@ -26,10 +25,9 @@ public class HasFieldValues {
         JsonNode fieldNode = config.path("field");
         if (fieldNode.isTextual()) {
             String fieldId = fieldNode.textValue();
-            return PathExpressions.getValues(rules, fieldId);
+            return rules.getRuleValues(fieldId);
         } else if (defaultField != null) {
-            FieldValues fieldValues = rules.getFieldValues(defaultField);
-            return fieldValues.getValues();
+            return rules.getRuleValues(defaultField);
         }
         throw new RuntimeException("Not able to find field from configuration: " + config);
     }
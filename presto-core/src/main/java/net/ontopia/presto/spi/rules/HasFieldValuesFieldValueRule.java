@@ -7,11 +7,12 @@ import net.ontopia.presto.spi.PrestoView;
 import net.ontopia.presto.spi.utils.PrestoContext;
 import net.ontopia.presto.spi.utils.PrestoContextRules;
 import net.ontopia.presto.spi.utils.PrestoContextRules.FieldValueFlag;
+import net.ontopia.presto.spi.utils.SharedHandler;
 import net.ontopia.presto.spi.utils.Utils;
 
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
-public class HasFieldValuesFieldValueRule extends BooleanFieldValueRule {
+public class HasFieldValuesFieldValueRule extends BooleanFieldValueRule implements FieldValuesRule, SharedHandler {
 
     @Override
     protected boolean getResult(FieldValueFlag flag, PrestoContextRules rules, PrestoField field, Object value, ObjectNode config) {
@@ -21,7 +22,7 @@ public class HasFieldValuesFieldValueRule extends BooleanFieldValueRule {
             PrestoView view = field.getValueView(type);
             PrestoContext subContext = PrestoContext.createSubContext(rules.getContext(), field, topic, type, view);
             PrestoContextRules subRules = rules.getPrestoContextRules(subContext);
-            return HasFieldValues.hasFieldValues(getDataProvider(), getSchemaProvider(), subRules, config);
+            return HasFieldValues.hasFieldValues(rules.getDataProvider(), getSchemaProvider(), subRules, config);
         }
         return false;
     }
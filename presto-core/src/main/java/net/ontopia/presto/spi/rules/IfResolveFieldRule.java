@@ -19,7 +19,7 @@ import net.ontopia.presto.spi.utils.PrestoVariableResolver;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
-public class IfResolveFieldRule extends BooleanFieldRule {
+public class IfResolveFieldRule extends BooleanFieldRule implements FieldValuesRule {
 
     @Override
     protected boolean getResult(FieldFlag flag, PrestoContextRules rules, PrestoField field, ObjectNode config) {
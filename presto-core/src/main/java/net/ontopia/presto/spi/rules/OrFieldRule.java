@@ -1,22 +1,22 @@
 package net.ontopia.presto.spi.rules;
 
 import net.ontopia.presto.spi.PrestoField;
-import net.ontopia.presto.spi.utils.AbstractHandler;
 import net.ontopia.presto.spi.utils.PrestoContextRules;
 import net.ontopia.presto.spi.utils.PrestoContextRules.FieldFlag;
 import net.ontopia.presto.spi.utils.PrestoContextRules.FieldRule;
+import net.ontopia.presto.spi.utils.SharedHandler;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
-public class OrFieldRule extends BooleanFieldRule {
+public class OrFieldRule extends BooleanFieldRule implements SharedHandler {
 
     @Override
     protected boolean getResult(FieldFlag flag, PrestoContextRules rules, PrestoField field, ObjectNode config) {
         if (config != null) {
             JsonNode handlers = config.path("handlers");
             if (!handlers.isMissingNode()) {
-                for (FieldRule handler : AbstractHandler.getHandlers(getDataProvider(), getSchemaProvider(), FieldRule.class, handlers)) {
+                for (FieldRule handler : CompiledRules.getRules(getSchemaProvider(), FieldRule.class, handlers).getHandlers(rules.getDataProvider(), getSchemaProvider())) {
                     Boolean result = handler.getValue(flag, rules, field);
                     if (result != null && result) {
                         return true;
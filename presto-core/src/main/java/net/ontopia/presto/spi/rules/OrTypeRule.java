@@ -1,21 +1,21 @@
 package net.ontopia.presto.spi.rules;
 
-import net.ontopia.presto.spi.utils.AbstractHandler;
 import net.ontopia.presto.spi.utils.PrestoContextRules;
 import net.ontopia.presto.spi.utils.PrestoContextRules.TypeFlag;
 import net.ontopia.presto.spi.utils.PrestoContextRules.TypeRule;
+import net.ontopia.presto.spi.utils.SharedHandler;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
-public class OrTypeRule extends BooleanTypeRule {
+public class OrTypeRule extends BooleanTypeRule implements SharedHandler {
 
     @Override
     protected boolean getResult(TypeFlag flag, PrestoContextRules rules, ObjectNode config) {
         if (config != null) {
             JsonNode handlers = config.path("handlers");
             if (!handlers.isMissingNode()) {
-                for (TypeRule handler : AbstractHandler.getHandlers(getDataProvider(), getSchemaProvider(), TypeRule.class, handlers)) {
+                for (TypeRule handler : CompiledRules.getRules(getSchemaProvider(), TypeRule.class, handlers).getHandlers(rules.getDataProvider(), getSchemaProvider())) {
                     Boolean result = handler.getValue(flag, rules);
                     if (result != null && result) {
                         return true;
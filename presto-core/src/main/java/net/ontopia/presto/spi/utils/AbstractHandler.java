@@ -1,5 +1,6 @@
 package net.ontopia.presto.spi.utils;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -15,6 +16,8 @@ public class AbstractHandler implements Handler {
     private ObjectNode config;
     private PrestoDataProvider dataProvider;
     private PrestoSchemaProvider schemaProvider;
+    // shared handlers are cached per schema provider, which they must not keep reachable
+    private WeakReference<PrestoSchemaProvider> sharedSchemaProvider;
     
     @Override
     public PrestoDataProvider getDataProvider() {
@@ -28,12 +31,19 @@ public class AbstractHandler implements Handler {
     
     @Override
     public PrestoSchemaProvider getSchemaProvider() {
+        if (sharedSchemaProvider != null) {
+            return sharedSchemaProvider.get();
+        }
         return schemaProvider;
     }
 
     @Override
     public void setSchemaProvider(PrestoSchemaProvider schemaProvider) {
-        this.schemaProvider = schemaProvider;
+        if (this instanceof SharedHandler) {
+            this.sharedSchemaProvider = (schemaProvider == null ? null : new WeakReference<PrestoSchemaProvider>(schemaProvider));
+        } else {
+            this.schemaProvider = schemaProvider;
+        }
     }
     
     @Override
@@ -68,49 +78,8 @@ public class AbstractHandler implements Handler {
     }
     
     public static <T extends Handler> T getHandler(PrestoDataProvider dataProvider, PrestoSchemaProvider schemaProvider, Class<T> klass, JsonNode processorNode) {
-        if (processorNode.isTextual()) {
-            String className = processorNode.textValue();
-            if (className != null) {
-                return getHandlerInstance(dataProvider, schemaProvider, klass, className, null);
-            }
-        } else if (processorNode.isObject()) {
-            if (processorNode.has("class")) {
-                String className = processorNode.path("class").textValue();
-                if (className != null) {
-                    return getHandlerInstance(dataProvider, schemaProvider, klass, className, (ObjectNode)processorNode);
-                }
-            } else if (processorNode.has("processor")) {
-                String ref = processorNode.path("processor").textValue();
-                ObjectNode extra = (ObjectNode)schemaProvider.getExtra();
-                if (extra != null) {
-                    JsonNode globalProcessorNode = extra.path("processors").path(ref);
-                    ObjectNode mergedProcessorNode = mergeObjectNodes(globalProcessorNode, processorNode);
-                    mergedProcessorNode.remove("processor"); // remove 'processor' entry to avoid recursion
-                    return getHandler(dataProvider, schemaProvider, klass, mergedProcessorNode);
-                }
-            } 
-        }
-//        log.warn("Could not find processor for config: {}", processorNode);
-        return null;
-    }
-
-    private static ObjectNode mergeObjectNodes(JsonNode n1, JsonNode n2) {
-        if (n1.isObject() && n2.isObject()) {
-            ObjectNode result = Utils.DEFAULT_OBJECT_MAPPER.createObjectNode();
-            result.putAll((ObjectNode)n1);
-            result.putAll((ObjectNode)n2);
-            return result;
-        } else if (n1.isObject()) {
-            ObjectNode result = Utils.DEFAULT_OBJECT_MAPPER.createObjectNode();
-            result.putAll((ObjectNode)n1);
-            return result;
-        } else if (n2.isObject()) {
-            ObjectNode result = Utils.DEFAULT_OBJECT_MAPPER.createObjectNode();
-            result.putAll((ObjectNode)n2);
-            return result;
-        } else {
-            return null;
-        }
+        HandlerRegistry registry = HandlerRegistry.getRegistry(schemaProvider);
+        return registry.getHandler(dataProvider, schemaProvider, klass, processorNode);
     }
 
     public static <T extends Handler> T getHandlerInstance(PrestoDataProvider dataProvider, PrestoSchemaProvider schemaProvider, Class<T> klass, String className, ObjectNode processorConfig) {
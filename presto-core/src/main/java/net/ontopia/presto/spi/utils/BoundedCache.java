@@ -0,0 +1,104 @@
+package net.ontopia.presto.spi.utils;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.ontopia.presto.spi.PrestoSchemaProvider;
+
+/**
+ * Thread-safe cache for values compiled from configuration. Once the cache
+ * holds maxSize entries new values are still returned, but no longer stored,
+ * so configs that are built per call cannot make the cache grow without bound.
+ */
+public class BoundedCache<K,V> {
+
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    private final ConcurrentMap<K,V> entries = new ConcurrentHashMap<K,V>();
+    private final int maxSize;
+
+    public BoundedCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public BoundedCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public V get(K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Stores the value unless the key is already mapped or the cache is full.
+     * Returns the value that callers should use.
+     */
+    public V put(K key, V value) {
+        if (entries.size() >= maxSize) {
+            return value;
+        }
+        V existing = entries.putIfAbsent(key, value);
+        return existing == null ? value : existing;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * One bounded cache per schema provider. Schema providers are weakly
+     * referenced, so caches go away with the schema they were built from.
+     */
+    public static class PerSchema<K,V> {
+
+        private final Map<PrestoSchemaProvider,BoundedCache<K,V>> caches = new WeakHashMap<PrestoSchemaProvider,BoundedCache<K,V>>();
+
+        public BoundedCache<K,V> get(PrestoSchemaProvider schemaProvider) {
+            synchronized (caches) {
+                BoundedCache<K,V> cache = caches.get(schemaProvider);
+                if (cache == null) {
+                    cache = new BoundedCache<K,V>();
+                    caches.put(schemaProvider, cache);
+                }
+                return cache;
+            }
+        }
+    }
+
+    /**
+     * Key matching the identity of a config node together with a qualifier
+     * compared by equals. Config nodes are immutable once the schema is loaded,
+     * so identity is both cheaper and safer than structural equality.
+     */
+    public static class IdentityKey {
+
+        private final Object node;
+        private final Object qualifier;
+
+        public IdentityKey(Object node, Object qualifier) {
+            this.node = node;
+            this.qualifier = qualifier;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other instanceof IdentityKey) {
+                IdentityKey o = (IdentityKey)other;
+                return o.node == node && (qualifier == null ? o.qualifier == null : qualifier.equals(o.qualifier));
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(node) * 31 + (qualifier == null ? 0 : qualifier.hashCode());
+        }
+    }
+
+}
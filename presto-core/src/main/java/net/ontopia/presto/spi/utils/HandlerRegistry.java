@@ -0,0 +1,157 @@
+package net.ontopia.presto.spi.utils;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import net.ontopia.presto.spi.PrestoDataProvider;
+import net.ontopia.presto.spi.PrestoSchemaProvider;
+import net.ontopia.presto.spi.utils.BoundedCache.IdentityKey;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Per-schema registry of handler factories keyed by the identity of the
+ * handler config node. Class lookup and 'processor' reference merging are
+ * done once per node. Registries are held weakly by schema provider, so
+ * nothing they cache may refer to the schema provider strongly.
+ */
+public class HandlerRegistry {
+
+    private static final Map<PrestoSchemaProvider,HandlerRegistry> registries = new WeakHashMap<PrestoSchemaProvider,HandlerRegistry>();
+
+    private static final HandlerFactory<Handler> NO_HANDLER = new HandlerFactory<Handler>(null, null, false);
+
+    private final BoundedCache<IdentityKey,HandlerFactory<?>> factories = new BoundedCache<IdentityKey,HandlerFactory<?>>();
+
+    private HandlerRegistry() {
+    }
+
+    public static HandlerRegistry getRegistry(PrestoSchemaProvider schemaProvider) {
+        synchronized (registries) {
+            HandlerRegistry registry = registries.get(schemaProvider);
+            if (registry == null) {
+                registry = new HandlerRegistry();
+                registries.put(schemaProvider, registry);
+            }
+            return registry;
+        }
+    }
+
+    public <T extends Handler> T getHandler(PrestoDataProvider dataProvider, PrestoSchemaProvider schemaProvider, Class<T> klass, JsonNode handlerNode) {
+        return getFactory(schemaProvider, klass, handlerNode).getHandler(dataProvider, schemaProvider);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Handler> HandlerFactory<T> getFactory(PrestoSchemaProvider schemaProvider, Class<T> klass, JsonNode handlerNode) {
+        IdentityKey key = new IdentityKey(handlerNode, klass);
+        HandlerFactory<T> factory = (HandlerFactory<T>)factories.get(key);
+        if (factory == null) {
+            factory = (HandlerFactory<T>)factories.put(key, createFactory(schemaProvider, klass, handlerNode));
+        }
+        return factory;
+    }
+
+    private <T extends Handler> HandlerFactory<T> createFactory(PrestoSchemaProvider schemaProvider, Class<T> klass, JsonNode handlerNode) {
+        return createFactory(schemaProvider, klass, handlerNode, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Handler> HandlerFactory<T> createFactory(PrestoSchemaProvider schemaProvider, Class<T> klass, JsonNode handlerNode, boolean isMerged) {
+        if (handlerNode.isTextual()) {
+            String className = handlerNode.textValue();
+            if (className != null) {
+                return new HandlerFactory<T>(Utils.classOf(className, klass), null, false);
+            }
+        } else if (handlerNode.isObject()) {
+            if (handlerNode.has("class")) {
+                String className = handlerNode.path("class").textValue();
+                if (className != null) {
+                    return new HandlerFactory<T>(Utils.classOf(className, klass), (ObjectNode)handlerNode, isMerged);
+                }
+            } else if (handlerNode.has("processor")) {
+                String ref = handlerNode.path("processor").textValue();
+                ObjectNode extra = (ObjectNode)schemaProvider.getExtra();
+                if (extra != null) {
+                    JsonNode globalHandlerNode = extra.path("processors").path(ref);
+                    ObjectNode mergedHandlerNode = mergeObjectNodes(globalHandlerNode, handlerNode);
+                    mergedHandlerNode.remove("processor"); // remove 'processor' entry to avoid recursion
+                    return createFactory(schemaProvider, klass, mergedHandlerNode, true);
+                }
+            } 
+        }
+        return (HandlerFactory<T>)NO_HANDLER;
+    }
+
+    private static ObjectNode mergeObjectNodes(JsonNode n1, JsonNode n2) {
+        if (n1.isObject() && n2.isObject()) {
+            ObjectNode result = Utils.DEFAULT_OBJECT_MAPPER.createObjectNode();
+            result.putAll((ObjectNode)n1);
+            result.putAll((ObjectNode)n2);
+            return result;
+        } else if (n1.isObject()) {
+            ObjectNode result = Utils.DEFAULT_OBJECT_MAPPER.createObjectNode();
+            result.putAll((ObjectNode)n1);
+            return result;
+        } else if (n2.isObject()) {
+            ObjectNode result = Utils.DEFAULT_OBJECT_MAPPER.createObjectNode();
+            result.putAll((ObjectNode)n2);
+            return result;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Creates the handlers for one config node. Shared handlers are only
+     * created once. A merged 'processor' config is made by the registry, not
+     * read from the schema, so each handler that is not shared gets its own
+     * copy of it.
+     */
+    public static class HandlerFactory<T extends Handler> {
+
+        private final Class<? extends T> handlerClass;
+        private final ObjectNode config;
+        private final boolean copyConfig;
+        private final boolean shared;
+
+        private volatile T sharedHandler;
+
+        private HandlerFactory(Class<? extends T> handlerClass, ObjectNode config, boolean copyConfig) {
+            this.handlerClass = handlerClass;
+            this.config = config;
+            this.copyConfig = copyConfig && config != null;
+            this.shared = handlerClass != null && SharedHandler.class.isAssignableFrom(handlerClass);
+        }
+
+        /**
+         * Returns the handler class, or null if the config node does not refer to one.
+         */
+        public Class<? extends T> getHandlerClass() {
+            return handlerClass;
+        }
+
+        public T getHandler(PrestoDataProvider dataProvider, PrestoSchemaProvider schemaProvider) {
+            if (handlerClass == null) {
+                return null;
+            } else if (shared) {
+                T handler = sharedHandler;
+                if (handler == null) {
+                    handler = Utils.newInstanceOf(handlerClass);
+                    handler.setConfig(config);
+                    // held weakly by AbstractHandler, so the registry of the schema can be collected
+                    handler.setSchemaProvider(schemaProvider);
+                    sharedHandler = handler;
+                }
+                return handler;
+            } else {
+                T handler = Utils.newInstanceOf(handlerClass);
+                handler.setConfig(copyConfig ? config.deepCopy() : config);
+                handler.setDataProvider(dataProvider);
+                handler.setSchemaProvider(schemaProvider);
+                return handler;
+            }
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package net.ontopia.presto.spi.utils;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -14,6 +15,8 @@ public class PatternValueUtils {
 
     private static final Pattern PATTERN = Pattern.compile("\\$\\{([\\:\\.\\-\\w]+)\\}");
 
+    private static final BoundedCache<String,Template> templates = new BoundedCache<String,Template>();
+
     public static String getValueByPattern(PrestoVariableResolver variableResolver, Object value, ObjectNode config) {
         if (config != null) {
             JsonNode patternNode = config.path("pattern");
@@ -36,19 +39,19 @@ public class PatternValueUtils {
     }
 
     public static String getValueByPattern(PrestoVariableResolver variableResolver, Object value, String pattern) {
-        String result = pattern;
-        Matcher matcher = PATTERN.matcher(pattern);
-        while (matcher.find()) {
-            String variable = matcher.group(1);
-            String replacement = getValue(variableResolver, value, variable);
-            result = result.replaceFirst("\\$\\{" + variable + "\\}", replacement);
+        return getTemplate(pattern).render(variableResolver, value);
+    }
+
+    private static Template getTemplate(String pattern) {
+        Template template = templates.get(pattern);
+        if (template == null) {
+            template = templates.put(pattern, Template.compile(pattern));
         }
-        return result;
+        return template;
     }
 
-    private static String getValue(PrestoVariableResolver variableResolver, Object value, String variable) {
+    private static void appendValue(StringBuilder sb, PrestoVariableResolver variableResolver, Object value, String variable) {
         List<? extends Object> values = variableResolver.getValues(value, variable);
-        StringBuilder sb = new StringBuilder();
         for (int i=0; i < values.size(); i++) {
             if (i > 0) {
                 sb.append(", ");
@@ -60,7 +63,51 @@ public class PatternValueUtils {
                 sb.append(v);
             }
         }
-        return sb.toString();
+    }
+
+    /**
+     * A pattern parsed into alternating literal and variable segments. The
+     * literals array is always one longer than the variables array.
+     */
+    private static class Template {
+
+        private final String[] literals;
+        private final String[] variables;
+        private final int length;
+
+        private Template(String[] literals, String[] variables, int length) {
+            this.literals = literals;
+            this.variables = variables;
+            this.length = length;
+        }
+
+        private static Template compile(String pattern) {
+            List<String> literals = new ArrayList<String>();
+            List<String> variables = new ArrayList<String>();
+            Matcher matcher = PATTERN.matcher(pattern);
+            int start = 0;
+            while (matcher.find()) {
+                literals.add(pattern.substring(start, matcher.start()));
+                variables.add(matcher.group(1));
+                start = matcher.end();
+            }
+            literals.add(pattern.substring(start));
+            return new Template(literals.toArray(new String[literals.size()]), 
+                    variables.toArray(new String[variables.size()]), pattern.length());
+        }
+
+        private String render(PrestoVariableResolver variableResolver, Object value) {
+            if (variables.length == 0) {
+                return literals[0];
+            }
+            StringBuilder sb = new StringBuilder(length + 16);
+            for (int i=0; i < variables.length; i++) {
+                sb.append(literals[i]);
+                appendValue(sb, variableResolver, value, variables[i]);
+            }
+            sb.append(literals[variables.length]);
+            return sb.toString();
+        }
     }
 
 }
@@ -3,6 +3,8 @@ package net.ontopia.presto.spi.utils;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import net.ontopia.presto.spi.PrestoDataProvider;
 import net.ontopia.presto.spi.PrestoField;
@@ -15,6 +17,7 @@ import net.ontopia.presto.spi.functions.PrestoFieldFunction;
 import net.ontopia.presto.spi.functions.PrestoFieldFunctionUtils;
 import net.ontopia.presto.spi.resolve.PrestoResolver;
 import net.ontopia.presto.spi.rules.DelegatingContextRules;
+import net.ontopia.presto.spi.rules.PathExpressions;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -39,6 +42,7 @@ public abstract class PrestoContextRules {
         isSortedField,
         isSortedAscendingField,
         isPageableField,
+        isResolveSortedField,
         isReadOnlyField,
         isEditableField,
         isCreatableField,
@@ -82,9 +86,14 @@ public abstract class PrestoContextRules {
     public static abstract class ContextRulesHandler extends AbstractHandler implements TypeRule, ViewRule, FieldRule, FieldValueRule {
     }
 
+    private static final Object NULL_FLAG = new Object();
+
     private ContextRulesHandler handler;
     private boolean readOnlyType;
 
+    private final ConcurrentMap<FlagKey,Object> flags = new ConcurrentHashMap<FlagKey,Object>();
+    private final ConcurrentMap<Object,List<? extends Object>> ruleValues = new ConcurrentHashMap<Object,List<? extends Object>>();
+
     private final PrestoContext context;
     private final PrestoType type;
     
@@ -125,7 +134,13 @@ public abstract class PrestoContextRules {
     }
     
     private boolean isTypeHandlerFlag(TypeFlag flag, boolean defaultValue) {
-        Boolean result = handler.getValue(flag, this);
+        FlagKey key = new FlagKey(flag, null, null);
+        Boolean result;
+        if (flags.containsKey(key)) {
+            result = getFlag(key);
+        } else {
+            result = putFlag(key, handler.getValue(flag, this));
+        }
         if (result != null) {
             return result;
         }
@@ -133,7 +148,13 @@ public abstract class PrestoContextRules {
     }
 
     private boolean isViewHandlerFlag(ViewFlag flag, PrestoView view, boolean defaultValue) {
-        Boolean result = handler.getValue(flag, this, view);
+        FlagKey key = new FlagKey(flag, view, null);
+        Boolean result;
+        if (flags.containsKey(key)) {
+            result = getFlag(key);
+        } else {
+            result = putFlag(key, handler.getValue(flag, this, view));
+        }
         if (result != null) {
             return result;
         }
@@ -141,7 +162,13 @@ public abstract class PrestoContextRules {
     }
 
     private boolean isFieldHandlerFlag(FieldFlag flag, PrestoField field, boolean defaultValue) {
-        Boolean result = handler.getValue(flag, this, field);
+        FlagKey key = new FlagKey(flag, field, null);
+        Boolean result;
+        if (flags.containsKey(key)) {
+            result = getFlag(key);
+        } else {
+            result = putFlag(key, handler.getValue(flag, this, field));
+        }
         if (result != null) {
             return result;
         }
@@ -149,13 +176,71 @@ public abstract class PrestoContextRules {
     }
 
     private boolean isFieldValueHandlerFlag(FieldValueFlag flag, PrestoField field, Object value, boolean defaultValue) {
-        Boolean result = handler.getValue(flag, this, field, value);
+        Object valueKey = getValueKey(value);
+        Boolean result;
+        if (valueKey == null) {
+            result = handler.getValue(flag, this, field, value);
+        } else {
+            FlagKey key = new FlagKey(flag, field, valueKey);
+            if (flags.containsKey(key)) {
+                result = getFlag(key);
+            } else {
+                result = putFlag(key, handler.getValue(flag, this, field, value));
+            }
+        }
         if (result != null) {
             return result;
         }
         return defaultValue;
     }
 
+    private Object getValueKey(Object value) {
+        if (value instanceof PrestoTopic) {
+            return ((PrestoTopic)value).getId();
+        } else if (value instanceof String) {
+            return value;
+        }
+        return null;
+    }
+
+    private Boolean getFlag(FlagKey key) {
+        Object result = flags.get(key);
+        return (result == NULL_FLAG ? null : (Boolean)result);
+    }
+
+    private Boolean putFlag(FlagKey key, Boolean value) {
+        flags.put(key, value == null ? NULL_FLAG : value);
+        return value;
+    }
+
+    // handler results are memoized per rules instance; flags keyed by field/view identity
+    private static class FlagKey {
+
+        private final Enum<?> flag;
+        private final Object target;
+        private final Object valueKey;
+
+        private FlagKey(Enum<?> flag, Object target, Object valueKey) {
+            this.flag = flag;
+            this.target = target;
+            this.valueKey = valueKey;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other instanceof FlagKey) {
+                FlagKey o = (FlagKey)other;
+                return o.flag == flag && o.target == target && Utils.equals(o.valueKey, valueKey);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return (flag.hashCode() * 31 + System.identityHashCode(target)) * 31 + (valueKey == null ? 0 : valueKey.hashCode());
+        }
+    }
+
     public boolean isReadOnlyType() {
         return readOnlyType;
     }
@@ -211,6 +296,30 @@ public abstract class PrestoContextRules {
         return isFieldHandlerFlag(FieldFlag.isPageableField, field, field.isPageable());
     }
 
+    /**
+     * Returns true if the resolver of the field returns its values already
+     * sorted, so that a sorted pageable field can be paged server-side. The
+     * resolver is given the projection, and must honour its orderBy, or
+     * otherwise apply the field's default order. Enabled with the field
+     * extra "resolveSorted" : true.
+     */
+    public boolean isResolveSortedField(PrestoField field) {
+        boolean defaultValue = false;
+        ObjectNode extra = ExtraUtils.getFieldExtraNode(field);
+        if (extra != null) {
+            defaultValue = extra.path("resolveSorted").asBoolean(false);
+        }
+        return isFieldHandlerFlag(FieldFlag.isResolveSortedField, field, defaultValue);
+    }
+
+    /**
+     * Returns true if the field values are paged server-side, i.e. the field
+     * is pageable and either not sorted or sorted by its resolver.
+     */
+    public boolean isServerPagedField(PrestoField field, Projection projection) {
+        return isPageableField(field) && (!isSortedField(field, projection) || isResolveSortedField(field));
+    }
+
     // mutability
 
     public boolean isReadOnlyField(PrestoField field) {
@@ -290,8 +399,8 @@ public abstract class PrestoContextRules {
     }
 
     protected FieldValues getResolveFieldValues(PrestoField field, Projection projection) {
-        // server-side paging (only if not sorting)
-        if (isPageableField(field) && !isSortedField(field, projection)) {
+        // server-side paging (only if not sorting, or if the resolver sorts)
+        if (isServerPagedField(field, projection)) {
             PrestoTopic.PagedValues pagedValues;
             if (projection == null) {
                 pagedValues = context.resolveValues(field, PrestoProjection.FIRST_PAGE);
@@ -353,6 +462,48 @@ public abstract class PrestoContextRules {
         return FieldValues.EMPTY;  
     }
 
+    /**
+     * Returns the values of the given field path as seen by rules. The values are
+     * resolved once per rules instance and shared by all flags that read them.
+     */
+    public List<? extends Object> getRuleValues(String path) {
+        List<? extends Object> result = ruleValues.get(path);
+        if (result == null) {
+            result = PathExpressions.getValues(this, path);
+            ruleValues.putIfAbsent(path, result);
+        }
+        return result;
+    }
+
+    public List<? extends Object> getRuleValues(PrestoField field) {
+        FieldKey key = new FieldKey(field);
+        List<? extends Object> result = ruleValues.get(key);
+        if (result == null) {
+            result = getFieldValues(field).getValues();
+            ruleValues.putIfAbsent(key, result);
+        }
+        return result;
+    }
+
+    private static class FieldKey {
+
+        private final PrestoField field;
+
+        private FieldKey(PrestoField field) {
+            this.field = field;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof FieldKey && ((FieldKey)other).field == field;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(field);
+        }
+    }
+
     public boolean isUpdatableOnCreateField(PrestoField field) {
         PrestoTopic topic = context.getTopic();
         if (topic != null && topic.isLazy()) {
@@ -44,6 +44,16 @@ public abstract class PrestoDefaultChangeSet implements PrestoChangeSet {
         
     }
 
+    /**
+     * Optional interface for data providers that can write only the fields
+     * that were changed. Other data providers get update(topic).
+     */
+    public static interface PartialUpdateDataProvider extends DefaultDataProvider {
+
+        void update(PrestoTopic topic, Collection<PrestoField> updatedFields);
+
+    }
+
     public static interface DefaultTopic extends PrestoTopic {
         
         DefaultDataProvider getDataProvider();
@@ -67,6 +77,7 @@ public abstract class PrestoDefaultChangeSet implements PrestoChangeSet {
         Type getType();
         PrestoTopic getTopic();
         boolean isTopicUpdated();
+        Collection<PrestoField> getUpdatedFields();
     }
 
     class ChangeDelete implements Change {
@@ -86,6 +97,10 @@ public abstract class PrestoDefaultChangeSet implements PrestoChangeSet {
         public boolean isTopicUpdated() {
             return true;
         }
+        @Override
+        public Collection<PrestoField> getUpdatedFields() {
+            return Collections.emptyList();
+        }
     }
 
     private final DefaultDataProvider dataProvider;
@@ -234,7 +249,11 @@ public abstract class PrestoDefaultChangeSet implements PrestoChangeSet {
                     dataProvider.create(topic);                
                 } else if (change.getType().equals(Change.Type.UPDATE)) {
                     if (!deleted.contains(topic)) {
-                        dataProvider.update(topic);
+                        if (dataProvider instanceof PartialUpdateDataProvider) {
+                            ((PartialUpdateDataProvider)dataProvider).update(topic, change.getUpdatedFields());
+                        } else {
+                            dataProvider.update(topic);
+                        }
                     }
                 } else if (change.getType().equals(Change.Type.DELETE)) {
                     dataProvider.delete(topic);                
@@ -1,5 +1,6 @@
 package net.ontopia.presto.spi.utils;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -180,4 +181,9 @@ public class PrestoDefaultUpdate implements PrestoUpdate, PrestoDefaultChangeSet
         return dirtyFields.containsKey(field.getId());
     }
 
+    @Override
+    public Collection<PrestoField> getUpdatedFields() {
+        return new ArrayList<PrestoField>(dirtyFields.values());
+    }
+
 }
@@ -0,0 +1,149 @@
+package net.ontopia.presto.spi.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Named, bounded thread pools shared by the parts of Presto that do work
+ * concurrently. Pools are created on first use. Use setExecutor to inject
+ * a container managed executor, and call shutdown when the application is
+ * stopped so that no threads outlive it.
+ */
+public class PrestoExecutors {
+
+    public static final int DEFAULT_THREADS = 16;
+
+    private static final Map<String,ExecutorService> executors = new HashMap<String,ExecutorService>();
+
+    // tasks submitted from a task run inline, so that nested work cannot starve a pool
+    private static final ThreadLocal<Boolean> inTask = new ThreadLocal<Boolean>();
+
+    public static ExecutorService getExecutor(String name) {
+        return getExecutor(name, DEFAULT_THREADS);
+    }
+
+    public static ExecutorService getExecutor(String name, int threads) {
+        synchronized (executors) {
+            ExecutorService executor = executors.get(name);
+            if (executor == null) {
+                executor = newExecutor(name, threads);
+                executors.put(name, executor);
+            }
+            return executor;
+        }
+    }
+
+    /**
+     * Replaces the executor with the given name. The previous executor is
+     * not shut down, as it might have been injected too.
+     */
+    public static void setExecutor(String name, ExecutorService executor) {
+        synchronized (executors) {
+            executors.put(name, executor);
+        }
+    }
+
+    /**
+     * Shuts down all executors. New ones are created if they are used again.
+     */
+    public static void shutdown() {
+        List<ExecutorService> stopped;
+        synchronized (executors) {
+            stopped = new ArrayList<ExecutorService>(executors.values());
+            executors.clear();
+        }
+        for (ExecutorService executor : stopped) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ExecutorService newExecutor(final String name, int threads) {
+        final ClassLoader classLoader = PrestoExecutors.class.getClassLoader();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                // not the context class loader of whichever request created the thread
+                thread.setContextClassLoader(classLoader);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public static boolean isInTask() {
+        return Boolean.TRUE.equals(inTask.get());
+    }
+
+    /**
+     * Runs the tasks on the executor and waits for all of them to complete.
+     * If one of them fails the others are cancelled and its exception is
+     * rethrown. Tasks are run inline when called from within another task.
+     */
+    public static void invokeAll(ExecutorService executor, List<? extends Callable<Void>> tasks) {
+        if (isInTask()) {
+            for (Callable<Void> task : tasks) {
+                try {
+                    task.call();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return;
+        }
+        CompletionService<Void> completionService = new ExecutorCompletionService<Void>(executor);
+        List<Future<Void>> futures = new ArrayList<Future<Void>>(tasks.size());
+        try {
+            for (final Callable<Void> task : tasks) {
+                futures.add(completionService.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        inTask.set(Boolean.TRUE);
+                        try {
+                            return task.call();
+                        } finally {
+                            inTask.remove();
+                        }
+                    }
+                }));
+            }
+            for (int i=0; i < futures.size(); i++) {
+                completionService.take().get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            throw new RuntimeException(cause);
+        } finally {
+            // no-op for completed tasks; stops the siblings of a failed one
+            for (Future<Void> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,12 @@
+package net.ontopia.presto.spi.utils;
+
+/**
+ * Optional interface for schema providers that can tell which revision of
+ * the schema they hold. The revision must be stable across restarts and
+ * change whenever the schema changes, as it is used in entity tags.
+ */
+public interface PrestoSchemaRevision {
+
+    String getSchemaRevision();
+
+}
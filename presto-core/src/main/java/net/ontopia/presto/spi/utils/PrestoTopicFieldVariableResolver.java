@@ -1,13 +1,24 @@
 package net.ontopia.presto.spi.utils;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import net.ontopia.presto.spi.PrestoDataProvider;
 import net.ontopia.presto.spi.PrestoField;
 import net.ontopia.presto.spi.PrestoTopic;
 import net.ontopia.presto.spi.PrestoType;
+import net.ontopia.presto.spi.jackson.JacksonDataProvider;
+import net.ontopia.presto.spi.jackson.JacksonTopic;
 import net.ontopia.presto.spi.resolve.PrestoResolver;
 
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
 public class PrestoTopicFieldVariableResolver implements PrestoVariableResolver {
 
     private final PrestoResolver resolver;
@@ -44,4 +55,119 @@ public class PrestoTopicFieldVariableResolver implements PrestoVariableResolver
         }
     }
 
+    /**
+     * Returns the values of the variable for all the given values, in the
+     * same order as calling getValues for each of them would. Stored
+     * reference fields are looked up with a single call per data provider
+     * instead of one per value.
+     */
+    public List<? extends Object> getValues(Collection<? extends Object> values, String variable) {
+        List<Batch> batches = new ArrayList<Batch>();
+        // either the values of a single value, or the ids to expand from a batch
+        List<Object> parts = new ArrayList<Object>(values.size());
+        for (Object value : values) {
+            PrestoField valueField = getBatchField(value, variable);
+            if (valueField == null) {
+                parts.add(getValues(value, variable));
+            } else {
+                JacksonTopic topic = (JacksonTopic)value;
+                Batch batch = getBatch(batches, topic.getDataProvider(), topic.isStubField(valueField));
+                List<String> topicIds = topic.getStoredTopicIds(valueField);
+                batch.topicIds.addAll(topicIds);
+                parts.add(new BatchPart(batch, topicIds));
+            }
+        }
+        for (Batch batch : batches) {
+            batch.fetch();
+        }
+        List<Object> result = new ArrayList<Object>();
+        for (Object part : parts) {
+            if (part instanceof BatchPart) {
+                ((BatchPart)part).expand(result);
+            } else {
+                result.addAll((List<?>)part);
+            }
+        }
+        return result;
+    }
+
+    private static Batch getBatch(List<Batch> batches, PrestoDataProvider dataProvider, boolean stubs) {
+        for (Batch batch : batches) {
+            if (batch.dataProvider == dataProvider && batch.stubs == stubs) {
+                return batch;
+            }
+        }
+        Batch batch = new Batch(dataProvider, stubs);
+        batches.add(batch);
+        return batch;
+    }
+
+    private static class Batch {
+
+        private final PrestoDataProvider dataProvider;
+        private final boolean stubs;
+        private final Set<String> topicIds = new LinkedHashSet<String>();
+        private final Map<String,PrestoTopic> topics = new HashMap<String,PrestoTopic>();
+
+        Batch(PrestoDataProvider dataProvider, boolean stubs) {
+            this.dataProvider = dataProvider;
+            this.stubs = stubs;
+        }
+
+        void fetch() {
+            if (!topicIds.isEmpty()) {
+                Collection<PrestoTopic> result;
+                if (stubs) {
+                    result = ((JacksonDataProvider)dataProvider).getTopicStubsByIds(topicIds);
+                } else {
+                    result = dataProvider.getTopicsByIds(topicIds);
+                }
+                for (PrestoTopic topic : result) {
+                    topics.put(topic.getId(), topic);
+                }
+            }
+        }
+    }
+
+    private static class BatchPart {
+
+        private final Batch batch;
+        private final List<String> topicIds;
+
+        BatchPart(Batch batch, List<String> topicIds) {
+            this.batch = batch;
+            this.topicIds = topicIds;
+        }
+
+        void expand(List<Object> result) {
+            for (String topicId : topicIds) {
+                PrestoTopic topic = batch.topics.get(topicId);
+                if (topic != null) {
+                    result.add(topic);
+                }
+            }
+        }
+    }
+
+    private PrestoField getBatchField(Object value, String variable) {
+        if (!(value instanceof JacksonTopic) || variable.startsWith(":")) {
+            return null;
+        }
+        JacksonTopic topic = (JacksonTopic)value;
+        PrestoType type = Utils.getTopicType(topic, resolver.getSchemaProvider());
+        boolean stored = variable.startsWith("#");
+        PrestoField valueField = type.getFieldById(stored ? variable.substring(1) : variable);
+        if (!valueField.isReferenceField() || valueField.isInline()) {
+            return null;
+        }
+        if (!stored) {
+            // fields with a resolve config are not stored values
+            ObjectNode extra = (ObjectNode)valueField.getExtra();
+            if (extra != null && extra.has("resolve")) {
+                return null;
+            }
+        }
+        return valueField;
+    }
+
 }
@@ -3,15 +3,15 @@ package net.ontopia.presto.spi.utils;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
 import net.ontopia.presto.spi.PrestoDataProvider;
 import net.ontopia.presto.spi.PrestoSchemaProvider;
+import net.ontopia.presto.spi.utils.BoundedCache.IdentityKey;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -21,6 +21,9 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 
 public class PrestoVariableContext {
 
+    private static final BoundedCache.PerSchema<IdentityKey,SubstitutionPlan> plans =
+            new BoundedCache.PerSchema<IdentityKey,SubstitutionPlan>();
+
     private final PrestoSchemaProvider schemaProvider;
     private final PrestoDataProvider dataProvider;
     private final ObjectMapper mapper = Utils.DEFAULT_OBJECT_MAPPER;
@@ -47,21 +50,20 @@ public class PrestoVariableContext {
     }
 
     private Collection<JsonNode> replaceVariablesValue(PrestoVariableResolver variableResolver, Object value, JsonNode key) {
-        // find set of variables
-        Collection<String> varNames = new HashSet<String>();
-        findVariables(key, varNames);
-        if (varNames.isEmpty()) {
+        SubstitutionPlan plan = getPlan(key);
+        String[] varNames = plan.variables;
+        if (varNames.length == 0) {
             return Collections.singletonList(key);
         }
 
         int totalSize = 1;
-        Map<String,List<? extends Object>> varValues = new HashMap<String,List<? extends Object>>();
-        for (String variable : varNames) {
-            List<? extends Object> valueStrings = variableResolver.getValues(value, variable);
-            varValues.put(variable, valueStrings);
+        List<?>[] varValues = new List<?>[varNames.length];
+        for (int i=0; i < varNames.length; i++) {
+            List<? extends Object> valueStrings = variableResolver.getValues(value, varNames[i]);
+            varValues[i] = valueStrings;
             totalSize = totalSize * valueStrings.size();
         }
-        int varCount = varValues.size(); // number of variables
+        int varCount = varNames.length; // number of variables
         int arraySize; // size of array
         if (totalSize == 0) {
             arraySize = 0;
@@ -78,87 +80,35 @@ public class PrestoVariableContext {
         // A:[] B[2] -> null
         
         // make keys from cross-product of variable values
-        Map<String,Object> map = new HashMap<String,Object>();
-        Collection<JsonNode> keys = new ArrayList<JsonNode>();
+        JsonNodeFactory nodeFactory = getObjectMapper().getNodeFactory();
+        String[] row = new String[varCount];
+        Collection<JsonNode> keys = new ArrayList<JsonNode>(arrayCount);
         for (int aindex=0; aindex < arrayCount; aindex++) {
-            for (String vn : varNames) {
-                List<? extends Object> values = varValues.get(vn);
+            for (int i=0; i < varCount; i++) {
+                List<?> values = varValues[i];
                 int vindex = aindex % values.size();
-                map.put(vn, values.get(vindex));
+                row[i] = toValueString(values.get(vindex));
             }
-            keys.add(replaceVariables(map, key));
+            keys.add(plan.root.build(nodeFactory, row));
         }
         return keys;
     }
 
-    private JsonNode replaceVariables(Map<String, ? extends Object> variables, JsonNode node) {
-        JsonNodeFactory nodeFactory = getObjectMapper().getNodeFactory();
-        if (node.isObject()) {
-            ObjectNode onode = (ObjectNode)node;
-            List<String> keys = new ArrayList<String>(onode.size());
-            Iterator<String> kiter = onode.fieldNames();
-            while (kiter.hasNext()) {
-                keys.add(kiter.next());
-            }
-            ObjectNode result = nodeFactory.objectNode();
-            for (String key : keys) {
-                if (isVariable(key)) {
-                    Object text = variables.get(getVariable(key));
-                    result.set(toValueString(text), replaceVariables(variables, onode.get(key)));
-                } else {
-                    result.set(getKey(key), replaceVariables(variables, onode.get(key)));
-                }
-            }
-            return result;
-        } else if (node.isArray()) {
-            ArrayNode anode = (ArrayNode)node;
-            ArrayNode result  = nodeFactory.arrayNode();
-            int size = anode.size();
-            for (int i=0; i < size; i++) {
-                result.add(replaceVariables(variables, anode.get(i)));
-            }
-            return result;
-        } else if (node.isTextual()) {
-            String key = node.textValue();
-            if (isVariable(key)) {
-                Object text = variables.get(getVariable(key));
-                return nodeFactory.textNode(toValueString(text));
-            } else {
-                return nodeFactory.textNode(getKey(key));
-            }
+    private SubstitutionPlan getPlan(JsonNode key) {
+        BoundedCache<IdentityKey,SubstitutionPlan> cache = plans.get(schemaProvider);
+        IdentityKey nodeKey = new IdentityKey(key, null);
+        SubstitutionPlan plan = cache.get(nodeKey);
+        if (plan == null) {
+            plan = cache.put(nodeKey, SubstitutionPlan.compile(key));
         }
-        return getObjectMapper().valueToTree(node);
+        return plan;
     }
 
-    private String toValueString(Object value) {
+    private static String toValueString(Object value) {
         return value == null ? null : value.toString();
     }
     
-    private void findVariables(JsonNode node, Collection<String> variables) {
-        if (node.isTextual()) {
-            String key = node.textValue();
-            if (isVariable(key)) {
-                variables.add(getVariable(key));
-            }            
-        } else if (node.isObject()) {
-            ObjectNode onode = (ObjectNode)node;
-            Iterator<Entry<String, JsonNode>> fields = onode.fields();
-            while (fields.hasNext()) {
-                Entry<String,JsonNode> field = fields.next();
-                String key = field.getKey();
-                if (isVariable(key)) {
-                    variables.add(getVariable(key));
-                }
-                findVariables(field.getValue(), variables);
-            }
-        } else {
-            for (JsonNode child : node) {
-                findVariables(child, variables);
-            }
-        }
-    }
-
-    private boolean isVariable(String value) {
+    private static boolean isVariable(String value) {
         if (value.length() > 1 && value.charAt(0) == '$' && 
                 (Character.isLetter(value.charAt(1)) || value.charAt(1) == ':')) {
             return true;
@@ -166,7 +116,7 @@ public class PrestoVariableContext {
         return false;
     }
     
-    private String getVariable(String value) {
+    private static String getVariable(String value) {
         if (isVariable(value)) {
             // proper variable
             return value.substring(1);
@@ -174,7 +124,7 @@ public class PrestoVariableContext {
         throw new RuntimeException("Illegal variable: " + value);
     }
     
-    private String getKey(String value) {
+    private static String getKey(String value) {
         if (isVariable(value)) {
             throw new RuntimeException("Illegal key: " + value);
         }
@@ -193,4 +143,155 @@ public class PrestoVariableContext {
         return mapper;
     }
 
+    /**
+     * A query template analysed into the variables it uses and a tree of
+     * slots. Subtrees without variables are analysed once and copied into
+     * each generated key; only the paths leading to variable slots are
+     * rebuilt per key.
+     */
+    private static class SubstitutionPlan {
+
+        private final String[] variables;
+        private final Slot root;
+
+        private SubstitutionPlan(String[] variables, Slot root) {
+            this.variables = variables;
+            this.root = root;
+        }
+
+        private static SubstitutionPlan compile(JsonNode node) {
+            Map<String,Integer> variables = new LinkedHashMap<String,Integer>();
+            Slot root = compile(node, variables);
+            return new SubstitutionPlan(variables.keySet().toArray(new String[variables.size()]), root);
+        }
+
+        private static Slot compile(JsonNode node, Map<String,Integer> variables) {
+            if (node.isObject()) {
+                int size = node.size();
+                String[] keys = new String[size];
+                int[] keyVariables = new int[size];
+                Slot[] values = new Slot[size];
+                boolean constant = true;
+                int i = 0;
+                Iterator<Entry<String, JsonNode>> fields = node.fields();
+                while (fields.hasNext()) {
+                    Entry<String,JsonNode> field = fields.next();
+                    String key = field.getKey();
+                    if (isVariable(key)) {
+                        keyVariables[i] = getVariableIndex(getVariable(key), variables);
+                        constant = false;
+                    } else {
+                        keys[i] = getKey(key);
+                        keyVariables[i] = -1;
+                    }
+                    values[i] = compile(field.getValue(), variables);
+                    constant &= values[i] instanceof ConstantSlot;
+                    i++;
+                }
+                if (constant) {
+                    return new ConstantSlot(node);
+                }
+                return new ObjectSlot(keys, keyVariables, values);
+            } else if (node.isArray()) {
+                int size = node.size();
+                Slot[] values = new Slot[size];
+                boolean constant = true;
+                for (int i=0; i < size; i++) {
+                    values[i] = compile(node.get(i), variables);
+                    constant &= values[i] instanceof ConstantSlot;
+                }
+                if (constant) {
+                    return new ConstantSlot(node);
+                }
+                return new ArraySlot(values);
+            } else if (node.isTextual() && isVariable(node.textValue())) {
+                return new VariableSlot(getVariableIndex(getVariable(node.textValue()), variables));
+            }
+            return new ConstantSlot(node);
+        }
+
+        private static int getVariableIndex(String variable, Map<String,Integer> variables) {
+            Integer index = variables.get(variable);
+            if (index == null) {
+                index = variables.size();
+                variables.put(variable, index);
+            }
+            return index;
+        }
+    }
+
+    private static abstract class Slot {
+        abstract JsonNode build(JsonNodeFactory nodeFactory, String[] row);
+    }
+
+    private static class ConstantSlot extends Slot {
+
+        private final JsonNode node;
+
+        private ConstantSlot(JsonNode node) {
+            this.node = node.deepCopy();
+        }
+
+        @Override
+        JsonNode build(JsonNodeFactory nodeFactory, String[] row) {
+            // callers may modify the keys, so only value nodes can be shared
+            return node.isContainerNode() ? node.deepCopy() : node;
+        }
+    }
+
+    private static class VariableSlot extends Slot {
+
+        private final int index;
+
+        private VariableSlot(int index) {
+            this.index = index;
+        }
+
+        @Override
+        JsonNode build(JsonNodeFactory nodeFactory, String[] row) {
+            return nodeFactory.textNode(row[index]);
+        }
+    }
+
+    private static class ArraySlot extends Slot {
+
+        private final Slot[] values;
+
+        private ArraySlot(Slot[] values) {
+            this.values = values;
+        }
+
+        @Override
+        JsonNode build(JsonNodeFactory nodeFactory, String[] row) {
+            ArrayNode result = nodeFactory.arrayNode();
+            for (Slot value : values) {
+                result.add(value.build(nodeFactory, row));
+            }
+            return result;
+        }
+    }
+
+    private static class ObjectSlot extends Slot {
+
+        private final String[] keys;
+        private final int[] keyVariables;
+        private final Slot[] values;
+
+        private ObjectSlot(String[] keys, int[] keyVariables, Slot[] values) {
+            this.keys = keys;
+            this.keyVariables = keyVariables;
+            this.values = values;
+        }
+
+        @Override
+        JsonNode build(JsonNodeFactory nodeFactory, String[] row) {
+            ObjectNode result = nodeFactory.objectNode();
+            for (int i=0; i < values.length; i++) {
+                String key = keyVariables[i] < 0 ? keys[i] : row[keyVariables[i]];
+                result.set(key, values[i].build(nodeFactory, row));
+            }
+            return result;
+        }
+    }
+
 }
@@ -0,0 +1,11 @@
+package net.ontopia.presto.spi.utils;
+
+/**
+ * Marker for handlers that are stateless and thread-safe. Instances are
+ * created once per schema and configuration node and shared across
+ * requests. The data provider is never set on shared handlers, so
+ * implementations must get it from their method arguments instead.
+ */
+public interface SharedHandler extends Handler {
+
+}
@@ -1,5 +1,6 @@
 package net.ontopia.presto.spi.utils;
 
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
@@ -54,22 +55,44 @@ public class Utils {
             return c.compare(o1, o2);
     }
 
-    @SuppressWarnings("unchecked")
     public static final <T> T newInstanceOf(String className, Class<T> type, boolean warnIfDifferentType) {
+        return newInstanceOf(classOf(className, type));
+    }
+
+    @SuppressWarnings("unchecked")
+    public static final <T> Class<? extends T> classOf(String className, Class<T> type) {
         ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
         try {
             Class<?> klass = Class.forName(className, true, classLoader);
             if (type.isAssignableFrom(klass)) {
-                return (T) klass.newInstance();
+                return (Class<? extends T>) klass;
             } else {
                 throw new RuntimeException("Class " + className + " not assignable to " + type);                    
             }
         } catch (ClassNotFoundException e) {
             throw new RuntimeException("Class " + className + " not found.");
+        }
+    }
+
+    public static final <T> T newInstanceOf(Class<T> klass) {
+        String className = klass.getName();
+        try {
+            return klass.getDeclaredConstructor().newInstance();
         } catch (InstantiationException e) {
             throw new RuntimeException("Not able to instatiate class " + className + ".");
         } catch (IllegalAccessException e) {
             throw new RuntimeException("Not able to instatiate class " + className + " (illegal access).");
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException("Not able to instatiate class " + className + " (no default constructor).");
+        } catch (InvocationTargetException e) {
+            // rethrown as is, like Class.newInstance did
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new RuntimeException("Not able to instatiate class " + className + ".", cause);
         }
     }
 
@@ -0,0 +1,50 @@
+package net.ontopia.presto.spi.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import net.ontopia.presto.spi.utils.BoundedCache.IdentityKey;
+
+import org.junit.Test;
+
+public class BoundedCacheTest {
+
+    @Test
+    public void putKeepsFirstValue() {
+        BoundedCache<String,Object> cache = new BoundedCache<String,Object>();
+        Object first = new Object();
+        assertSame(first, cache.put("a", first));
+        assertSame(first, cache.put("a", new Object()));
+        assertSame(first, cache.get("a"));
+    }
+
+    @Test
+    public void fullCacheStoresNothing() {
+        BoundedCache<String,Object> cache = new BoundedCache<String,Object>(1);
+        cache.put("a", new Object());
+        Object value = new Object();
+        assertSame(value, cache.put("b", value));
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void identityKeys() {
+        String node = new String("x");
+        String equalNode = new String("x");
+        assertEquals(new IdentityKey(node, Boolean.TRUE), new IdentityKey(node, Boolean.TRUE));
+        assertFalse(new IdentityKey(node, Boolean.TRUE).equals(new IdentityKey(node, Boolean.FALSE)));
+        assertFalse(new IdentityKey(node, null).equals(new IdentityKey(equalNode, null)));
+    }
+
+    @Test
+    public void cachePerSchema() {
+        BoundedCache.PerSchema<String,Object> caches = new BoundedCache.PerSchema<String,Object>();
+        assertSame(caches.get(null), caches.get(null));
+        assertNotSame(caches.get(null), caches.get(new TestSchemaProvider()));
+    }
+
+}
@@ -0,0 +1,124 @@
+package net.ontopia.presto.spi.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.ref.WeakReference;
+
+import net.ontopia.presto.spi.PrestoSchemaProvider;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+public class HandlerRegistryTest {
+
+    public static class TestHandler extends AbstractHandler {
+    }
+
+    public static class TestSharedHandler extends AbstractHandler implements SharedHandler {
+    }
+
+    private JsonNode parse(String json) throws Exception {
+        return Utils.DEFAULT_OBJECT_MAPPER.readTree(json);
+    }
+
+    private JsonNode handlerNode(Class<?> klass) throws Exception {
+        return parse("{\"class\":\"" + klass.getName() + "\", \"a\":1}");
+    }
+
+    @Test
+    public void sharedHandlerIsCreatedOnce() throws Exception {
+        PrestoSchemaProvider schemaProvider = new TestSchemaProvider();
+        JsonNode node = handlerNode(TestSharedHandler.class);
+        Handler h1 = AbstractHandler.getHandler(null, schemaProvider, Handler.class, node);
+        Handler h2 = AbstractHandler.getHandler(null, schemaProvider, Handler.class, node);
+        assertSame(h1, h2);
+        assertSame(node, h1.getConfig());
+        assertSame(schemaProvider, h1.getSchemaProvider());
+        assertNull(h1.getDataProvider());
+
+        // another schema gets its own instance
+        Handler h3 = AbstractHandler.getHandler(null, new TestSchemaProvider(), Handler.class, node);
+        assertNotSame(h1, h3);
+    }
+
+    @Test
+    public void handlerIsCreatedPerCall() throws Exception {
+        PrestoSchemaProvider schemaProvider = new TestSchemaProvider();
+        JsonNode node = handlerNode(TestHandler.class);
+        Handler h1 = AbstractHandler.getHandler(null, schemaProvider, Handler.class, node);
+        Handler h2 = AbstractHandler.getHandler(null, schemaProvider, Handler.class, node);
+        assertNotSame(h1, h2);
+        assertSame(node, h1.getConfig());
+        assertSame(schemaProvider, h1.getSchemaProvider());
+    }
+
+    @Test
+    public void factoryIsCachedPerNode() throws Exception {
+        PrestoSchemaProvider schemaProvider = new TestSchemaProvider();
+        HandlerRegistry registry = HandlerRegistry.getRegistry(schemaProvider);
+        assertSame(registry, HandlerRegistry.getRegistry(schemaProvider));
+        JsonNode node = handlerNode(TestHandler.class);
+        assertSame(registry.getFactory(schemaProvider, Handler.class, node), registry.getFactory(schemaProvider, Handler.class, node));
+        assertNotSame(registry.getFactory(schemaProvider, Handler.class, node), registry.getFactory(schemaProvider, Handler.class, handlerNode(TestHandler.class)));
+        assertEquals(TestHandler.class, registry.getFactory(schemaProvider, Handler.class, node).getHandlerClass());
+    }
+
+    @Test
+    public void classNameNode() throws Exception {
+        Handler handler = AbstractHandler.getHandler(null, new TestSchemaProvider(), Handler.class, new TextNode(TestHandler.class.getName()));
+        assertEquals(TestHandler.class, handler.getClass());
+        assertNull(handler.getConfig());
+    }
+
+    @Test
+    public void processorReference() throws Exception {
+        ObjectNode extra = (ObjectNode)parse("{\"processors\":{\"p\":{\"class\":\"" + TestHandler.class.getName() + "\", \"a\":1, \"b\":1}}}");
+        PrestoSchemaProvider schemaProvider = new TestSchemaProvider(extra);
+        Handler handler = AbstractHandler.getHandler(null, schemaProvider, Handler.class, parse("{\"processor\":\"p\", \"b\":2}"));
+        assertEquals(TestHandler.class, handler.getClass());
+        assertEquals(parse("{\"class\":\"" + TestHandler.class.getName() + "\", \"a\":1, \"b\":2}"), handler.getConfig());
+        assertFalse(handler.getConfig().has("processor"));
+    }
+
+    @Test
+    public void unknownNodeHasNoHandler() throws Exception {
+        PrestoSchemaProvider schemaProvider = new TestSchemaProvider();
+        assertNull(AbstractHandler.getHandler(null, schemaProvider, Handler.class, parse("{\"a\":1}")));
+        assertNull(HandlerRegistry.getRegistry(schemaProvider).getFactory(schemaProvider, Handler.class, parse("1")).getHandlerClass());
+    }
+
+    @Test
+    public void mergedConfigCopiedPerHandler() throws Exception {
+        ObjectNode extra = (ObjectNode)parse("{\"processors\":{\"p\":{\"class\":\"" + TestHandler.class.getName() + "\", \"a\":1}}}");
+        PrestoSchemaProvider schemaProvider = new TestSchemaProvider(extra);
+        JsonNode node = parse("{\"processor\":\"p\"}");
+        Handler h1 = AbstractHandler.getHandler(null, schemaProvider, Handler.class, node);
+        h1.getConfig().put("a", 2);
+        Handler h2 = AbstractHandler.getHandler(null, schemaProvider, Handler.class, node);
+        assertNotSame(h1.getConfig(), h2.getConfig());
+        assertEquals(1, h2.getConfig().path("a").intValue());
+    }
+
+    @Test
+    public void registryCollectedWithSchema() throws Exception {
+        PrestoSchemaProvider schemaProvider = new TestSchemaProvider();
+        Handler handler = AbstractHandler.getHandler(null, schemaProvider, Handler.class, handlerNode(TestSharedHandler.class));
+        assertSame(schemaProvider, handler.getSchemaProvider());
+
+        WeakReference<PrestoSchemaProvider> ref = new WeakReference<PrestoSchemaProvider>(schemaProvider);
+        schemaProvider = null;
+        for (int i=0; i < 50 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull("Schema provider kept reachable by its handlers", ref.get());
+    }
+
+}
@@ -0,0 +1,52 @@
+package net.ontopia.presto.spi.utils;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Ignore;
+
+/**
+ * Compares the speed of the compiled pattern templates with the old regex
+ * based substitution. Run with main; not part of the test suite, see
+ * PatternValueUtilsTest for the equivalence of the two.
+ */
+@Ignore
+public class PatternValueUtilsBenchmark {
+
+    private static final int VALUES = 10000;
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) {
+        String pattern = "${:value} (${type}) - ${name}, ${:value}";
+        PrestoVariableResolver variableResolver = new PrestoVariableResolver() {
+            @Override
+            public List<? extends Object> getValues(Object value, String variable) {
+                if (variable.equals(":value")) {
+                    return Collections.singletonList(value);
+                }
+                return Collections.singletonList(variable + "-value");
+            }
+        };
+        String[] values = new String[VALUES];
+        for (int i=0; i < VALUES; i++) {
+            values[i] = "value" + i;
+        }
+        for (int round=0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (String value : values) {
+                PatternValueUtilsTest.getValueByRegex(variableResolver, value, pattern);
+            }
+            long regexNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (String value : values) {
+                PatternValueUtils.getValueByPattern(variableResolver, value, pattern);
+            }
+            long templateNanos = System.nanoTime() - start;
+
+            System.out.println("round " + round + ": regex " + (regexNanos / 1000) + "us, template " + 
+                    (templateNanos / 1000) + "us for " + VALUES + " values");
+        }
+    }
+
+}
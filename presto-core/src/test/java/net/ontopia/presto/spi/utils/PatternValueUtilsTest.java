@@ -0,0 +1,93 @@
+package net.ontopia.presto.spi.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class PatternValueUtilsTest {
+
+    private static final Pattern PATTERN = Pattern.compile("\\$\\{([\\:\\.\\-\\w]+)\\}");
+
+    private static final PrestoVariableResolver variableResolver = new PrestoVariableResolver() {
+        @Override
+        public List<? extends Object> getValues(Object value, String variable) {
+            if (variable.equals(":value")) {
+                return Collections.singletonList(value);
+            } else if (variable.equals("many")) {
+                return Arrays.asList("a", "b");
+            } else if (variable.equals("dollar")) {
+                return Collections.singletonList("$1\\");
+            }
+            return Collections.emptyList();
+        }
+    };
+
+    @Test
+    public void noVariables() {
+        assertEquals("plain text", PatternValueUtils.getValueByPattern(variableResolver, "x", "plain text"));
+    }
+
+    @Test
+    public void variables() {
+        assertEquals("<x> and <x>", PatternValueUtils.getValueByPattern(variableResolver, "x", "<${:value}> and <${:value}>"));
+    }
+
+    @Test
+    public void multipleValues() {
+        assertEquals("a, b!", PatternValueUtils.getValueByPattern(variableResolver, "x", "${many}!"));
+    }
+
+    @Test
+    public void missingValues() {
+        assertEquals("[]", PatternValueUtils.getValueByPattern(variableResolver, "x", "[${unknown}]"));
+    }
+
+    @Test
+    public void specialCharactersInValues() {
+        assertEquals("$1\\ x", PatternValueUtils.getValueByPattern(variableResolver, "x", "${dollar} ${:value}"));
+    }
+
+    @Test
+    public void sameAsRegexSubstitution() {
+        String[] patterns = new String[] {
+            "plain text",
+            "${:value} (${many}) - ${unknown}, ${:value}",
+            "${:value}${:value}",
+            "${:value}}",
+            "{${many}}",
+            "${} $ {:value} ${:value",
+            "$${many}$",
+            "${a.b-c:d}"
+        };
+        for (String pattern : patterns) {
+            assertEquals(pattern, getValueByRegex(variableResolver, "x", pattern),
+                    PatternValueUtils.getValueByPattern(variableResolver, "x", pattern));
+        }
+    }
+
+    // the substitution used before templates were introduced
+    static String getValueByRegex(PrestoVariableResolver variableResolver, Object value, String pattern) {
+        String result = pattern;
+        Matcher matcher = PATTERN.matcher(pattern);
+        while (matcher.find()) {
+            String variable = matcher.group(1);
+            StringBuilder sb = new StringBuilder();
+            List<? extends Object> values = variableResolver.getValues(value, variable);
+            for (int i=0; i < values.size(); i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(values.get(i));
+            }
+            result = result.replaceFirst("\\$\\{" + variable + "\\}", sb.toString());
+        }
+        return result;
+    }
+
+}
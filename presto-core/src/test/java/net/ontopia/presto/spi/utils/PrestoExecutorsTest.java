@@ -0,0 +1,97 @@
+package net.ontopia.presto.spi.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class PrestoExecutorsTest {
+
+    private static final String NAME = "presto-test";
+
+    @After
+    public void tearDown() {
+        PrestoExecutors.shutdown();
+    }
+
+    @Test
+    public void failureCancelsSiblings() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        Callable<Void> slow = new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                started.countDown();
+                try {
+                    Thread.sleep(60000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return null;
+            }
+        };
+        Callable<Void> failing = new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                started.await();
+                throw new IllegalStateException("failed");
+            }
+        };
+        try {
+            PrestoExecutors.invokeAll(PrestoExecutors.getExecutor(NAME, 2), Arrays.asList(slow, failing));
+            fail("Failure not rethrown");
+        } catch (IllegalStateException e) {
+            assertEquals("failed", e.getMessage());
+        }
+        assertTrue("Sibling not cancelled", interrupted.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void nestedTasksRunInline() {
+        final ExecutorService executor = PrestoExecutors.getExecutor(NAME, 1);
+        final AtomicInteger count = new AtomicInteger();
+        final Callable<Void> inner = new Callable<Void>() {
+            @Override
+            public Void call() {
+                count.incrementAndGet();
+                return null;
+            }
+        };
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int i=0; i < 2; i++) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    // would deadlock on a single thread if not run inline
+                    PrestoExecutors.invokeAll(executor, Arrays.asList(inner, inner));
+                    return null;
+                }
+            });
+        }
+        PrestoExecutors.invokeAll(executor, tasks);
+        assertEquals(4, count.get());
+    }
+
+    @Test
+    public void shutdownAndRecreate() {
+        ExecutorService executor = PrestoExecutors.getExecutor(NAME);
+        assertSame(executor, PrestoExecutors.getExecutor(NAME));
+        PrestoExecutors.shutdown();
+        assertTrue(executor.isShutdown());
+        assertNotSame(executor, PrestoExecutors.getExecutor(NAME));
+    }
+
+}
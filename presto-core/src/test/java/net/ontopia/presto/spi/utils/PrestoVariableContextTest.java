@@ -0,0 +1,79 @@
+package net.ontopia.presto.spi.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class PrestoVariableContextTest {
+
+    private final PrestoVariableContext context = new PrestoVariableContext(null, null);
+
+    private final PrestoVariableResolver variableResolver = new PrestoVariableResolver() {
+        @Override
+        public List<? extends Object> getValues(Object value, String variable) {
+            if (variable.equals(":id")) {
+                return Collections.singletonList(value);
+            } else if (variable.equals("tags")) {
+                return Arrays.asList("a", "b");
+            }
+            return Collections.emptyList();
+        }
+    };
+
+    private JsonNode parse(String json) throws Exception {
+        return Utils.DEFAULT_OBJECT_MAPPER.readTree(json);
+    }
+
+    @Test
+    public void noVariables() throws Exception {
+        JsonNode key = parse("[\"x\", 1]");
+        Collection<JsonNode> result = context.replaceVariables(variableResolver, Arrays.asList("t1"), key);
+        assertEquals(Collections.singletonList(key), new ArrayList<JsonNode>(result));
+    }
+
+    @Test
+    public void variablesPerValue() throws Exception {
+        JsonNode key = parse("{\"type\":\"x\", \"id\":\"$:id\", \"$:id\":[1, {\"a\":true}]}");
+        Collection<JsonNode> result = context.replaceVariables(variableResolver, Arrays.asList("t1", "t2"), key);
+        List<JsonNode> expected = Arrays.asList(
+                parse("{\"type\":\"x\", \"id\":\"t1\", \"t1\":[1, {\"a\":true}]}"),
+                parse("{\"type\":\"x\", \"id\":\"t2\", \"t2\":[1, {\"a\":true}]}"));
+        assertEquals(expected, new ArrayList<JsonNode>(result));
+    }
+
+    @Test
+    public void multipleVariableValues() throws Exception {
+        JsonNode key = parse("[\"$:id\", \"$tags\"]");
+        Collection<JsonNode> result = context.replaceVariables(variableResolver, Arrays.asList("t1"), key);
+        List<JsonNode> expected = Arrays.asList(parse("[\"t1\", \"a\"]"), parse("[\"t1\", \"b\"]"));
+        assertEquals(expected, new ArrayList<JsonNode>(result));
+    }
+
+    @Test
+    public void missingVariableValues() throws Exception {
+        JsonNode key = parse("[\"$:id\", \"$unknown\"]");
+        Collection<JsonNode> result = context.replaceVariables(variableResolver, Arrays.asList("t1"), key);
+        assertEquals(0, result.size());
+    }
+
+    @Test
+    public void constantSubtreesNotShared() throws Exception {
+        JsonNode key = parse("{\"id\":\"$:id\", \"filter\":{\"a\":[1, 2]}}");
+        List<JsonNode> result = new ArrayList<JsonNode>(context.replaceVariables(variableResolver, Arrays.asList("t1", "t2"), key));
+        ((ObjectNode)result.get(0).get("filter")).put("a", "changed");
+
+        assertEquals(parse("{\"id\":\"t2\", \"filter\":{\"a\":[1, 2]}}"), result.get(1));
+        Collection<JsonNode> again = context.replaceVariables(variableResolver, Arrays.asList("t1"), key);
+        assertEquals(parse("{\"id\":\"t1\", \"filter\":{\"a\":[1, 2]}}"), again.iterator().next());
+    }
+
+}
@@ -0,0 +1,40 @@
+package net.ontopia.presto.spi.utils;
+
+import net.ontopia.presto.spi.PrestoSchemaProvider;
+import net.ontopia.presto.spi.PrestoType;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class TestSchemaProvider implements PrestoSchemaProvider {
+
+    private final ObjectNode extra;
+
+    public TestSchemaProvider() {
+        this(null);
+    }
+
+    public TestSchemaProvider(ObjectNode extra) {
+        this.extra = extra;
+    }
+
+    @Override
+    public String getDatabaseId() {
+        return "test";
+    }
+
+    @Override
+    public PrestoType getTypeById(String typeId) {
+        return null;
+    }
+
+    @Override
+    public PrestoType getTypeById(String typeId, PrestoType defaultValue) {
+        return defaultValue;
+    }
+
+    @Override
+    public Object getExtra() {
+        return extra;
+    }
+
+}
@@ -15,6 +15,7 @@ import net.ontopia.presto.spi.jackson.JacksonTopic;
 import net.ontopia.presto.spi.utils.PrestoDefaultChangeSet.Change;
 import net.ontopia.presto.spi.utils.Utils;
 
+import org.ektorp.ComplexKey;
 import org.ektorp.CouchDbConnector;
 import org.ektorp.DocumentNotFoundException;
 import org.ektorp.DocumentOperationResult;
@@ -38,6 +39,9 @@ public abstract class CouchDataProvider extends JacksonDataProvider {
     private final CouchDbConnector db;
 
     protected String designDocId = "_design/presto";
+    protected String byTypeAndNameViewName;
+    protected int availableValuesLimit = DEFAULT_LIMIT;
+    protected String stubsViewName;
 
     public CouchDataProvider(PrestoSchemaProvider schemaProvider) {
         super(schemaProvider);
@@ -96,12 +100,45 @@ public abstract class CouchDataProvider extends JacksonDataProvider {
         return includeLazyTopics(result, topicIds);
     }
 
+    // expects a view that emits [:type, :name] keyed by document id, e.g.
+    // function(doc) { if (doc[':type']) emit(doc._id, [doc[':type'], doc[':name']]); }
+    @Override
+    public Collection<PrestoTopic> getTopicStubsByIds(Collection<String> topicIds) {
+        if (stubsViewName == null) {
+            return getTopicsByIds(topicIds);
+        }
+        if (topicIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        ViewQuery query = new ViewQuery()
+        .designDocId(designDocId)
+        .viewName(stubsViewName)
+        .keys(topicIds);
+
+        Collection<PrestoTopic> result = new ArrayList<PrestoTopic>(topicIds.size());
+        ViewResult viewResult = getCouchConnector().queryView(query);
+        for (Row row : viewResult.getRows()) {
+            JsonNode valueNode = row.getValueAsNode();
+            if (valueNode != null && valueNode.isArray()) {
+                ObjectNode doc = getObjectMapper().createObjectNode();
+                doc.put("_id", row.getId());
+                doc.set(":type", valueNode.get(0));
+                doc.set(":name", valueNode.get(1));
+                result.add(stub(doc));
+            }
+        }
+        return includeLazyTopics(result, topicIds);
+    }
+
     @Override
     public Collection<? extends Object> getAvailableFieldValues(PrestoTopic topic, final PrestoField field, String query) {
         Collection<PrestoType> types = field.getAvailableFieldValueTypes();
         if (types.isEmpty()) {
             return Collections.emptyList();
         }
+        if (byTypeAndNameViewName != null && query != null && !query.isEmpty()) {
+            return getAvailableFieldValuesByName(field, types, query);
+        }
         List<String> typeIds = new ArrayList<String>();
         for (PrestoType type : types) {
             typeIds.add(type.getId());
@@ -129,6 +166,44 @@ public abstract class CouchDataProvider extends JacksonDataProvider {
         return result;
     }
 
+    // expects a view that emits [:type, lowercased name] for each topic, e.g.
+    // function(doc) { if (doc[':type'] && doc[':name']) emit([doc[':type'], doc[':name'].toLowerCase()], null); }
+    protected List<PrestoTopic> getAvailableFieldValuesByName(final PrestoField field, Collection<PrestoType> types, String query) {
+        String prefix = query.toLowerCase();
+        List<PrestoTopic> result = new ArrayList<PrestoTopic>();
+        for (PrestoType type : types) {
+            ViewQuery vquery = new ViewQuery()
+            .designDocId(designDocId)
+            .viewName(byTypeAndNameViewName)
+            .staleOk(true)
+            .reduce(false)
+            .startKey(ComplexKey.of(type.getId(), prefix))
+            .endKey(ComplexKey.of(type.getId(), prefix + "\ufff0"))
+            .limit(availableValuesLimit)
+            .includeDocs(true);
+            
+            ViewResult viewResult = getCouchConnector().queryView(vquery);
+            for (Row row : viewResult.getRows()) {
+                JsonNode docNode = row.getDocAsNode();
+                if (docNode != null && docNode.isObject()) {
+                    result.add(existing((ObjectNode)docNode));
+                }
+            }
+        }
+        if (types.size() > 1) {
+            Collections.sort(result, new Comparator<PrestoTopic>() {
+                @Override
+                public int compare(PrestoTopic o1, PrestoTopic o2) {
+                    return Utils.compareComparables(o1.getName(field), o2.getName(field));
+                }
+            });
+            if (result.size() > availableValuesLimit) {
+                result = new ArrayList<PrestoTopic>(result.subList(0, availableValuesLimit));
+            }
+        }
+        return result;
+    }
+
     @Override
     public void close() {
     }
@@ -139,6 +214,10 @@ public abstract class CouchDataProvider extends JacksonDataProvider {
     protected JacksonTopic existing(ObjectNode doc) {
         return super.existing(doc);
     }
+
+    protected JacksonTopic stub(ObjectNode doc) {
+        return super.stub(doc);
+    }
     
     @Override
     public void create(PrestoTopic topic) {
@@ -197,4 +276,19 @@ public abstract class CouchDataProvider extends JacksonDataProvider {
         return this;
     }
 
+    public CouchDataProvider byTypeAndNameViewName(String byTypeAndNameViewName) {    
+        this.byTypeAndNameViewName = byTypeAndNameViewName;
+        return this;
+    }
+
+    public CouchDataProvider availableValuesLimit(int availableValuesLimit) {    
+        this.availableValuesLimit = availableValuesLimit;
+        return this;
+    }
+
+    public CouchDataProvider stubsViewName(String stubsViewName) {    
+        this.stubsViewName = stubsViewName;
+        return this;
+    }
+
 }
@@ -0,0 +1,137 @@
+package net.ontopia.presto.spi.impl.couchdb;
+
+import java.net.MalformedURLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.ektorp.CouchDbConnector;
+import org.ektorp.CouchDbInstance;
+import org.ektorp.http.HttpClient;
+import org.ektorp.http.StdHttpClient;
+import org.ektorp.impl.StdCouchDbInstance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process-wide registry of CouchDB connectors. Each server URL and database
+ * gets one connector backed by its own keep-alive connection pool, shared by
+ * all data providers. The database is created if missing only when the
+ * connector is first made. The pools are configured through the options of
+ * the Ektorp StdHttpClient.Builder. Call shutdown when the application is
+ * stopped, so that no connections outlive it.
+ */
+public class CouchDbConnectorRegistry {
+
+    private static Logger log = LoggerFactory.getLogger(CouchDbConnectorRegistry.class);
+
+    public static final String DEFAULT_URL = "http://localhost:5984";
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 20;
+
+    private static volatile int maxConnections = DEFAULT_MAX_CONNECTIONS;
+
+    private static final ConcurrentMap<String,ConnectorEntry> connectors = new ConcurrentHashMap<String,ConnectorEntry>();
+
+    public static CouchDbConnector getConnector(String databaseName) {
+        return getConnector(DEFAULT_URL, databaseName);
+    }
+
+    public static CouchDbConnector getConnector(String url, String databaseName) {
+        return getConnector(url, databaseName, true);
+    }
+
+    /**
+     * Returns the shared connector. The database is created if missing only
+     * if createDatabase is true and the connector is made by this call.
+     */
+    public static CouchDbConnector getConnector(String url, String databaseName, boolean createDatabase) {
+        String key = url + '\n' + databaseName;
+        ConnectorEntry entry = connectors.get(key);
+        if (entry == null) {
+            synchronized (connectors) {
+                entry = connectors.get(key);
+                if (entry == null) {
+                    entry = createEntry(url, databaseName, createDatabase);
+                    connectors.put(key, entry);
+                }
+            }
+        }
+        return entry.connector;
+    }
+
+    /**
+     * Sets the size of the connection pools of connectors made from now on.
+     */
+    public static void setMaxConnections(int maxConnections) {
+        CouchDbConnectorRegistry.maxConnections = maxConnections;
+    }
+
+    private static ConnectorEntry createEntry(String url, String databaseName, boolean createDatabase) {
+        int poolSize = maxConnections;
+        HttpClient httpClient;
+        try {
+            httpClient = new StdHttpClient.Builder()
+                .url(url)
+                .maxConnections(poolSize)
+                .cleanupIdleConnections(true)
+                .build();
+        } catch (MalformedURLException e) {
+            throw new RuntimeException(e);
+        }
+        try {
+            CouchDbInstance dbInstance = new StdCouchDbInstance(httpClient);
+            CouchDbConnector connector = dbInstance.createConnector(databaseName, createDatabase);
+            return new ConnectorEntry(httpClient, connector, poolSize);
+        } catch (RuntimeException e) {
+            httpClient.shutdown();
+            throw e;
+        }
+    }
+
+    /**
+     * Shuts down all connection pools. New ones are created if they are used again.
+     */
+    public static void shutdown() {
+        synchronized (connectors) {
+            for (ConnectorEntry entry : connectors.values()) {
+                try {
+                    entry.httpClient.shutdown();
+                } catch (Exception e) {
+                    log.warn("Could not shut down couchdb connection pool for " + entry.connector.getDatabaseName(), e);
+                }
+            }
+            connectors.clear();
+        }
+    }
+
+    // -- metrics
+
+    public static int getConnectorCount() {
+        return connectors.size();
+    }
+
+    /**
+     * The maximum number of connections, over all pools.
+     */
+    public static int getPoolMax() {
+        int sum = 0;
+        for (ConnectorEntry entry : connectors.values()) {
+            sum += entry.maxConnections;
+        }
+        return sum;
+    }
+
+    private static class ConnectorEntry {
+
+        private final HttpClient httpClient;
+        private final CouchDbConnector connector;
+        private final int maxConnections;
+
+        private ConnectorEntry(HttpClient httpClient, CouchDbConnector connector, int maxConnections) {
+            this.httpClient = httpClient;
+            this.connector = connector;
+            this.maxConnections = maxConnections;
+        }
+    }
+
+}
@@ -9,6 +9,7 @@ import net.ontopia.presto.spi.PrestoField;
 import net.ontopia.presto.spi.PrestoTopic;
 import net.ontopia.presto.spi.PrestoTopic.PagedValues;
 import net.ontopia.presto.spi.PrestoTopic.Projection;
+import net.ontopia.presto.spi.jackson.JacksonIdentityMapDataProvider;
 import net.ontopia.presto.spi.resolve.PrestoFieldResolver;
 import net.ontopia.presto.spi.resolve.PrestoResolver;
 import net.ontopia.presto.spi.utils.PrestoPagedValues;
@@ -101,7 +102,7 @@ public class CouchViewResolver extends PrestoFieldResolver {
 
         List<Object> result = new ArrayList<Object>();
 
-        CouchDataProvider dataProvider = (CouchDataProvider)getDataProvider();
+        CouchDataProvider dataProvider = (CouchDataProvider)JacksonIdentityMapDataProvider.unwrap(getDataProvider());
         ViewResult viewResult = dataProvider.getCouchConnector().queryView(query);
 
         if (includeDocs) {
@@ -131,7 +132,7 @@ public class CouchViewResolver extends PrestoFieldResolver {
                 }
             }
             if (isReference) {
-                result.addAll(dataProvider.getTopicsByIds(values));
+                result.addAll(getDataProvider().getTopicsByIds(values));
             } else {
                 result.addAll(values);
             }
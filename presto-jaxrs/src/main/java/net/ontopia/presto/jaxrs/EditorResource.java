@@ -1,5 +1,8 @@
 package net.ontopia.presto.jaxrs;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -7,6 +10,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
@@ -19,9 +23,16 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.Providers;
 
 import net.ontopia.presto.jaxb.AvailableDatabases;
 import net.ontopia.presto.jaxb.AvailableFieldValues;
@@ -50,6 +61,10 @@ import net.ontopia.presto.spi.utils.PrestoContextField;
 import net.ontopia.presto.spi.utils.PrestoContextRules;
 import net.ontopia.presto.spi.utils.PrestoProjection;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 @Path("/editor")
 public abstract class EditorResource implements PrestoAttributes {
 
@@ -58,8 +73,12 @@ public abstract class EditorResource implements PrestoAttributes {
 
     public final static String APPLICATION_JSON_UTF8 = "application/json;charset=UTF-8";
 
+    private static final ObjectMapper mapper = new ObjectMapper();
+
     protected @Context HttpServletRequest request;
     protected @Context UriInfo uriInfo;
+    protected @Context Request httpRequest;
+    protected @Context Providers providers;
 
     @GET
     @Produces(APPLICATION_JSON_UTF8)
@@ -272,9 +291,66 @@ public abstract class EditorResource implements PrestoAttributes {
                 return Response.status(Status.NOT_FOUND).build();
             }
 
+            EntityTag etag = getEntityTag(session, context, field);
+            Response notModified = evaluatePreconditions(etag);
+            if (notModified != null) {
+                return notModified;
+            }
+
             Projection projection = new PrestoProjection(start, limit, orderBy);
             FieldData result = session.getFieldDataAndProcess(context, field, projection);
 
+            return Response.ok(result).tag(etag).build();
+
+        } catch (Exception e) {
+            session.abort();
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+
+    @GET
+    @Produces(APPLICATION_JSON_UTF8)
+    @Path("field-values/{databaseId}/{topicId}/{viewId}/{fieldId}")
+    public Response getFieldValues(
+            @PathParam("databaseId") final String databaseId,
+            @PathParam("topicId") final String topicId,
+            @PathParam("viewId") final String viewId,
+            @PathParam("fieldId") final String fieldId,
+            @QueryParam("readOnly") final boolean readOnly) throws Exception {
+        String path = null;
+        return getFieldValuesPath(databaseId, path, topicId, viewId, fieldId, readOnly);
+    }
+
+    @GET
+    @Produces(APPLICATION_JSON_UTF8)
+    @Path("field-values/{databaseId}/{path}/{topicId}/{viewId}/{fieldId}")
+    public Response getFieldValuesPath(
+            @PathParam("databaseId") final String databaseId,
+            @PathParam("path") final String path,
+            @PathParam("topicId") final String topicId,
+            @PathParam("viewId") final String viewId,
+            @PathParam("fieldId") final String fieldId,
+            @QueryParam("readOnly") final boolean readOnly) throws Exception {
+
+        Presto session = createPresto(databaseId, readOnly);
+
+        try {
+            PrestoContext context = PathParser.getTopicByPath(session, path, topicId, viewId);
+
+            if (context == null || context.isMissingTopic()) {
+                return Response.status(Status.NOT_FOUND).build();
+            }
+
+            PrestoField field = context.getFieldById(fieldId);
+            if (field == null) {
+                return Response.status(Status.NOT_FOUND).build();
+            }
+
+            // no entity tag, as the topic view tag does not cover the values of lazy fields
+            FieldData result = session.getFieldDataAndProcess(context, field);
+
             return Response.ok(result).build();
 
         } catch (Exception e) {
@@ -385,6 +461,7 @@ public abstract class EditorResource implements PrestoAttributes {
             @QueryParam("readOnly") final boolean readOnly) throws Exception {
 
         Presto session = createPresto(databaseId, readOnly);
+        boolean streaming = false;
 
         try {
             PrestoContext context = PathParser.getTopicByPath(session, path, topicId, viewId);
@@ -393,15 +470,35 @@ public abstract class EditorResource implements PrestoAttributes {
                 return Response.status(Status.NOT_FOUND).build();
             }
 
+            EntityTag etag = getEntityTag(session, context);
+            Response notModified = evaluatePreconditions(etag);
+            if (notModified != null) {
+                return notModified;
+            }
+
+            if (isStreaming() && session.isStreamableTopic(context)) {
+                final PrestoContext topicContext = context;
+                Response response = Response.ok(new PrestoStreamingOutput(session, getObjectMapper()) {
+                    @Override
+                    protected void write(Presto session, JsonGenerator generator) throws IOException {
+                        session.writeTopicAndProcess(topicContext, generator);
+                    }
+                }).tag(etag).build();
+                streaming = true;
+                return response;
+            }
+
             Topic result = session.getTopicAndProcess(context);
 
-            return Response.ok(result).build();
+            return Response.ok(result).tag(etag).build();
 
         } catch (Exception e) {
             session.abort();
             throw e;
         } finally {
-            session.close();
+            if (!streaming) {
+                session.close();
+            }
         }
     }
 
@@ -440,6 +537,7 @@ public abstract class EditorResource implements PrestoAttributes {
             @QueryParam("readOnly") final boolean readOnly) throws Exception {
 
         Presto session = createPresto(databaseId, readOnly);
+        boolean streaming = false;
 
         try {
             PrestoContext context = PathParser.getTopicByPath(session, path, topicId, viewId);
@@ -448,15 +546,36 @@ public abstract class EditorResource implements PrestoAttributes {
                 return Response.status(Status.NOT_FOUND).build();
             }
 
-            TopicView result = session.getTopicViewAndProcess(context);
+            EntityTag etag = getEntityTag(session, context);
+            Response notModified = evaluatePreconditions(etag);
+            if (notModified != null) {
+                return notModified;
+            }
 
-            return Response.ok(result).build();
+            final PrestoContextRules rules = session.getPrestoContextRules(context);
+
+            if (isStreaming() && session.isStreamableTopicView(rules)) {
+                Response response = Response.ok(new PrestoStreamingOutput(session, getObjectMapper()) {
+                    @Override
+                    protected void write(Presto session, JsonGenerator generator) throws IOException {
+                        session.writeTopicViewAndProcess(rules, generator);
+                    }
+                }).tag(etag).build();
+                streaming = true;
+                return response;
+            }
+
+            TopicView result = session.getTopicViewAndProcess(rules);
+
+            return Response.ok(result).tag(etag).build();
 
         } catch (Exception e) {
             session.abort();
             throw e;
         } finally {
-            session.close();
+            if (!streaming) {
+                session.close();
+            }
         }
     }
 
@@ -979,6 +1098,122 @@ public abstract class EditorResource implements PrestoAttributes {
 
     protected abstract Presto createPresto(String databaseId, boolean readOnlyMode);
 
+    /**
+     * Returns a weak entity tag for the topic in the given context, or null if 
+     * conditional requests should not be supported. The tag covers the topic 
+     * revision, the schema and the request, but not the topics it references.
+     */
+    protected EntityTag getEntityTag(Presto session, PrestoContext context) {
+        if (uriInfo == null) {
+            return null;
+        }
+        String username = (request == null ? null : request.getRemoteUser());
+        String revision = session.getTopicRevision(context, uriInfo.getRequestUri().toString(), String.valueOf(username));
+        return createEntityTag(revision);
+    }
+
+    /**
+     * Same as getEntityTag, but for requests returning the values of the
+     * given field only.
+     */
+    protected EntityTag getEntityTag(Presto session, PrestoContext context, PrestoField field) {
+        if (uriInfo == null) {
+            return null;
+        }
+        String username = (request == null ? null : request.getRemoteUser());
+        String revision = session.getFieldRevision(context, field, uriInfo.getRequestUri().toString(), String.valueOf(username));
+        return createEntityTag(revision);
+    }
+
+    private EntityTag createEntityTag(String revision) {
+        if (revision == null) {
+            return null;
+        }
+        return new EntityTag(revision, true);
+    }
+
+    private Response evaluatePreconditions(EntityTag etag) {
+        if (etag != null && httpRequest != null) {
+            ResponseBuilder builder = httpRequest.evaluatePreconditions(etag);
+            if (builder != null) {
+                return builder.tag(etag).build();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether topic and topic view responses may be written incrementally. The
+     * session is then kept open until the response body has been written. The
+     * status has already been sent by then, so a failure while writing leaves the
+     * client with truncated JSON and status 200. Streaming also requires the
+     * PrestoSessionFilter, which closes sessions whose body is never written.
+     */
+    protected boolean isStreamingEnabled() {
+        return false;
+    }
+
+    private boolean isStreaming() {
+        return isStreamingEnabled() && PrestoSessionFilter.isInstalled(request);
+    }
+
+    /**
+     * Returns the object mapper registered with JAX-RS for JSON, if any, so
+     * that streamed responses are serialized like the others.
+     */
+    protected ObjectMapper getObjectMapper() {
+        if (providers != null) {
+            ContextResolver<ObjectMapper> resolver = providers.getContextResolver(ObjectMapper.class, MediaType.APPLICATION_JSON_TYPE);
+            if (resolver != null) {
+                ObjectMapper result = resolver.getContext(ObjectMapper.class);
+                if (result != null) {
+                    return result;
+                }
+            }
+        }
+        return mapper;
+    }
+
+    private abstract class PrestoStreamingOutput implements StreamingOutput, Closeable {
+
+        private final Presto session;
+        private final ObjectMapper mapper;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private PrestoStreamingOutput(Presto session, ObjectMapper mapper) {
+            this.session = session;
+            this.mapper = mapper;
+            PrestoSessionFilter.register(request, this);
+        }
+
+        @Override
+        public void write(OutputStream output) throws IOException {
+            try {
+                JsonGenerator generator = mapper.getFactory().createGenerator(output, JsonEncoding.UTF8);
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                write(session, generator);
+                generator.close();
+            } catch (IOException e) {
+                session.abort();
+                throw e;
+            } catch (RuntimeException e) {
+                session.abort();
+                throw e;
+            } finally {
+                close();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                session.close();
+            }
+        }
+
+        protected abstract void write(Presto session, JsonGenerator generator) throws IOException;
+    }
+
     protected abstract Collection<String> getDatabaseIds();
 
     protected abstract String getDatabaseName(String databaseId);
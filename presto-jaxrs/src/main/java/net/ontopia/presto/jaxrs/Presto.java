@@ -1,10 +1,11 @@
 package net.ontopia.presto.jaxrs;
 
+import java.io.IOException;
 import java.net.URI;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -47,6 +48,9 @@ import net.ontopia.presto.spi.PrestoType;
 import net.ontopia.presto.spi.PrestoUpdate;
 import net.ontopia.presto.spi.PrestoView;
 import net.ontopia.presto.spi.PrestoView.ViewType;
+import net.ontopia.presto.spi.jackson.JacksonDataProvider;
+import net.ontopia.presto.spi.jackson.JacksonIdentityMapDataProvider;
+import net.ontopia.presto.spi.jackson.JacksonTopic;
 import net.ontopia.presto.spi.resolve.PrestoResolver;
 import net.ontopia.presto.spi.rules.ContextPathExpressions;
 import net.ontopia.presto.spi.utils.AbstractHandler;
@@ -56,19 +60,26 @@ import net.ontopia.presto.spi.utils.PrestoAttributes;
 import net.ontopia.presto.spi.utils.PrestoContext;
 import net.ontopia.presto.spi.utils.PrestoContextField;
 import net.ontopia.presto.spi.utils.PrestoContextRules;
+import net.ontopia.presto.spi.utils.PrestoProjection;
+import net.ontopia.presto.spi.utils.PrestoSchemaRevision;
 import net.ontopia.presto.spi.utils.Utils;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 public abstract class Presto {
 
     private static Logger log = LoggerFactory.getLogger(Presto.class);
 
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+
     public enum Rel {
         REL_TOPIC_EDIT_BY_ID("edit-topic-by-id"),
         REL_TOPIC_CREATE("create"),
@@ -80,6 +91,7 @@ public abstract class Presto {
         REL_TOPIC_TEMPLATE_FIELD("topic-template-field"),
 
         REL_FIELD_PAGING("paging"),
+        REL_FIELD_VALUES("field-values"),
         REL_AVAILABLE_FIELD_VALUES("available-field-values"),
         REL_ADD_FIELD_VALUES("add-field-values"),
         REL_ADD_FIELD_VALUES_AT_INDEX("add-field-values-at-index"),
@@ -114,11 +126,35 @@ public abstract class Presto {
         this.databaseId = databaseId;
         this.databaseName = databaseName;
         this.schemaProvider = schemaProvider;
-        this.dataProvider = dataProvider;
+        this.dataProvider = createSessionDataProvider(dataProvider);
         this.attributes = attributes;
         this.processor = new PrestoProcessor(this);
         this.lx = createLinks(getBaseUri(), getDatabaseId());
     }
+
+    /**
+     * Returns the data provider used by this session, by default the given
+     * one. If isIdentityMapEnabled returns true a JacksonDataProvider is
+     * put behind an identity map, so that each topic is fetched at most once
+     * per session.
+     */
+    protected PrestoDataProvider createSessionDataProvider(PrestoDataProvider dataProvider) {
+        if (isIdentityMapEnabled() && dataProvider instanceof JacksonDataProvider
+                && !(dataProvider instanceof JacksonIdentityMapDataProvider)) {
+            return new JacksonIdentityMapDataProvider((JacksonDataProvider)dataProvider);
+        }
+        return dataProvider;
+    }
+
+    /**
+     * Returns true if sessions use an identity map. Defaults to the schema
+     * extra "identityMap", or false if not set. Note that getDataProvider
+     * then returns the identity map, not the configured data provider.
+     */
+    protected boolean isIdentityMapEnabled() {
+        ObjectNode extra = ExtraUtils.getSchemaExtraNode(schemaProvider);
+        return extra != null && extra.path("identityMap").asBoolean(false);
+    }
     
     protected Links createLinks(URI baseUri, String databaseId) {
         return new DefaultLinks(baseUri, databaseId);
@@ -172,6 +208,30 @@ public abstract class Presto {
     public Topic getTopicAndProcess(PrestoContext context) {
         PrestoContextRules rules = getPrestoContextRules(context);
 
+        Topic result = createTopic(context);
+        
+        // create topic-views
+        Collection<PrestoView> views = context.getType().getViews(context.getView());
+        List<TopicView> topicViews = new ArrayList<TopicView>(views.size()); 
+        for (PrestoView v : views) {
+            if (!rules.isHiddenView(v)) {
+                PrestoContext subcontext = PrestoContext.newContext(context, v.getId()); 
+                PrestoContextRules subrules = getPrestoContextRules(subcontext);
+
+                TopicView topicView = getTopicViewInTopic(subrules, context.getView());
+                if (topicView != null) {
+                    topicViews.add(topicView);
+                }
+            }
+        }
+        result.setViews(topicViews);
+
+        result = processor.postProcessTopic(result, rules, null);
+
+        return result;
+    }
+
+    private Topic createTopic(PrestoContext context) {
         PrestoTopic topic = context.getTopic();
         PrestoType type = context.getType();
         PrestoView view = context.getView();
@@ -189,38 +249,72 @@ public abstract class Presto {
         if (layout != null) {
             result.setLayout(layout);
         }
-        
-        // create topic-views
-        Collection<PrestoView> views = type.getViews(view);
-        List<TopicView> topicViews = new ArrayList<TopicView>(views.size()); 
-        for (PrestoView v : views) {
+        return result;
+    }
+
+    private boolean isFullTopicViewInTopic(PrestoView v, PrestoView view) {
+        return ViewType.NORMAL_VIEW.equals(v.getType()) && (view.getId().equals(v.getId()) || !isRemoteLoadView(v));
+    }
+
+    private TopicView getTopicViewInTopic(PrestoContextRules subrules, PrestoView view) {
+        PrestoView v = subrules.getContext().getView();
+        ViewType viewType = v.getType();
+        if (isFullTopicViewInTopic(v, view)) {
+            return getTopicView(subrules);
+        } else if (ViewType.NORMAL_VIEW.equals(viewType)) {
+            return getTopicViewRemote(subrules, false);
+        } else if (ViewType.EXTERNAL_VIEW.equals(viewType)) {
+            return getTopicViewRemote(subrules, true);
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if the topic can be written with writeTopicAndProcess, i.e. there
+     * are no topic post-processors that need the complete object graph.
+     */
+    public boolean isStreamableTopic(PrestoContext context) {
+        return !processor.hasTopicProcessors(getPrestoContextRules(context), PrestoProcessor.Type.POST_PROCESS);
+    }
+
+    /**
+     * Streaming equivalent of getTopicAndProcess. The topic views are written one 
+     * at a time, and their fields are streamed when the view allows it.
+     */
+    public void writeTopicAndProcess(PrestoContext context, JsonGenerator generator) throws IOException {
+        if (!isStreamableTopic(context)) {
+            generator.writeObject(getTopicAndProcess(context));
+            return;
+        }
+        PrestoContextRules rules = getPrestoContextRules(context);
+        PrestoView view = context.getView();
+
+        generator.writeStartObject();
+        writeProperties(generator, createTopic(context));
+
+        generator.writeArrayFieldStart("views");
+        for (PrestoView v : context.getType().getViews(view)) {
             if (!rules.isHiddenView(v)) {
                 PrestoContext subcontext = PrestoContext.newContext(context, v.getId()); 
                 PrestoContextRules subrules = getPrestoContextRules(subcontext);
 
-                ViewType viewType = v.getType();
-
-                if (ViewType.NORMAL_VIEW.equals(viewType)) {
-
-                    if (viewId.equals(v.getId())) {
-                        topicViews.add(getTopicView(subrules));
-                    } else {
-                        if (isRemoteLoadView(v)) {
-                            topicViews.add(getTopicViewRemote(subrules, false));
-                        } else {
-                            topicViews.add(getTopicView(subrules));
+                if (isFullTopicViewInTopic(v, view) && isStreamableTopicView(subrules)) {
+                    writeTopicViewAndProcess(subrules, generator);
+                } else {
+                    TopicView topicView = getTopicViewInTopic(subrules, view);
+                    if (topicView != null) {
+                        topicView = processor.postProcessTopicView(topicView, subrules, null);
+                        if (topicView != null) {
+                            generator.writeObject(topicView);
                         }
                     }
-                } else if (ViewType.EXTERNAL_VIEW.equals(viewType)) {
-                    topicViews.add(getTopicViewRemote(subrules, true));
                 }
+                generator.flush();
             }
         }
-        result.setViews(topicViews);
+        generator.writeEndArray();
 
-        result = processor.postProcessTopic(result, rules, null);
-
-        return result;
+        generator.writeEndObject();
     }
 
     private Layout getLayout(ObjectNode extra) {
@@ -228,7 +322,6 @@ public abstract class Presto {
         if (extra != null) {
             JsonNode layoutNode = extra.path("layout");
             if (layoutNode.isObject()) {
-                ObjectMapper mapper = new ObjectMapper();
                 try {
                     layout = mapper.convertValue(layoutNode, Layout.class);
                 } catch (Exception e) {
@@ -309,6 +402,55 @@ public abstract class Presto {
     }
 
     public TopicView getTopicView(PrestoContextRules rules) {
+        TopicView result = createTopicView(rules);
+
+        List<FieldData> fields = new ArrayList<FieldData>(); 
+        boolean allFieldsReadOnly = true;
+        for (PrestoField field : getTopicViewFields(rules)) {
+            fields.add(getTopicViewFieldData(rules, field));
+
+            if (!rules.isReadOnlyField(field)) {
+                allFieldsReadOnly = false;
+            }
+        }
+        result.setFields(fields);
+        result.setLinks(getTopicViewLinks(rules, allFieldsReadOnly));
+
+        return result;
+    }
+
+    // field data as it appears in a topic view; values of lazy fields are fetched separately
+    private FieldData getTopicViewFieldData(PrestoContextRules rules, PrestoField field) {
+        PrestoContext context = rules.getContext();
+        ObjectNode extra = ExtraUtils.getFieldExtraNode(field);
+        JsonNode lazyNode = (extra == null ? MissingNode.getInstance() : extra.path("lazyValues"));
+        if (context.isNewTopic() || !(lazyNode.asBoolean(false) || lazyNode.isObject())) {
+            return getFieldData(rules, field);
+        }
+        // values of other fields are sent back when the topic is saved
+        if (!rules.isReadOnlyField(field) && !rules.isPageableField(field)) {
+            log.warn("Ignoring lazyValues on field '" + field.getId() + "', as it is neither read-only nor pageable.");
+            return getFieldData(rules, field);
+        }
+        FieldData fieldData = getFieldDataNoValues(rules, field);
+
+        String topicId = context.getTopicId();
+        Collection<Link> fieldLinks = new LinkedHashSet<Link>();
+        if (fieldData.getLinks() != null) {
+            fieldLinks.addAll(fieldData.getLinks());
+        }
+        fieldLinks.add(lx.fieldValuesLink(context.getParentContext(), context.getParentField(), topicId, context.getType(), context.getView(), field));
+        fieldData.setLinks(fieldLinks);
+
+        // "lazyValues" : { "total" : true } includes the number of values
+        if (lazyNode.path("total").asBoolean(false)) {
+            FieldValues fieldValues = rules.getFieldValues(field, PrestoProjection.FIRST_ELEMENT);
+            fieldData.setValuesTotal(fieldValues.getTotal());
+        }
+        return fieldData;
+    }
+
+    private TopicView createTopicView(PrestoContextRules rules) {
         PrestoContext context = rules.getContext();
 
         PrestoType type = context.getType();
@@ -333,19 +475,30 @@ public abstract class Presto {
         String href = lx.topicViewHref(parentContext, parentField, topicId, type, view, isReadOnlyMode());
         result.setHref(href);
 
-        List<FieldData> fields = new ArrayList<FieldData>(); 
-        boolean allFieldsReadOnly = true;
-        for (PrestoField field : type.getFields(view)) {
-            if (!rules.isHiddenField(field)) {
-                fields.add(getFieldData(rules, field));
+        return result;
+    }
 
-                if (!rules.isReadOnlyField(field)) {
-                    allFieldsReadOnly = false;
-                }
+    private List<PrestoField> getTopicViewFields(PrestoContextRules rules) {
+        PrestoContext context = rules.getContext();
+        List<PrestoField> result = new ArrayList<PrestoField>();
+        for (PrestoField field : context.getType().getFields(context.getView())) {
+            if (!rules.isHiddenField(field)) {
+                result.add(field);
             }
         }
-        result.setFields(fields);
-        
+        return result;
+    }
+
+    private List<Link> getTopicViewLinks(PrestoContextRules rules, boolean allFieldsReadOnly) {
+        PrestoContext context = rules.getContext();
+
+        PrestoType type = context.getType();
+        PrestoView view = context.getView();
+
+        String topicId = context.getTopicId();
+        PrestoContext parentContext = context.getParentContext();
+        PrestoField parentField = context.getParentField();
+
         List<Link> links = new ArrayList<Link>();
         links.add(createLabel(type, view));
 
@@ -360,9 +513,63 @@ public abstract class Presto {
                 links.add(lx.topicTemplateLink(type));
             }
         }
-        result.setLinks(links);
+        return links;
+    }
 
-        return result;
+    /**
+     * Returns true if the topic view can be written with writeTopicViewAndProcess, 
+     * i.e. there are no topic view post-processors that need the complete object graph.
+     */
+    public boolean isStreamableTopicView(PrestoContextRules rules) {
+        return !processor.hasTopicViewProcessors(rules, PrestoProcessor.Type.POST_PROCESS);
+    }
+
+    /**
+     * Streaming equivalent of getTopicViewAndProcess. Field data is computed, post-processed
+     * and written one field at a time, so only a single field is held in memory at once.
+     */
+    public void writeTopicViewAndProcess(PrestoContextRules rules, JsonGenerator generator) throws IOException {
+        if (!isStreamableTopicView(rules)) {
+            generator.writeObject(getTopicViewAndProcess(rules));
+            return;
+        }
+        List<PrestoField> fields = getTopicViewFields(rules);
+
+        boolean allFieldsReadOnly = true;
+        for (PrestoField field : fields) {
+            if (!rules.isReadOnlyField(field)) {
+                allFieldsReadOnly = false;
+                break;
+            }
+        }
+        TopicView topicView = createTopicView(rules);
+        topicView.setLinks(getTopicViewLinks(rules, allFieldsReadOnly));
+
+        generator.writeStartObject();
+        writeProperties(generator, topicView);
+
+        generator.writeArrayFieldStart("fields");
+        for (PrestoField field : fields) {
+            FieldData fieldData = getTopicViewFieldData(rules, field);
+            fieldData = processor.postProcessFieldData(fieldData, rules, field, null, null);
+            if (fieldData != null) {
+                generator.writeObject(fieldData);
+                generator.flush();
+            }
+        }
+        generator.writeEndArray();
+
+        generator.writeEndObject();
+    }
+
+    private void writeProperties(JsonGenerator generator, Object object) throws IOException {
+        ObjectNode node = mapper.valueToTree(object);
+        Iterator<Map.Entry<String, JsonNode>> iter = node.fields();
+        while (iter.hasNext()) {
+            Map.Entry<String, JsonNode> entry = iter.next();
+            generator.writeFieldName(entry.getKey());
+            generator.writeTree(entry.getValue());
+        }
     }
 
     public abstract URI getBaseUri();
@@ -597,8 +804,9 @@ public abstract class Presto {
 
         List<? extends Object> values = fieldValues.getValues();
 
-        // sort the result
-        if (rules.isSortedField(field, projection)) {
+        // sort the result (unless already sorted by the resolver)
+        boolean isServerPaged = fieldValues.isPaging() && rules.isServerPagedField(field, projection);
+        if (!isServerPaged && rules.isSortedField(field, projection)) {
             sortFieldValues(rules, field, projection, values);
         }
 
@@ -623,7 +831,7 @@ public abstract class Presto {
             fieldData.setValues(outputValues);
 
             // figure out how to truncate result (offset/limit)
-            if (fieldValues.isPaging() && rules.isPageableField(field) && !rules.isSortedField(field, projection)) {
+            if (isServerPaged) {
                 fieldData.setValuesOffset(fieldValues.getOffset());
                 fieldData.setValuesLimit(fieldValues.getLimit());
                 fieldData.setValuesTotal(fieldValues.getTotal());
@@ -636,8 +844,7 @@ public abstract class Presto {
             List<? extends Object> fieldValues) {
 
         SortKeyGenerator sortKeyGenerator = createSortKeyGenerator(rules, field, projection);
-        Comparator<Object> comp = sortKeyGenerator.getComparator(rules, field, projection);
-        Collections.sort(fieldValues, comp);
+        sortKeyGenerator.sort(rules, field, projection, fieldValues);
     }
 
     private SortKeyGenerator createSortKeyGenerator(PrestoContextRules rules, PrestoField field, Projection projection) {
@@ -1335,9 +1542,9 @@ public abstract class Presto {
                 String fieldId = fieldData.getId();
                 PrestoField field = type.getFieldById(fieldId, view);
 
-                // ignore read-only or pageable fields 
-                if ((!rules.isReadOnlyField(field) && !rules.isPageableField(field)) ||
-                        rules.isUpdatableOnCreateField(field)) {
+                // ignore read-only or pageable fields, and fields sent without values
+                if (((!rules.isReadOnlyField(field) && !rules.isPageableField(field)) ||
+                        rules.isUpdatableOnCreateField(field)) && fieldData.getValues() != null) {
 
                     boolean resolveEmbedded = true;
                     boolean includeExisting = false; 
@@ -1390,9 +1597,9 @@ public abstract class Presto {
             String fieldId = fieldData.getId();
             PrestoField field = type.getFieldById(fieldId, view);
 
-            // ignore read-only or pageable fields 
-            if ((!rules.isReadOnlyField(field) && !rules.isPageableField(field)) ||
-                    rules.isUpdatableOnCreateField(field)) {
+            // ignore read-only or pageable fields, and fields sent without values
+            if (((!rules.isReadOnlyField(field) && !rules.isPageableField(field)) ||
+                    rules.isUpdatableOnCreateField(field)) && fieldData.getValues() != null) {
 
                 boolean resolveEmbedded = true;
                 boolean includeExisting = false;
@@ -1562,6 +1769,10 @@ public abstract class Presto {
             String fieldId = fieldData.getId();
             PrestoField field = type.getFieldById(fieldId, view);
 
+            // fields sent without values are left out
+            if (fieldData.getValues() == null) {
+                continue;
+            }
             boolean resolveEmbedded = true;
             boolean includeExisting = false;
             List<? extends Object> values = updateAndExtractValuesFromFieldData(subrules, field, fieldData, resolveEmbedded, includeExisting, filterNonStorable, validateValueTypes);
@@ -1758,6 +1969,173 @@ public abstract class Presto {
         return result;
     }
 
+    /**
+     * Returns a digest identifying the current revision of the topic in the given
+     * context, its parent topics, the topics referenced by its fields and the schema, 
+     * or null if the revision cannot be determined. The variants are included in the 
+     * digest as well. Returns null if the values of any of the fields of the topic 
+     * are resolved.
+     */
+    public String getTopicRevision(PrestoContext context, String... variants) {
+        if (hasResolvedFields(context.getType(), new HashSet<String>())) {
+            return null;
+        }
+        return getContextRevision(context, context.getType().getFields(), variants);
+    }
+
+    /**
+     * Same as getTopicRevision, but for the values of a single field only.
+     * Returns null if the values of the field are resolved.
+     */
+    public String getFieldRevision(PrestoContext context, PrestoField field, String... variants) {
+        if (hasResolvedValues(field, new HashSet<String>())) {
+            return null;
+        }
+        return getContextRevision(context, Collections.singletonList(field), variants);
+    }
+
+    /**
+     * Returns true if the values of the field are resolved, and thus depend
+     * on other topics than the ones whose revisions are tracked.
+     */
+    protected boolean isResolvedField(PrestoField field) {
+        ObjectNode extra = ExtraUtils.getFieldExtraNode(field);
+        return extra != null && extra.has("resolve");
+    }
+
+    private boolean hasResolvedFields(PrestoType type, Set<String> visited) {
+        if (visited.add(type.getId())) {
+            for (PrestoField field : type.getFields()) {
+                if (hasResolvedValues(field, visited)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean hasResolvedValues(PrestoField field, Set<String> visited) {
+        if (isResolvedField(field)) {
+            return true;
+        }
+        // inline and embedded values are rendered with their own fields
+        if (field.isInline() || field.isEmbedded()) {
+            for (PrestoType valueType : field.getAvailableFieldValueTypes()) {
+                if (hasResolvedFields(valueType, visited)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private String getContextRevision(PrestoContext context, Collection<PrestoField> fields, String... variants) {
+        String schemaRevision = getSchemaRevision();
+        if (schemaRevision == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        if (!context.isNewTopic() && !context.isMissingTopic()) {
+            // names and values of referenced topics are rendered as well
+            if (!appendReferencedRevisions(sb, context.getTopic(), fields, new HashSet<String>())) {
+                return null;
+            }
+        }
+        for (PrestoContext c = context; c != null; c = c.getParentContext()) {
+            if (c.isNewTopic() || c.isMissingTopic()) {
+                return null;
+            }
+            String revision = getTopicRevision(c.getTopic());
+            if (revision == null) {
+                return null;
+            }
+            sb.append(c.getTopicId()).append('=').append(revision).append('\n');
+        }
+        sb.append(schemaRevision).append('\n');
+        sb.append(isReadOnlyMode()).append('\n');
+        for (String variant : variants) {
+            sb.append(variant).append('\n');
+        }
+        return digest(sb.toString());
+    }
+
+    private boolean appendReferencedRevisions(StringBuilder sb, PrestoTopic topic, Collection<PrestoField> fields, Set<String> visited) {
+        for (PrestoField field : fields) {
+            if (!field.isReferenceField()) {
+                continue;
+            }
+            for (Object value : topic.getStoredValues(field)) {
+                if (!(value instanceof PrestoTopic)) {
+                    continue;
+                }
+                PrestoTopic valueTopic = (PrestoTopic)value;
+                if (field.isInline()) {
+                    // inline topics are part of the topic data, but may reference other topics
+                    PrestoType valueType = schemaProvider.getTypeById(valueTopic.getTypeId());
+                    if (!appendReferencedRevisions(sb, valueTopic, valueType.getFields(), visited)) {
+                        return false;
+                    }
+                } else if (visited.add((field.isEmbedded() ? "e:" : "r:") + valueTopic.getId())) {
+                    String revision = getTopicRevision(valueTopic);
+                    if (revision == null) {
+                        return false;
+                    }
+                    sb.append(valueTopic.getId()).append('=').append(revision).append('\n');
+                    if (field.isEmbedded()) {
+                        // embedded topics are rendered with their own fields
+                        PrestoType valueType = schemaProvider.getTypeById(valueTopic.getTypeId());
+                        if (!appendReferencedRevisions(sb, valueTopic, valueType.getFields(), visited)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    protected String getTopicRevision(PrestoTopic topic) {
+        if (topic instanceof JacksonTopic) {
+            ObjectNode data = ((JacksonTopic)topic).getData();
+            JsonNode revNode = data.path("_rev");
+            if (revNode.isTextual()) {
+                return revNode.textValue();
+            }
+            return digest(data.toString());
+        }
+        return null;
+    }
+
+    protected String getSchemaRevision() {
+        ObjectNode extra = ExtraUtils.getSchemaExtraNode(schemaProvider);
+        if (extra != null) {
+            JsonNode versionNode = extra.path("version");
+            if (!versionNode.isMissingNode()) {
+                return versionNode.asText();
+            }
+        }
+        if (schemaProvider instanceof PrestoSchemaRevision) {
+            return ((PrestoSchemaRevision)schemaProvider).getSchemaRevision();
+        }
+        // no stable revision, so no entity tags
+        return null;
+    }
+
+    private static String digest(String value) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            byte[] bytes = md.digest(value.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     protected Collection<PrestoType> getAvailableFieldValueTypes(PrestoContext context, PrestoField field) {
         return field.getAvailableFieldValueTypes();
     }
@@ -245,6 +245,24 @@ public class PrestoProcessor {
         return fieldData;
     }
 
+    public boolean hasTopicProcessors(PrestoContextRules rules, Type processType) {
+        PrestoContext context = rules.getContext();
+        ObjectNode schemaExtra = ExtraUtils.getSchemaExtraNode(presto.getSchemaProvider());
+        ObjectNode topicExtra = ExtraUtils.getTypeExtraNode(context.getType());
+        return (schemaExtra != null && !getTopicProcessorsNode(schemaExtra, processType).isMissingNode()) ||
+                (topicExtra != null && !getTopicProcessorsNode(topicExtra, processType).isMissingNode());
+    }
+
+    public boolean hasTopicViewProcessors(PrestoContextRules rules, Type processType) {
+        PrestoContext context = rules.getContext();
+        ObjectNode schemaExtra = ExtraUtils.getSchemaExtraNode(presto.getSchemaProvider());
+        ObjectNode topicExtra = ExtraUtils.getTypeExtraNode(context.getType());
+        ObjectNode viewExtra = ExtraUtils.getViewExtraNode(context.getView());
+        return (schemaExtra != null && !getTopicViewProcessorsNode(schemaExtra, processType).isMissingNode()) ||
+                (topicExtra != null && !getTopicViewProcessorsNode(topicExtra, processType).isMissingNode()) ||
+                (viewExtra != null && !getTopicViewProcessorsNode(viewExtra, processType).isMissingNode());
+    }
+
     private Topic processTopicExtra(Topic topicData, PrestoContextRules rules, ObjectNode extraNode, Type processType, Status status) {
         if (extraNode != null) {
             JsonNode processorsNode = getTopicProcessorsNode(extraNode, processType);
@@ -0,0 +1,67 @@
+package net.ontopia.presto.jaxrs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Closes the Presto sessions of streamed responses once the request has
+ * been handled. A streamed response normally closes its session when the
+ * body has been written, but the body is not written if the client goes
+ * away first or the response is replaced. Must be installed in front of
+ * the JAX-RS servlet when EditorResource.isStreamingEnabled returns true.
+ */
+public class PrestoSessionFilter implements Filter {
+
+    private static Logger log = LoggerFactory.getLogger(PrestoSessionFilter.class);
+
+    private static final String ATTRIBUTE = PrestoSessionFilter.class.getName() + ".sessions";
+
+    static void register(ServletRequest request, Closeable session) {
+        @SuppressWarnings("unchecked")
+        List<Closeable> sessions = (List<Closeable>)request.getAttribute(ATTRIBUTE);
+        sessions.add(session);
+    }
+
+    static boolean isInstalled(ServletRequest request) {
+        return request != null && request.getAttribute(ATTRIBUTE) != null;
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        List<Closeable> sessions = new ArrayList<Closeable>(1);
+        request.setAttribute(ATTRIBUTE, sessions);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            request.removeAttribute(ATTRIBUTE);
+            for (Closeable session : sessions) {
+                try {
+                    session.close();
+                } catch (Exception e) {
+                    log.error("Could not close session", e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+}
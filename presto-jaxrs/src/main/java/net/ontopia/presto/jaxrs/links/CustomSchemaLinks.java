@@ -411,6 +411,25 @@ public class CustomSchemaLinks implements Links {
         return delegate.fieldPagingLink(parentContext, parentField, topicId, type, view, field);
     }
 
+    @Override
+    public Link fieldValuesLink(PrestoContext parentContext, PrestoField parentField, String topicId, PrestoType type, PrestoView view, PrestoField field) {
+        String rel = Presto.Rel.REL_FIELD_VALUES.getRel();
+        String href = getHref(new String[] { "fieldValuesLink" }, type, view, field);
+        if (href != null) {
+            Map<String,String> params = new HashMap<String,String>();
+            params.put("baseUri", getBaseUri());
+            params.put("databaseId", getDatabaseId());
+            params.put("topicId", topicId);
+            params.put("typeId", type.getId());
+            params.put("viewId", view.getId());
+            params.put("fieldId", field.getId());
+            String path = getInlineTopicPath(parentContext, parentField);
+            params.put("path", path);
+            return new Link(rel, replaceUriPattern(href, params));
+        }
+        return delegate.fieldValuesLink(parentContext, parentField, topicId, type, view, field);
+    }
+
     @Override
     public Link fieldAvailableValuesLink(PrestoContext parentContext, PrestoField parentField, String topicId, PrestoType type, PrestoView view, PrestoField field, boolean query) {
         String rel = Presto.Rel.REL_FIELD_PAGING.getRel();
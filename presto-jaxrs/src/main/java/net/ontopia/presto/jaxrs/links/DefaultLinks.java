@@ -208,6 +208,16 @@ public class DefaultLinks implements Links {
         return new Link(Rel.REL_FIELD_PAGING.getRel(), href);
     }
 
+    @Override
+    public Link fieldValuesLink(PrestoContext parentContext, PrestoField parentField, String topicId, PrestoType type, PrestoView view, PrestoField field) {
+        String path = PathParser.getInlineTopicPath(parentContext, parentField);
+        String viewId = view.getId();
+        String fieldId = field.getId();
+        UriBuilder builder = UriBuilder.fromUri(baseUri).path("editor").path("field-values").path(databaseId).path(path).path(PathParser.skull(topicId)).path(viewId).path(fieldId);
+        String href = builder.toTemplate();
+        return new Link(Rel.REL_FIELD_VALUES.getRel(), href);
+    }
+
     @Override
     public Link fieldAvailableValuesLink(PrestoContext parentContext, PrestoField parentField, String topicId, PrestoType type, PrestoView view, PrestoField field, boolean query) {
         String path = PathParser.getInlineTopicPath(parentContext, parentField);
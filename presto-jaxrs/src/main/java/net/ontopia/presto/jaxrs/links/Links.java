@@ -68,6 +68,10 @@ public interface Links {
             PrestoField parentField, String topicId, PrestoType type, PrestoView view,
             PrestoField field);
 
+    public abstract Link fieldValuesLink(PrestoContext parentContext,
+            PrestoField parentField, String topicId, PrestoType type, PrestoView view,
+            PrestoField field);
+
     public abstract Link fieldAvailableValuesLink(PrestoContext parentContext,
             PrestoField parentField, String topicId, PrestoType type, PrestoView view,
             PrestoField field, boolean query);
@@ -1,8 +1,10 @@
 package net.ontopia.presto.jaxrs.sort;
 
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
 
 import net.ontopia.presto.jaxrs.Presto;
@@ -33,6 +35,15 @@ public class DefaultSortKeyGenerator extends SortKeyGenerator {
         }
     }
 
+    @Override
+    public void sort(PrestoContextRules rules, PrestoField field, Projection projection, List<? extends Object> values) {
+        if (projection != null && projection.isSorted() && field.isReferenceField()) {
+            new FieldProjectionComparator(getPresto(), rules, field, projection).sort(values);
+        } else {
+            super.sort(rules, field, projection, values);
+        }
+    }
+
     private static final class FieldComparator implements Comparator<Object> {
         private final PrestoField field;
         private final boolean ascending;
@@ -102,6 +113,46 @@ public class DefaultSortKeyGenerator extends SortKeyGenerator {
             }
         }
 
+        // decorate-sort-undecorate: extract the sort key of each value once
+        @SuppressWarnings("unchecked")
+        private void sort(List<? extends Object> values) {
+            int size = values.size();
+            if (size < 2) {
+                return;
+            }
+            SortEntry[] entries = new SortEntry[size];
+            int i = 0;
+            for (Object value : values) {
+                PrestoTopic topic = (PrestoTopic)value;
+                ValueFieldConfig vfc = getValueFieldConfig(topic, orderField);
+                entries[i++] = new SortEntry(value, vfc, vfc.getValue(topic));
+            }
+            Arrays.sort(entries, new Comparator<SortEntry>() {
+                @Override
+                public int compare(SortEntry e1, SortEntry e2) {
+                    int result = e1.config.valueComparator.compare(e1.key, e2.key);
+                    return ascending ? result : result * -1;
+                }
+            });
+            ListIterator<Object> iter = ((List<Object>)values).listIterator();
+            for (SortEntry entry : entries) {
+                iter.next();
+                iter.set(entry.value);
+            }
+        }
+
+        private static class SortEntry {
+            private final Object value;
+            private final ValueFieldConfig config;
+            private final Object key;
+
+            private SortEntry(Object value, ValueFieldConfig config, Object key) {
+                this.value = value;
+                this.config = config;
+                this.key = key;
+            }
+        }
+
         private static class ValueFieldConfig {
             private Presto presto;
             private PrestoContextRules rules;
@@ -1,6 +1,8 @@
 package net.ontopia.presto.jaxrs.sort;
 
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 
 import net.ontopia.presto.jaxrs.AbstractPrestoHandler;
 import net.ontopia.presto.spi.PrestoField;
@@ -11,4 +13,8 @@ public abstract class SortKeyGenerator extends AbstractPrestoHandler {
     
     public abstract Comparator<Object> getComparator(PrestoContextRules rules, PrestoField field, Projection projection);
 
+    public void sort(PrestoContextRules rules, PrestoField field, Projection projection, List<? extends Object> values) {
+        Collections.sort(values, getComparator(rules, field, projection));
+    }
+
 }
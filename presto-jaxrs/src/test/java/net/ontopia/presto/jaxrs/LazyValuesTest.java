@@ -0,0 +1,89 @@
+package net.ontopia.presto.jaxrs;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.ws.rs.core.Response;
+
+import net.ontopia.presto.jaxb.FieldData;
+import net.ontopia.presto.jaxb.TopicView;
+import net.ontopia.presto.jaxb.Value;
+import net.ontopia.presto.spi.PrestoTopic;
+import net.ontopia.presto.spi.PrestoType;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LazyValuesTest extends AbstractPrestoTest {
+
+    private static final String DATABASE_ID = "lazy-values";
+
+    private TestEditorResource resource;
+
+    @Before
+    public void setUp() {
+        createProviders(DATABASE_ID, "lazy-values.data.json");
+        this.resource = new TestEditorResource(schemaProvider, dataProvider);
+    }
+
+    private TopicView getTopicView() throws Exception {
+        Response response = resource.getTopicViewInView(DATABASE_ID, "o:topic", "info", false);
+        Assert.assertEquals(200, response.getStatus());
+        return (TopicView)response.getEntity();
+    }
+
+    private static FieldData getField(TopicView topicView, String fieldId) {
+        for (FieldData fieldData : topicView.getFields()) {
+            if (fieldData.getId().equals(fieldId)) {
+                return fieldData;
+            }
+        }
+        throw new IllegalArgumentException(fieldId);
+    }
+
+    private List<? extends Object> getStoredValues(String fieldId) {
+        PrestoTopic topic = dataProvider.getTopicById("o:topic");
+        PrestoType type = schemaProvider.getTypeById(topic.getTypeId());
+        return topic.getStoredValues(type.getFieldById(fieldId));
+    }
+
+    @Test
+    public void testLazyFieldsRenderedWithoutValues() throws Exception {
+        TopicView topicView = getTopicView();
+        Assert.assertNull(getField(topicView, "notes").getValues());
+        Assert.assertNull(getField(topicView, "related").getValues());
+        Assert.assertEquals(Integer.valueOf(1), getField(topicView, "related").getValuesTotal());
+        // values of editable fields are needed when the topic is saved
+        Assert.assertEquals(1, getField(topicView, "tags").getValues().size());
+    }
+
+    @Test
+    public void testSaveLazyRenderedTopic() throws Exception {
+        TopicView topicView = getTopicView();
+        Value name = new Value();
+        name.setValue("Renamed");
+        getField(topicView, "name").setValues(Collections.singleton(name));
+
+        Response response = resource.updateTopicView(DATABASE_ID, "o:topic", "info", topicView);
+        Assert.assertEquals(200, response.getStatus());
+
+        Assert.assertEquals(Arrays.asList("Renamed"), getStoredValues("name"));
+        Assert.assertEquals(Arrays.asList("Note1", "Note2"), getStoredValues("notes"));
+        Assert.assertEquals(1, getStoredValues("related").size());
+        Assert.assertEquals(Arrays.asList("Tag1"), getStoredValues("tags"));
+    }
+
+    @Test
+    public void testFieldsWithoutValuesNotSaved() throws Exception {
+        TopicView topicView = getTopicView();
+        getField(topicView, "tags").setValues(null);
+
+        Response response = resource.updateTopicView(DATABASE_ID, "o:topic", "info", topicView);
+        Assert.assertEquals(200, response.getStatus());
+
+        Assert.assertEquals(Arrays.asList("Tag1"), getStoredValues("tags"));
+    }
+
+}
@@ -0,0 +1,81 @@
+package net.ontopia.presto.jaxrs;
+
+import java.net.URI;
+
+import net.ontopia.presto.spi.PrestoField;
+import net.ontopia.presto.spi.jackson.JacksonTopic;
+import net.ontopia.presto.spi.impl.pojo.PojoSchemaProvider;
+import net.ontopia.presto.spi.utils.PrestoContext;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PrestoRevisionTest extends AbstractPrestoTest {
+
+    private static final String DATABASE_ID = "path-parser";
+
+    @Before
+    public void setUp() {
+        createProviders(DATABASE_ID, "path-parser.data.json");
+    }
+
+    private Presto createPresto(final String resolvedFieldId) {
+        return new Presto(DATABASE_ID, null, schemaProvider, dataProvider, null) {
+            @Override
+            public URI getBaseUri() {
+                return URI.create("http://example.org/test");
+            }
+            @Override
+            protected boolean isResolvedField(PrestoField field) {
+                return field.getId().equals(resolvedFieldId);
+            }
+        };
+    }
+
+    @Test
+    public void testSchemaRevisionIsStable() {
+        String revision = ((PojoSchemaProvider)schemaProvider).getSchemaRevision();
+        Assert.assertNotNull(revision);
+        PojoSchemaProvider reloaded = PojoSchemaProvider.loadSchemaProvider(DATABASE_ID, "path-parser.schema.json");
+        Assert.assertNotSame(schemaProvider, reloaded);
+        Assert.assertEquals(revision, reloaded.getSchemaRevision());
+    }
+
+    @Test
+    public void testTopicRevision() {
+        Presto session = createPresto(null);
+        PrestoContext context = PathParser.getTopicByPath(session, "_", "o:root", "pinfo");
+        String revision = session.getTopicRevision(context, "a");
+        Assert.assertNotNull(revision);
+        Assert.assertEquals(revision, createPresto(null).getTopicRevision(context, "a"));
+        Assert.assertFalse(revision.equals(session.getTopicRevision(context, "b")));
+    }
+
+    @Test
+    public void testNoTopicRevisionWithResolvedField() {
+        Presto session = createPresto("children");
+        PrestoContext context = PathParser.getTopicByPath(session, "_", "o:root", "pinfo");
+        Assert.assertNull(session.getTopicRevision(context));
+
+        Assert.assertNull(session.getFieldRevision(context, context.getFieldById("children")));
+        Assert.assertNotNull(session.getFieldRevision(context, context.getFieldById("name")));
+    }
+
+    @Test
+    public void testTopicRevisionChangesWithReferencedTopic() {
+        Presto session = createPresto(null);
+        PrestoContext context = PathParser.getTopicByPath(session, "_", "o:root", "pinfo");
+        String revision = session.getTopicRevision(context);
+        String childrenRevision = session.getFieldRevision(context, context.getFieldById("children"));
+        String nameRevision = session.getFieldRevision(context, context.getFieldById("name"));
+
+        JacksonTopic child = (JacksonTopic)dataProvider.getTopicById("o:child1");
+        child.getData().putArray("name").add("Renamed");
+
+        Assert.assertFalse(revision.equals(session.getTopicRevision(context)));
+        Assert.assertFalse(childrenRevision.equals(session.getFieldRevision(context, context.getFieldById("children"))));
+        Assert.assertEquals(nameRevision, session.getFieldRevision(context, context.getFieldById("name")));
+    }
+
+}
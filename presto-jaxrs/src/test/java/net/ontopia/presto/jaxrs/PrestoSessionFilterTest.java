@@ -0,0 +1,88 @@
+package net.ontopia.presto.jaxrs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PrestoSessionFilterTest {
+
+    private static ServletRequest createRequest() {
+        final Map<String,Object> attributes = new HashMap<String,Object>();
+        return (ServletRequest)Proxy.newProxyInstance(PrestoSessionFilterTest.class.getClassLoader(),
+                new Class<?>[] { ServletRequest.class }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.equals("getAttribute")) {
+                    return attributes.get(args[0]);
+                } else if (name.equals("setAttribute")) {
+                    attributes.put((String)args[0], args[1]);
+                } else if (name.equals("removeAttribute")) {
+                    attributes.remove(args[0]);
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testClosesSessionsNotWritten() throws Exception {
+        final ServletRequest request = createRequest();
+        final AtomicInteger closed = new AtomicInteger();
+        Assert.assertFalse(PrestoSessionFilter.isInstalled(request));
+
+        new PrestoSessionFilter().doFilter(request, null, new FilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response) throws IOException, ServletException {
+                Assert.assertTrue(PrestoSessionFilter.isInstalled(request));
+                PrestoSessionFilter.register(request, new Closeable() {
+                    @Override
+                    public void close() {
+                        closed.incrementAndGet();
+                    }
+                });
+            }
+        });
+        Assert.assertEquals(1, closed.get());
+        Assert.assertFalse(PrestoSessionFilter.isInstalled(request));
+    }
+
+    @Test
+    public void testClosesSessionsOnFailure() {
+        final ServletRequest request = createRequest();
+        final AtomicInteger closed = new AtomicInteger();
+        try {
+            new PrestoSessionFilter().doFilter(request, null, new FilterChain() {
+                @Override
+                public void doFilter(ServletRequest request, ServletResponse response) throws IOException, ServletException {
+                    PrestoSessionFilter.register(request, new Closeable() {
+                        @Override
+                        public void close() {
+                            closed.incrementAndGet();
+                        }
+                    });
+                    throw new IOException("client went away");
+                }
+            });
+            Assert.fail("Exception not rethrown");
+        } catch (Exception e) {
+            // expected
+        }
+        Assert.assertEquals(1, closed.get());
+        Assert.assertFalse(PrestoSessionFilter.isInstalled(request));
+    }
+
+}
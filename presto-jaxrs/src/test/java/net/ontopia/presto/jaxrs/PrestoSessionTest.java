@@ -0,0 +1,49 @@
+package net.ontopia.presto.jaxrs;
+
+import net.ontopia.presto.spi.PrestoDataProvider;
+import net.ontopia.presto.spi.PrestoTopic;
+import net.ontopia.presto.spi.jackson.JacksonIdentityMapDataProvider;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PrestoSessionTest extends AbstractPrestoTest {
+
+    private TestEditorResource resource;
+
+    @Before
+    public void setUp() {
+        String databaseId = "path-parser";
+        createProviders(databaseId, "path-parser.data.json");
+        this.resource = new TestEditorResource(schemaProvider, dataProvider);
+    }
+
+    @Test
+    public void testNoIdentityMapByDefault() {
+        Presto session = resource.createPresto("path-parser", false);
+        Assert.assertSame(dataProvider, session.getDataProvider());
+    }
+
+    @Test
+    public void testSessionUsesIdentityMap() {
+        resource.setIdentityMapEnabled(true);
+        Presto session = resource.createPresto("path-parser", false);
+        PrestoDataProvider sessionDataProvider = session.getDataProvider();
+        Assert.assertTrue(sessionDataProvider instanceof JacksonIdentityMapDataProvider);
+        Assert.assertSame(dataProvider, JacksonIdentityMapDataProvider.unwrap(sessionDataProvider));
+        Assert.assertSame(sessionDataProvider, session.getResolver().getDataProvider());
+
+        PrestoTopic topic = sessionDataProvider.getTopicById("o:root");
+        Assert.assertSame(topic, sessionDataProvider.getTopicById("o:root"));
+    }
+
+    @Test
+    public void testIdentityMapPerSession() {
+        resource.setIdentityMapEnabled(true);
+        PrestoTopic topic = resource.createPresto("path-parser", false).getDataProvider().getTopicById("o:root");
+        PrestoTopic other = resource.createPresto("path-parser", false).getDataProvider().getTopicById("o:root");
+        Assert.assertNotSame(topic, other);
+    }
+
+}
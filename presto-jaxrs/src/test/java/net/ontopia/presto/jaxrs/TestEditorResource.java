@@ -15,15 +15,24 @@ public class TestEditorResource extends EditorResource {
 
     private PrestoSchemaProvider schemaProvider_;
     private PrestoDataProvider dataProvider_;
+    private boolean identityMap;
 
     public TestEditorResource(PrestoSchemaProvider schemaProvider, PrestoDataProvider dataProvider) {
         this.schemaProvider_ = schemaProvider;
         this.dataProvider_ = dataProvider;
     }
+
+    public void setIdentityMapEnabled(boolean identityMap) {
+        this.identityMap = identityMap;
+    }
     
     @Override
     protected Presto createPresto(String databaseId, boolean readOnlyMode) {
         return new EditorResourcePresto(databaseId, getDatabaseName(databaseId), schemaProvider_, dataProvider_, getAttributes()) {
+            @Override
+            protected boolean isIdentityMapEnabled() {
+                return identityMap;
+            }
             @Override
             public URI getBaseUri() {
                 try {
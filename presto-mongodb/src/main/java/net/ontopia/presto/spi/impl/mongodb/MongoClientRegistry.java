@@ -0,0 +1,193 @@
+package net.ontopia.presto.spi.impl.mongodb;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.mongojack.JacksonDBCollection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.Mongo;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientURI;
+
+/**
+ * Process-wide registry of Mongo clients and collection wrappers. There is
+ * one pooled client per key, by default the URI and database id, shared by
+ * all data providers and field resolvers, so creating a data provider per
+ * request does not open new connections. Pool statistics are read from the MBeans the driver
+ * registers for each connection pool. Call shutdown when the application is stopped, so
+ * that no connections outlive it.
+ */
+public class MongoClientRegistry {
+
+    private static Logger log = LoggerFactory.getLogger(MongoClientRegistry.class);
+
+    private static final String POOL_MBEANS = "org.mongodb.driver:type=ConnectionPool,*";
+
+    private static final ConcurrentMap<String,Mongo> clients = new ConcurrentHashMap<String,Mongo>();
+
+    private static final ConcurrentMap<String,JacksonDBCollection<ObjectNode, Object>> collections = 
+            new ConcurrentHashMap<String,JacksonDBCollection<ObjectNode, Object>>();
+
+    private static final AtomicLong collectionHits = new AtomicLong();
+    private static final AtomicLong collectionMisses = new AtomicLong();
+
+    /**
+     * Creates the client stored under a key the first time the key is used.
+     */
+    public interface ClientFactory {
+
+        Mongo createClient();
+
+    }
+
+    /**
+     * Returns the key of the client for the given URI and database. Clients
+     * are kept per database, as a data provider may create a different
+     * client for each of its databases.
+     */
+    public static String getKey(String mongoURI, String databaseId) {
+        return mongoURI + '\n' + databaseId;
+    }
+
+    public static Mongo getClient(String mongoURI, String databaseId) {
+        return getClient(getKey(mongoURI, databaseId), new URIClientFactory(mongoURI));
+    }
+
+    public static Mongo getClient(String key, ClientFactory factory) {
+        Mongo client = clients.get(key);
+        if (client == null) {
+            synchronized (clients) {
+                client = clients.get(key);
+                if (client == null) {
+                    client = factory.createClient();
+                    clients.put(key, client);
+                }
+            }
+        }
+        return client;
+    }
+
+    public static DB getDB(String mongoURI, String databaseId) {
+        return getDB(getClient(mongoURI, databaseId), databaseId);
+    }
+
+    public static JacksonDBCollection<ObjectNode, Object> getCollection(String mongoURI, String databaseId, String collectionId) {
+        return getCollection(getKey(mongoURI, databaseId), new URIClientFactory(mongoURI), databaseId, collectionId);
+    }
+
+    public static JacksonDBCollection<ObjectNode, Object> getCollection(String key, ClientFactory factory, String databaseId, String collectionId) {
+        String collectionKey = key + '\n' + collectionId;
+        JacksonDBCollection<ObjectNode, Object> coll = collections.get(collectionKey);
+        if (coll == null) {
+            collectionMisses.incrementAndGet();
+            DBCollection dbCollection = getDB(getClient(key, factory), databaseId).getCollection(collectionId);
+            coll = JacksonDBCollection.wrap(dbCollection, ObjectNode.class);
+            JacksonDBCollection<ObjectNode, Object> existing = collections.putIfAbsent(collectionKey, coll);
+            if (existing != null) {
+                coll = existing;
+            }
+        } else {
+            collectionHits.incrementAndGet();
+        }
+        return coll;
+    }
+
+    // mongojack works on the legacy DB API, which the 3.0 driver marks as deprecated
+    @SuppressWarnings("deprecation")
+    private static DB getDB(Mongo client, String databaseId) {
+        return client.getDB(databaseId);
+    }
+
+    /**
+     * Closes all clients. New ones are created if they are used again.
+     */
+    public static void shutdown() {
+        synchronized (clients) {
+            collections.clear();
+            for (Mongo client : clients.values()) {
+                try {
+                    client.close();
+                } catch (Exception e) {
+                    log.warn("Could not close mongo connection: " + client, e);
+                }
+            }
+            clients.clear();
+        }
+    }
+
+    // -- metrics
+
+    public static int getClientCount() {
+        return clients.size();
+    }
+
+    public static long getCollectionHitCount() {
+        return collectionHits.get();
+    }
+
+    public static long getCollectionMissCount() {
+        return collectionMisses.get();
+    }
+
+    public static int getPoolSize() {
+        return sumPoolAttribute("Size");
+    }
+
+    public static int getPoolCheckedOutCount() {
+        return sumPoolAttribute("CheckedOutCount");
+    }
+
+    public static int getPoolWaitQueueSize() {
+        return sumPoolAttribute("WaitQueueSize");
+    }
+
+    private static int sumPoolAttribute(String attribute) {
+        int sum = 0;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : getPoolNames(server)) {
+            try {
+                sum += ((Number)server.getAttribute(name, attribute)).intValue();
+            } catch (Exception e) {
+                log.warn("Could not read " + attribute + " from " + name, e);
+            }
+        }
+        return sum;
+    }
+
+    private static Collection<ObjectName> getPoolNames(MBeanServer server) {
+        try {
+            Set<ObjectName> names = server.queryNames(new ObjectName(POOL_MBEANS), null);
+            return new ArrayList<ObjectName>(names);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static class URIClientFactory implements ClientFactory {
+
+        private final String mongoURI;
+
+        private URIClientFactory(String mongoURI) {
+            this.mongoURI = mongoURI;
+        }
+
+        @Override
+        public Mongo createClient() {
+            return new MongoClient(new MongoClientURI(mongoURI));
+        }
+    }
+
+}
@@ -7,13 +7,18 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import net.ontopia.presto.spi.PrestoField;
 import net.ontopia.presto.spi.PrestoSchemaProvider;
 import net.ontopia.presto.spi.PrestoTopic;
 import net.ontopia.presto.spi.PrestoType;
+import net.ontopia.presto.spi.jackson.JacksonBucketDataStrategy;
 import net.ontopia.presto.spi.jackson.JacksonDataProvider;
+import net.ontopia.presto.spi.jackson.JacksonDataStrategy;
+import net.ontopia.presto.spi.jackson.JacksonDefaultDataStrategy;
 import net.ontopia.presto.spi.jackson.JacksonTopic;
+import net.ontopia.presto.spi.utils.PrestoDefaultChangeSet.Change;
 import net.ontopia.presto.spi.utils.Utils;
 
 import org.mongojack.DBCursor;
@@ -21,34 +26,27 @@ import org.mongojack.JacksonDBCollection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.mongodb.BasicDBList;
 import com.mongodb.BasicDBObject;
-import com.mongodb.DB;
-import com.mongodb.DBCollection;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBObject;
 import com.mongodb.Mongo;
-import com.mongodb.MongoURI;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientURI;
 
 public abstract class MongoDataProvider extends JacksonDataProvider {
 
     private static Logger log = LoggerFactory.getLogger(MongoDataProvider.class);
 
-    private Map<String,Mongo> mongos = new HashMap<String,Mongo>();
-    private Map<String,JacksonDBCollection<ObjectNode, Object>> collections = new HashMap<String,JacksonDBCollection<ObjectNode, Object>>();
-    
     public MongoDataProvider(PrestoSchemaProvider schemaProvider) {
         super(schemaProvider);
     }
 
-    private static final String DEFAULT_MONGO_URI = "mongodb://localhost";
+    protected static final int DEFAULT_AVAILABLE_VALUES_LIMIT = 100;
 
-    protected Mongo createMongo(String databaseId) {
-        try {
-            return new Mongo(new MongoURI(getMongoURI()));
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
-    }
+    private static final String DEFAULT_MONGO_URI = "mongodb://localhost";
 
     protected String getMongoURI() {
         return DEFAULT_MONGO_URI;
@@ -85,6 +83,13 @@ public abstract class MongoDataProvider extends JacksonDataProvider {
         return includeLazyTopics(result, topicIds);
     }
 
+    @Override
+    public Collection<PrestoTopic> getTopicStubsByIds(Collection<String> topicIds) {
+        Collection<PrestoTopic> result = new ArrayList<PrestoTopic>();
+        aggregateTopicStubsById(topicIds, result);
+        return includeLazyTopics(result, topicIds);
+    }
+
     @Override
     public Collection<? extends Object> getAvailableFieldValues(PrestoTopic topic, final PrestoField field, String query) {
         Collection<PrestoType> types = field.getAvailableFieldValueTypes();
@@ -92,7 +97,11 @@ public abstract class MongoDataProvider extends JacksonDataProvider {
             return Collections.emptyList();
         }
         List<PrestoTopic> result = new ArrayList<PrestoTopic>();
-        aggregateTopicsByType(types, result);
+        if (query != null && !query.isEmpty()) {
+            aggregateTopicsByTypeAndName(types, query, getAvailableValuesLimit(), result);
+        } else {
+            aggregateTopicsByType(types, result);
+        }
 
         Collections.sort(result, new Comparator<PrestoTopic>() {
             @Override
@@ -100,18 +109,19 @@ public abstract class MongoDataProvider extends JacksonDataProvider {
                 return Utils.compareComparables(o1.getName(field), o2.getName(field));
             }
         });
+        int limit = getAvailableValuesLimit();
+        if (query != null && result.size() > limit) {
+            return result.subList(0, limit);
+        }
         return result;
     }
 
+    /**
+     * Does nothing, as clients are shared by all data providers. Call
+     * MongoClientRegistry.shutdown when the application is stopped.
+     */
     @Override
     public void close() {
-        for (Mongo mongo : mongos.values()) {
-            try {
-                mongo.close();
-            } catch (Exception e) {
-                log.warn("Could not close mongo connection: " + mongo, e);
-            }
-        }
     }
 
     // -- DefaultDataProvider
@@ -135,6 +145,145 @@ public abstract class MongoDataProvider extends JacksonDataProvider {
         collection.updateById(identityStrategy.externalToInternalTopicId(topic.getId()), data);
     }
 
+    @Override
+    public void update(PrestoTopic topic, Collection<PrestoField> updatedFields) {
+        JacksonTopic jtopic = (JacksonTopic)topic;
+        DBObject patch = createPatch(jtopic, updatedFields);
+        if (patch == null) {
+            update(topic);
+        } else if (!patch.keySet().isEmpty()) {
+            JacksonDBCollection<ObjectNode, Object> collection = getCollectionByTypeId(topic.getTypeId());
+            collection.getDbCollection().update(getIdQuery(topic), patch);
+        }
+    }
+
+    @Override
+    public void updateBulk(List<Change> changes) {
+        // changes are written in order; a bulk is executed before a create
+        // and whenever the next change is in a different collection
+        String bulkKey = null;
+        BulkWriteOperation bulk = null;
+        for (Change change : changes) {
+            PrestoTopic topic = change.getTopic();
+            if (topic.isInline()) {
+                throw new RuntimeException("Cannot save inline topic directly: " + topic);
+            }
+            if (!change.isTopicUpdated()) {
+                continue;
+            }
+            if (change.getType() == Change.Type.CREATE) {
+                if (bulk != null) {
+                    bulk.execute();
+                    bulk = null;
+                }
+                // inserted one by one so that generated ids are handled as before
+                create(topic);
+                continue;
+            }
+            DBObject patch = null;
+            DBObject doc = null;
+            if (change.getType() == Change.Type.UPDATE) {
+                patch = createPatch((JacksonTopic)topic, change.getUpdatedFields());
+                if (patch == null) {
+                    doc = MongoUtils.convertToDbObject(getObjectMapper(), ((JacksonTopic)topic).getData());
+                    doc.removeField("_id");
+                } else if (patch.keySet().isEmpty()) {
+                    continue;
+                }
+            }
+            String collectionKey = getCollectionKeyByTypeId(topic.getTypeId());
+            if (bulk != null && !collectionKey.equals(bulkKey)) {
+                bulk.execute();
+                bulk = null;
+            }
+            if (bulk == null) {
+                bulk = getCollectionByKey(collectionKey).getDbCollection().initializeOrderedBulkOperation();
+                bulkKey = collectionKey;
+            }
+            if (change.getType() == Change.Type.DELETE) {
+                bulk.find(getIdQuery(topic)).removeOne();
+            } else if (doc != null) {
+                bulk.find(getIdQuery(topic)).replaceOne(doc);
+            } else {
+                bulk.find(getIdQuery(topic)).updateOne(patch);
+            }
+        }
+        if (bulk != null) {
+            bulk.execute();
+        }
+    }
+
+    private DBObject getIdQuery(PrestoTopic topic) {
+        return new BasicDBObject("_id", identityStrategy.externalToInternalTopicId(topic.getId()));
+    }
+
+    /**
+     * Returns a $set/$unset document for the updated fields, an empty document
+     * if there is nothing to write, or null if the whole document has to be
+     * written. Patches are only made for default and bucket data strategies
+     * that support partial updates, as only then are the paths of the
+     * fields known.
+     */
+    protected DBObject createPatch(JacksonTopic topic, Collection<PrestoField> updatedFields) {
+        if (updatedFields == null) {
+            return null;
+        }
+        JacksonDataStrategy dataStrategy = getDataStrategy();
+        ObjectNode data = topic.getData();
+        ObjectNode set = getObjectMapper().createObjectNode();
+        ObjectNode unset = getObjectMapper().createObjectNode();
+        for (PrestoField field : updatedFields) {
+            String fieldId = field.getActualId();
+            String path;
+            JsonNode value;
+            if (dataStrategy instanceof JacksonBucketDataStrategy && ((JacksonBucketDataStrategy)dataStrategy).supportsPartialUpdate()) {
+                String bucketId = ((JacksonBucketDataStrategy)dataStrategy).getWriteBucketId(data);
+                if (!isPatchableKey(bucketId) || !isPatchableKey(fieldId)) {
+                    return null;
+                }
+                path = bucketId + "." + fieldId;
+                value = data.path(bucketId).get(fieldId);
+            } else if (dataStrategy instanceof JacksonDefaultDataStrategy && ((JacksonDefaultDataStrategy)dataStrategy).supportsPartialUpdate()) {
+                if (!isPatchableKey(fieldId)) {
+                    return null;
+                }
+                path = fieldId;
+                value = data.get(fieldId);
+            } else {
+                return null;
+            }
+            putPatchValue(set, unset, path, value);
+            if (field.isNameField()) {
+                // the name property is updated along with the name field
+                String nameKey = getNameKey();
+                if (!isPatchableKey(nameKey)) {
+                    return null;
+                }
+                putPatchValue(set, unset, nameKey, data.get(nameKey));
+            }
+        }
+        ObjectNode patch = getObjectMapper().createObjectNode();
+        if (set.size() > 0) {
+            patch.set("$set", set);
+        }
+        if (unset.size() > 0) {
+            patch.set("$unset", unset);
+        }
+        return MongoUtils.convertToDbObject(getObjectMapper(), patch);
+    }
+
+    private void putPatchValue(ObjectNode set, ObjectNode unset, String path, JsonNode value) {
+        if (value == null) {
+            unset.put(path, "");
+        } else {
+            set.set(path, value);
+        }
+    }
+
+    private boolean isPatchableKey(String key) {
+        return key != null && !key.isEmpty() && key.indexOf('.') == -1 && !key.startsWith("$");
+    }
+
     @Override
     public boolean delete(PrestoTopic topic) {
         JacksonDBCollection<ObjectNode, Object> collection = getCollectionByTypeId(topic.getTypeId());
@@ -145,26 +294,39 @@ public abstract class MongoDataProvider extends JacksonDataProvider {
     // -- data collections strategy
 
     protected JacksonDBCollection<ObjectNode, Object> getCollectionByKey(String collectionKey) {
-        JacksonDBCollection<ObjectNode, Object> coll = collections.get(collectionKey);
-        if (coll == null) {
-            String databaseId = getDatabaseIdByCollectionKey(collectionKey);
-            Mongo mongo = getMongo(databaseId);
-            DB db = mongo.getDB(databaseId);
-            String collectionId = getCollectionIdByCollectionKey(collectionKey);
-            DBCollection dbCollection = db.getCollection(collectionId);
-            coll = JacksonDBCollection.wrap(dbCollection, ObjectNode.class);
-            collections.put(collectionId, coll);
-        }
-        return coll;
+        String databaseId = getDatabaseIdByCollectionKey(collectionKey);
+        String collectionId = getCollectionIdByCollectionKey(collectionKey);
+        return MongoClientRegistry.getCollection(getMongoKey(databaseId), getClientFactory(databaseId), databaseId, collectionId);
     }
     
     protected Mongo getMongo(String databaseId) {
-        Mongo mongo = mongos.get(databaseId);
-        if (mongo == null) {
-            mongo = createMongo(databaseId);
-            mongos.put(databaseId, mongo);
-        }
-        return mongo;
+        return MongoClientRegistry.getClient(getMongoKey(databaseId), getClientFactory(databaseId));
+    }
+
+    /**
+     * Called by the registry the first time a client with the key of the
+     * database is needed. The client is shared, so it must not depend on
+     * the state of this provider.
+     */
+    protected Mongo createMongo(String databaseId) {
+        return new MongoClient(new MongoClientURI(getMongoURI()));
+    }
+
+    /**
+     * Returns the registry key of the client used for the database. Override
+     * together with createMongo if clients are made differently.
+     */
+    protected String getMongoKey(String databaseId) {
+        return MongoClientRegistry.getKey(getMongoURI(), databaseId);
+    }
+
+    private MongoClientRegistry.ClientFactory getClientFactory(final String databaseId) {
+        return new MongoClientRegistry.ClientFactory() {
+            @Override
+            public Mongo createClient() {
+                return createMongo(databaseId);
+            }
+        };
     }
     
     protected JacksonDBCollection<ObjectNode, Object> getCollectionByTopicId(String topicId) {
@@ -191,6 +353,25 @@ public abstract class MongoDataProvider extends JacksonDataProvider {
     }
     
     protected void aggregateTopicsById(Collection<String> topicIds, Collection<PrestoTopic> result) {
+        Map<String,List<String>> collectionKeys = getTopicIdsByCollectionKey(topicIds);
+        for (String collectionKey : collectionKeys.keySet()) {
+            JacksonDBCollection<ObjectNode, Object> coll = getCollectionByKey(collectionKey);
+            List<String> partitionedTopicIds = collectionKeys.get(collectionKey);
+            aggregateResult(coll.find(new BasicDBObject("_id", new BasicDBObject("$in", getIdentityStrategy().externalToInternalTopicIds(partitionedTopicIds)))), result);
+        }
+    }
+    
+    protected void aggregateTopicStubsById(Collection<String> topicIds, Collection<PrestoTopic> result) {
+        BasicDBObject keys = new BasicDBObject("_id", 1).append(":type", 1).append(getNameKey(), 1);
+        Map<String,List<String>> collectionKeys = getTopicIdsByCollectionKey(topicIds);
+        for (String collectionKey : collectionKeys.keySet()) {
+            JacksonDBCollection<ObjectNode, Object> coll = getCollectionByKey(collectionKey);
+            List<String> partitionedTopicIds = collectionKeys.get(collectionKey);
+            aggregateStubResult(coll.find(new BasicDBObject("_id", new BasicDBObject("$in", getIdentityStrategy().externalToInternalTopicIds(partitionedTopicIds))), keys), result);
+        }
+    }
+    
+    private Map<String,List<String>> getTopicIdsByCollectionKey(Collection<String> topicIds) {
         Map<String,List<String>> collectionKeys = new HashMap<String,List<String>>();
         for (String topicId : topicIds) {
             String collectionKey = getCollectionKeyByTopicId(topicId);
@@ -201,14 +382,19 @@ public abstract class MongoDataProvider extends JacksonDataProvider {
             }
             partitionedTopicIds.add(topicId);
         }
+        return collectionKeys;
+    }
+    
+    protected void aggregateTopicsByType(Collection<PrestoType> types, Collection<PrestoTopic> result) {
+        Map<String,BasicDBList> collectionKeys = getTypeIdsByCollectionKey(types);
         for (String collectionKey : collectionKeys.keySet()) {
             JacksonDBCollection<ObjectNode, Object> coll = getCollectionByKey(collectionKey);
-            List<String> partitionedTopicIds = collectionKeys.get(collectionKey);
-            aggregateResult(coll.find(new BasicDBObject("_id", new BasicDBObject("$in", getIdentityStrategy().externalToInternalTopicIds(partitionedTopicIds)))), result);
+            BasicDBList partitionedTypeIds = collectionKeys.get(collectionKey);
+            aggregateResult(coll.find(new BasicDBObject(":type", new BasicDBObject("$in", partitionedTypeIds))), result);
         }
     }
     
-    protected void aggregateTopicsByType(Collection<PrestoType> types, Collection<PrestoTopic> result) {
+    private Map<String,BasicDBList> getTypeIdsByCollectionKey(Collection<PrestoType> types) {
         Map<String,BasicDBList> collectionKeys = new HashMap<String,BasicDBList>();
         for (PrestoType type : types) {
             String typeId = type.getId();
@@ -220,18 +406,69 @@ public abstract class MongoDataProvider extends JacksonDataProvider {
             }
             partitionedTypeIds.add(typeId);
         }
+        return collectionKeys;
+    }
+
+    protected void aggregateTopicsByTypeAndName(Collection<PrestoType> types, String query, int limit, Collection<PrestoTopic> result) {
+        Map<String,BasicDBList> collectionKeys = getTypeIdsByCollectionKey(types);
         for (String collectionKey : collectionKeys.keySet()) {
             JacksonDBCollection<ObjectNode, Object> coll = getCollectionByKey(collectionKey);
             BasicDBList partitionedTypeIds = collectionKeys.get(collectionKey);
-            aggregateResult(coll.find(new BasicDBObject(":type", new BasicDBObject("$in", partitionedTypeIds))), result);
+            BasicDBObject q = new BasicDBObject(":type", new BasicDBObject("$in", partitionedTypeIds));
+            q.append(getNameKey(), createNameQuery(query));
+            aggregateResult(coll.find(q).sort(new BasicDBObject(getNameKey(), 1)).limit(limit), result);
         }
     }
-    
+
+    protected int getAvailableValuesLimit() {
+        return DEFAULT_AVAILABLE_VALUES_LIMIT;
+    }
+
+    protected String getNameKey() {
+        return ":name";
+    }
+
+    /**
+     * Returns true if the name key holds lowercased names, in which case the
+     * query is lowercased too. Override together with getNameKey() to get
+     * case-insensitive matching that can still use an index.
+     */
+    protected boolean isLowerCaseNameKey() {
+        return false;
+    }
+
+    // case-sensitive anchored prefix match, so that an index on the name key can be used
+    protected Object createNameQuery(String query) {
+        String prefix = isLowerCaseNameKey() ? query.toLowerCase() : query;
+        return Pattern.compile("^" + escapeRegex(prefix));
+    }
+
+    // escapes each metacharacter, so that the pattern stays a plain prefix
+    static String escapeRegex(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 8);
+        for (int i=0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ("\\^$.|?*+()[]{}".indexOf(c) >= 0) {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
     protected void aggregateResult(DBCursor<ObjectNode> cursor, Collection<PrestoTopic> result) {
+        aggregateResult(cursor, result, false);
+    }
+
+    protected void aggregateStubResult(DBCursor<ObjectNode> cursor, Collection<PrestoTopic> result) {
+        aggregateResult(cursor, result, true);
+    }
+
+    private void aggregateResult(DBCursor<ObjectNode> cursor, Collection<PrestoTopic> result, boolean stubs) {
         try {
             for (ObjectNode docNode : cursor) {
                 if (docNode.isObject()) {
-                    result.add(existing(docNode));
+                    result.add(stubs ? stub(docNode) : existing(docNode));
                 }
             }
         } finally {
@@ -1,6 +1,5 @@
 package net.ontopia.presto.spi.impl.mongodb;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -19,12 +18,9 @@ import net.ontopia.presto.spi.utils.PrestoVariableResolver;
 import net.ontopia.presto.spi.utils.Utils;
 
 import org.mongojack.JacksonDBCollection;
-import org.mongojack.MongoJsonMappingException;
-import org.mongojack.internal.object.BsonObjectGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
@@ -40,7 +36,28 @@ public abstract class MongoFieldResolver extends PrestoFieldResolver {
 
     private static Logger log = LoggerFactory.getLogger(MongoFieldResolver.class);
 
-    protected abstract DB getDB();
+    private static final String DEFAULT_MONGO_URI = "mongodb://localhost";
+
+    /**
+     * Returns the database to query, by default the "db" of the resolve
+     * config on the server at getMongoURI(), with a client from the shared
+     * registry.
+     */
+    protected DB getDB() {
+        String databaseId = getConfig().path("db").textValue();
+        if (databaseId == null) {
+            throw new RuntimeException("No 'db' in resolve config: " + getConfig());
+        }
+        return getDB(getMongoURI(), databaseId);
+    }
+
+    protected DB getDB(String mongoURI, String databaseId) {
+        return MongoClientRegistry.getDB(mongoURI, databaseId);
+    }
+
+    protected String getMongoURI() {
+        return DEFAULT_MONGO_URI;
+    }
 
     protected abstract PrestoTopic existingTopic(ObjectNode doc);
 
@@ -90,25 +107,44 @@ public abstract class MongoFieldResolver extends PrestoFieldResolver {
                 }
                 q = new BasicDBObject("$or", qAlternatives);
             }
-            JacksonDBCollection<ObjectNode, String> jCollection = JacksonDBCollection.wrap(collection, ObjectNode.class, String.class);
-            org.mongojack.DBCursor<ObjectNode> cursor;
-
             JsonNode keysNode = config.path("keys");
-            if (keysNode.isObject()) {
-                DBObject keys = convertToDbObject(keysNode);
-                log.debug("Q: {} keys: {}", q, keys);
-                cursor = jCollection.find(q, keys);            
-            } else {
-                log.debug("Q: {}", q);
-                cursor = jCollection.find(q);
+            DBObject keys = keysNode.isObject() ? convertToDbObject(keysNode) : null;
+            log.debug("Q: {} keys: {}", q, keys);
+            org.mongojack.DBCursor<ObjectNode> cursor = find(collection, q, keys);
+
+            DBObject sort = getSort(config, projection);
+            if (sort != null) {
+                cursor.sort(sort);
+            }
+
+            boolean isPaged = projection != null && projection.isPaged();
+            int offset = 0;
+            int limit = 0;
+            if (isPaged) {
+                offset = Math.max(0, projection.getOffset());
+                limit = projection.getLimit();
+                if (offset > 0) {
+                    cursor.skip(offset);
+                }
+                if (limit > 0) {
+                    // fetch one extra document to find out if there are more
+                    cursor.limit(limit+1);
+                    cursor.batchSize(limit+1);
+                }
             }
             
             try {
-                int total = cursor.size();
-                List<Object> result = new ArrayList<Object>(total);
+                List<Object> result = new ArrayList<Object>(isPaged && limit > 0 ? limit : 10);
 
+                int count = 0;
+                boolean hasMore = false;
                 while (cursor.hasNext()) {
                     ObjectNode next = cursor.next();
+                    if (isPaged && limit > 0 && count == limit) {
+                        hasMore = true;
+                        break;
+                    }
+                    count++;
 
                     if (isReference) {
                         result.add(existingTopic(next));
@@ -126,6 +162,14 @@ public abstract class MongoFieldResolver extends PrestoFieldResolver {
                         result.add(valueId);
                     }
                 }
+                int total = offset + count;
+                if (hasMore) {
+                    if (isCountEnabled(config)) {
+                        total = cursor.count();
+                    } else {
+                        total++;
+                    }
+                }
                 return new PrestoPagedValues(result, projection, total);
             } finally {
                 cursor.close();
@@ -136,6 +180,46 @@ public abstract class MongoFieldResolver extends PrestoFieldResolver {
         }
     }
 
+    protected org.mongojack.DBCursor<ObjectNode> find(DBCollection collection, DBObject q, DBObject keys) {
+        JacksonDBCollection<ObjectNode, String> jCollection = JacksonDBCollection.wrap(collection, ObjectNode.class, String.class);
+        if (keys != null) {
+            return jCollection.find(q, keys);
+        } else {
+            return jCollection.find(q);
+        }
+    }
+
+    // the total is counted only when there are more values than the page holds
+    protected boolean isCountEnabled(ObjectNode config) {
+        JsonNode countNode = config.path("count");
+        return countNode.isBoolean() ? countNode.booleanValue() : true;
+    }
+
+    /**
+     * Returns the sort order of the query: the orderBy of the projection,
+     * with the field name mapped through the "sortKeys" of the resolve
+     * config, or else the "sort" of the resolve config. Sorted pageable
+     * fields are paged by the resolver only when "resolveSorted" is set in
+     * the field extra, see PrestoContextRules.isResolveSortedField.
+     */
+    protected DBObject getSort(ObjectNode config, Projection projection) throws MongoException {
+        if (projection != null && projection.isSorted()) {
+            String[] orderBy = projection.getOrderBy().split(" ");
+            if (orderBy.length == 2) {
+                String sortKey = config.path("sortKeys").path(orderBy[0]).textValue();
+                if (sortKey == null) {
+                    sortKey = orderBy[0];
+                }
+                return new BasicDBObject(sortKey, orderBy[1].equals("desc") ? -1 : 1);
+            }
+        }
+        JsonNode sortNode = config.path("sort");
+        if (sortNode.isObject()) {
+            return convertToDbObject(sortNode);
+        }
+        return null;
+    }
+
     protected JsonNode replaceKeywords(JsonNode o) throws MongoException {
         if (o == null) {
             return null;
@@ -163,19 +247,7 @@ public abstract class MongoFieldResolver extends PrestoFieldResolver {
     }
     
     protected DBObject convertToDbObject(JsonNode object) throws MongoException {
-        if (object == null) {
-            return null;
-        }
-        BsonObjectGenerator generator = new BsonObjectGenerator();
-        try {
-            getObjectMapper().writeValue(generator, object);
-        } catch (JsonMappingException e) {
-            throw new MongoJsonMappingException(e);
-        } catch (IOException e) {
-            // This shouldn't happen
-            throw new MongoException("Unknown error occurred converting BSON to object", e);
-        }
-        return generator.getDBObject();
+        return MongoUtils.convertToDbObject(getObjectMapper(), object);
     }
 
 }
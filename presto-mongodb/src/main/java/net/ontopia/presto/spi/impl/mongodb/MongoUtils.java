@@ -0,0 +1,32 @@
+package net.ontopia.presto.spi.impl.mongodb;
+
+import java.io.IOException;
+
+import org.mongojack.MongoJsonMappingException;
+import org.mongojack.internal.object.BsonObjectGenerator;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+
+public class MongoUtils {
+
+    public static DBObject convertToDbObject(ObjectMapper mapper, JsonNode object) throws MongoException {
+        if (object == null) {
+            return null;
+        }
+        BsonObjectGenerator generator = new BsonObjectGenerator();
+        try {
+            mapper.writeValue(generator, object);
+        } catch (JsonMappingException e) {
+            throw new MongoJsonMappingException(e);
+        } catch (IOException e) {
+            // This shouldn't happen
+            throw new MongoException("Unknown error occurred converting BSON to object", e);
+        }
+        return generator.getDBObject();
+    }
+
+}
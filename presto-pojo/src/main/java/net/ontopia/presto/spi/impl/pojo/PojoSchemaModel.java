@@ -7,6 +7,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -52,13 +55,16 @@ public class PojoSchemaModel {
         }
     }
 
+    static File getSchemaDirectory() {
+        return new File(System.getProperty("user.home"), "presto-schemas");
+    }
+
     private static InputStream getSchemaInputStream(String schemaFilename)
             throws FileNotFoundException {
         ClassLoader cl = Thread.currentThread().getContextClassLoader();
         InputStream istream;
         
-        File schemaDir = new File(System.getProperty("user.home"), "presto-schemas");
-        File schemaFile = new File(schemaDir, schemaFilename);
+        File schemaFile = new File(getSchemaDirectory(), schemaFilename);
         
         if (schemaFile.exists()) {
             istream = new FileInputStream(schemaFile);
@@ -74,7 +80,9 @@ public class PojoSchemaModel {
     private static PojoSchemaProvider createSchemaProvider(String databaseId, ObjectNode json) {
         PojoSchemaParser parser = new PojoSchemaParser();
         parser.parse(databaseId, json);
-        return parser.getSchemaProvider();
+        PojoSchemaProvider schemaProvider = parser.getSchemaProvider();
+        schemaProvider.setSchemaRevision(parser.getRevision());
+        return schemaProvider;
     }
 
     private static class PojoSchemaParser {
@@ -84,8 +92,12 @@ public class PojoSchemaModel {
         private Map<String, ObjectNode> viewsMap;
         private Map<String, ObjectNode> typesMap;
         private Map<String,PojoType> types;
+
+        // digest of the schema and the external configs it refers to
+        private final MessageDigest digest = createDigest();
         
         public void parse(String databaseId, ObjectNode schema) {
+            updateDigest(schema);
             schemaProvider = new PojoSchemaProvider();
             schemaProvider.setDatabaseId(databaseId);
 
@@ -432,11 +444,38 @@ public class PojoSchemaModel {
             return field;
         }
 
+        private static MessageDigest createDigest() {
+            try {
+                return MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private void updateDigest(ObjectNode json) {
+            try {
+                digest.update(json.toString().getBytes("UTF-8"));
+            } catch (UnsupportedEncodingException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        public String getRevision() {
+            byte[] bytes = digest.digest();
+            StringBuilder sb = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        }
+
         private ObjectNode resolveExternalConfig(ObjectNode config) {
             if (config != null) {
                 String href = config.path("href").textValue();
                 if (href != null) {
                     config = loadExternalJsonObject(href);
+                    updateDigest(config);
                     if (config.has("href")) {
                         throw new RuntimeException("Nested object '" + href + "' cannot contain 'href' key.");
                     }
@@ -7,8 +7,9 @@ import net.ontopia.presto.spi.PrestoField;
 import net.ontopia.presto.spi.PrestoSchemaProvider;
 import net.ontopia.presto.spi.PrestoType;
 import net.ontopia.presto.spi.PrestoView;
+import net.ontopia.presto.spi.utils.PrestoSchemaRevision;
 
-public class PojoSchemaProvider implements PrestoSchemaProvider {
+public class PojoSchemaProvider implements PrestoSchemaProvider, PrestoSchemaRevision {
 
     private String databaseId;
 
@@ -16,7 +17,20 @@ public class PojoSchemaProvider implements PrestoSchemaProvider {
 
     private Object extra;
 
+    private String schemaRevision;
+
+    /**
+     * Returns the shared schema provider for the given database. The schema is
+     * parsed once and reloaded when the schema file changes.
+     */
     public static PojoSchemaProvider getSchemaProvider(String databaseId, String schemaFile) {
+        return PojoSchemaRegistry.getSchemaProvider(databaseId, schemaFile);
+    }
+
+    /**
+     * Parses and checks the schema without consulting the registry.
+     */
+    public static PojoSchemaProvider loadSchemaProvider(String databaseId, String schemaFile) {
         PojoSchemaProvider schemaProvider = PojoSchemaModel.parse(databaseId, schemaFile);
         schemaProvider.sanityCheck();
         return schemaProvider;
@@ -82,4 +96,13 @@ public class PojoSchemaProvider implements PrestoSchemaProvider {
         this.extra = extra;
     }
 
+    @Override
+    public String getSchemaRevision() {
+        return schemaRevision;
+    }
+
+    public void setSchemaRevision(String schemaRevision) {
+        this.schemaRevision = schemaRevision;
+    }
+
 }
@@ -0,0 +1,218 @@
+package net.ontopia.presto.spi.impl.pojo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process-wide registry of parsed schemas. Each schema is parsed once per
+ * database id and schema file. Files in the presto-schemas directory are
+ * watched, and a changed schema is parsed and swapped in as a whole, so
+ * readers either see the old or the new schema. If the changed file cannot
+ * be parsed the old schema is kept. If the directory does not exist yet,
+ * watching is retried later. Call stop when the application is stopped.
+ */
+public class PojoSchemaRegistry {
+
+    private static Logger log = LoggerFactory.getLogger(PojoSchemaRegistry.class);
+
+    private static final ConcurrentMap<String,SchemaEntry> schemas = new ConcurrentHashMap<String,SchemaEntry>();
+
+    private static final Object lock = new Object();
+
+    // milliseconds to wait before trying to watch the schema directory again
+    static volatile long watchRetryInterval = 30000;
+
+    private static volatile Watcher watcher;
+    private static long nextWatchAttempt; // guarded by lock
+
+    public static PojoSchemaProvider getSchemaProvider(String databaseId, String schemaFile) {
+        String key = databaseId + '\n' + schemaFile;
+        SchemaEntry entry = schemas.get(key);
+        if (entry == null) {
+            synchronized (lock) {
+                entry = schemas.get(key);
+                if (entry == null) {
+                    entry = new SchemaEntry(databaseId, schemaFile);
+                    entry.schemaProvider = PojoSchemaProvider.loadSchemaProvider(databaseId, schemaFile);
+                    schemas.put(key, entry);
+                }
+            }
+        }
+        if (watcher == null) {
+            startWatcher();
+        }
+        return entry.schemaProvider;
+    }
+
+    /**
+     * Parses all registered schemas again.
+     */
+    public static void reload() {
+        for (SchemaEntry entry : schemas.values()) {
+            reload(entry);
+        }
+    }
+
+    public static void clear() {
+        schemas.clear();
+    }
+
+    /**
+     * Stops watching the schema directory. Watching starts again if 
+     * getSchemaProvider is called later.
+     */
+    public static void stop() {
+        Watcher stopped;
+        synchronized (lock) {
+            stopped = watcher;
+            watcher = null;
+            nextWatchAttempt = 0;
+        }
+        if (stopped != null) {
+            stopped.stop();
+        }
+    }
+
+    static boolean isWatching() {
+        return watcher != null;
+    }
+
+    private static void reload(String filename) {
+        for (SchemaEntry entry : schemas.values()) {
+            if (entry.schemaFile.equals(filename)) {
+                reload(entry);
+            }
+        }
+    }
+
+    private static void reload(SchemaEntry entry) {
+        try {
+            entry.schemaProvider = PojoSchemaProvider.loadSchemaProvider(entry.databaseId, entry.schemaFile);
+            log.info("Reloaded presto schema: " + entry.schemaFile);
+        } catch (Exception e) {
+            log.warn("Could not reload presto schema " + entry.schemaFile + ", keeping the previous version", e);
+        }
+    }
+
+    private static void startWatcher() {
+        synchronized (lock) {
+            long now = System.currentTimeMillis();
+            if (watcher != null || now < nextWatchAttempt) {
+                return;
+            }
+            nextWatchAttempt = now + watchRetryInterval;
+
+            File schemaDir = PojoSchemaModel.getSchemaDirectory();
+            if (!schemaDir.isDirectory()) {
+                return;
+            }
+            WatchService watchService;
+            try {
+                Path path = schemaDir.toPath();
+                watchService = FileSystems.getDefault().newWatchService();
+                path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, 
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            } catch (IOException e) {
+                log.warn("Could not watch schema directory " + schemaDir + " for changes", e);
+                return;
+            }
+            watcher = new Watcher(watchService);
+            watcher.start();
+        }
+    }
+
+    private static class Watcher implements Runnable {
+
+        private final WatchService watchService;
+        private final Thread thread;
+
+        private Watcher(WatchService watchService) {
+            this.watchService = watchService;
+            this.thread = new Thread(this, "presto-schema-watcher");
+            this.thread.setDaemon(true);
+        }
+
+        private void start() {
+            thread.start();
+        }
+
+        private void stop() {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.warn("Could not close schema directory watcher", e);
+            }
+            thread.interrupt();
+        }
+
+        @Override
+        public void run() {
+            try {
+                watch();
+            } finally {
+                // watch again later if the directory comes back
+                synchronized (lock) {
+                    if (watcher == this) {
+                        watcher = null;
+                    }
+                }
+                try {
+                    watchService.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+
+        private void watch() {
+            while (true) {
+                WatchKey key;
+                try {
+                    key = watchService.take();
+                } catch (InterruptedException e) {
+                    return;
+                } catch (ClosedWatchServiceException e) {
+                    return;
+                }
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        reload();
+                    } else {
+                        Path filename = (Path)event.context();
+                        reload(filename.toString());
+                    }
+                }
+                if (!key.reset()) {
+                    log.warn("Schema directory no longer accessible, stopped watching for changes");
+                    return;
+                }
+            }
+        }
+    }
+
+    private static class SchemaEntry {
+
+        private final String databaseId;
+        private final String schemaFile;
+
+        private volatile PojoSchemaProvider schemaProvider;
+
+        private SchemaEntry(String databaseId, String schemaFile) {
+            this.databaseId = databaseId;
+            this.schemaFile = schemaFile;
+        }
+    }
+
+}
@@ -3,13 +3,17 @@ package net.ontopia.presto.spi.impl.riak;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import net.ontopia.presto.spi.PrestoField;
 import net.ontopia.presto.spi.PrestoSchemaProvider;
 import net.ontopia.presto.spi.PrestoTopic;
 import net.ontopia.presto.spi.jackson.JacksonDataProvider;
 import net.ontopia.presto.spi.jackson.JacksonTopic;
+import net.ontopia.presto.spi.utils.PrestoExecutors;
 
 import com.basho.riak.client.IRiakClient;
 import com.basho.riak.client.RiakException;
@@ -24,6 +28,14 @@ public abstract class RiakDataProvider extends JacksonDataProvider {
 
     private final String bucketId;
 
+    private volatile Bucket bucket;
+
+    private int fetchConcurrency = DEFAULT_FETCH_CONCURRENCY;
+
+    static final int DEFAULT_FETCH_CONCURRENCY = 8;
+
+    public static final String FETCH_EXECUTOR = "presto-riak-fetch";
+
     public RiakDataProvider(PrestoSchemaProvider schemaProvider, String bucketId) {
         super(schemaProvider);
         this.bucketId = bucketId;
@@ -45,11 +57,19 @@ public abstract class RiakDataProvider extends JacksonDataProvider {
         return "riak";
     }
 
+    protected Bucket getBucket() throws RiakRetryFailedException {
+        Bucket result = bucket;
+        if (result == null) {
+            result = riakClient.fetchBucket(bucketId).execute();
+            bucket = result;
+        }
+        return result;
+    }
+
     @Override
     public PrestoTopic getTopicById(String topicId) {
         try {
-            Bucket bucket = riakClient.fetchBucket(bucketId).execute();
-            PrestoTopic topic = existing(bucket.fetch(topicId, ObjectNode.class).execute());
+            PrestoTopic topic = existing(fetchDocument(getBucket(), topicId));
             if (topic == null) {
                 topic = lazyLoad(topicId);
             }
@@ -59,18 +79,66 @@ public abstract class RiakDataProvider extends JacksonDataProvider {
         }
     }
 
+    protected ObjectNode fetchDocument(Bucket bucket, String topicId) throws RiakRetryFailedException {
+        return bucket.fetch(topicId, ObjectNode.class).execute();
+    }
+
     @Override
     public Collection<PrestoTopic> getTopicsByIds(Collection<String> topicIds) {
-        Collection<PrestoTopic> result = new ArrayList<PrestoTopic>();
-        for (String topicId : topicIds) {
-            PrestoTopic topic = getTopicById(topicId);
-            if (topic != null) {
-                result.add(topic);
+        List<ObjectNode> docs = fetchDocuments(new ArrayList<String>(topicIds));
+        Collection<PrestoTopic> result = new ArrayList<PrestoTopic>(docs.size());
+        for (ObjectNode doc : docs) {
+            if (doc != null) {
+                result.add(existing(doc));
             }
         }
         return includeLazyTopics(result, topicIds);
     }
 
+    // fetches documents in parallel, using at most fetchConcurrency threads
+    private List<ObjectNode> fetchDocuments(final List<String> topicIds) {
+        final int size = topicIds.size();
+        final ObjectNode[] docs = new ObjectNode[size];
+        try {
+            final Bucket bucket = getBucket();
+            int partitions = Math.min(fetchConcurrency, size);
+            if (partitions <= 1) {
+                for (int i=0; i < size; i++) {
+                    docs[i] = fetchDocument(bucket, topicIds.get(i));
+                }
+            } else {
+                List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(partitions);
+                for (int p=0; p < partitions; p++) {
+                    final int partition = p;
+                    final int partitionCount = partitions;
+                    tasks.add(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            for (int i=partition; i < size; i += partitionCount) {
+                                docs[i] = fetchDocument(bucket, topicIds.get(i));
+                            }
+                            return null;
+                        }
+                    });
+                }
+                PrestoExecutors.invokeAll(getFetchExecutor(), tasks);
+            }
+        } catch (RiakRetryFailedException e) {
+            throw new RuntimeException(e);
+        }
+        List<ObjectNode> result = new ArrayList<ObjectNode>(size);
+        Collections.addAll(result, docs);
+        return result;
+    }
+
+    /**
+     * Returns the executor used to fetch documents in parallel. Override to use 
+     * a container managed executor, or replace it through PrestoExecutors.
+     */
+    protected ExecutorService getFetchExecutor() {
+        return PrestoExecutors.getExecutor(FETCH_EXECUTOR);
+    }
+
     @Override
     public Collection<? extends Object> getAvailableFieldValues(PrestoTopic topic, PrestoField field, String query) {
         // TODO: implement. use secondary indexes? or just leave it up to the users of this data provider.
@@ -107,8 +175,7 @@ public abstract class RiakDataProvider extends JacksonDataProvider {
         try {
             ObjectNode data = ((JacksonTopic)topic).getData();
             
-            Bucket bucket = riakClient.fetchBucket(bucketId).execute();
-            bucket.store(topic.getId(), data).execute();
+            getBucket().store(topic.getId(), data).execute();
         } catch (RiakRetryFailedException e) {
             throw new RuntimeException(e);
         }
@@ -117,12 +184,18 @@ public abstract class RiakDataProvider extends JacksonDataProvider {
     @Override
     public boolean delete(PrestoTopic topic) {
         try {
-            Bucket bucket = riakClient.fetchBucket(bucketId).execute();
-            bucket.delete(topic.getId()).execute();
+            getBucket().delete(topic.getId()).execute();
             return true;
         } catch (RiakException e) {
             throw new RuntimeException(e);
         }
     }
 
+    // builder pattern
+
+    public RiakDataProvider fetchConcurrency(int fetchConcurrency) {
+        this.fetchConcurrency = fetchConcurrency;
+        return this;
+    }
+
 }
@@ -6,6 +6,7 @@ import java.util.List;
 import net.ontopia.presto.spi.PrestoDataProvider;
 import net.ontopia.presto.spi.PrestoSchemaProvider;
 import net.ontopia.presto.spi.impl.couchdb.CouchDataProvider;
+import net.ontopia.presto.spi.impl.couchdb.CouchDbConnectorRegistry;
 import net.ontopia.presto.spi.impl.mongodb.MongoDataProvider;
 import net.ontopia.presto.spi.impl.mongodb.ObjectIdIdentityStrategy;
 import net.ontopia.presto.spi.impl.pojo.PojoSchemaProvider;
@@ -18,10 +19,6 @@ import net.ontopia.presto.spi.jackson.JacksonDataStrategy;
 import net.ontopia.presto.spi.jackson.UUIDIdentityStrategy;
 
 import org.ektorp.CouchDbConnector;
-import org.ektorp.CouchDbInstance;
-import org.ektorp.http.HttpClient;
-import org.ektorp.http.StdHttpClient;
-import org.ektorp.impl.StdCouchDbInstance;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -76,9 +73,7 @@ public class PrestoTestService {
         return new CouchDataProvider(schemaProvider) {
             @Override
             protected CouchDbConnector createCouchDbConnector() {
-                HttpClient httpClient = new StdHttpClient.Builder().build();
-                CouchDbInstance dbInstance = new StdCouchDbInstance(httpClient);
-                return dbInstance.createConnector(DB_NAME, true);
+                return CouchDbConnectorRegistry.getConnector(DB_NAME);
             }
 
             @Override
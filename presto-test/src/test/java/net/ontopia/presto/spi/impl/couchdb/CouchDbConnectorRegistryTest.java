@@ -0,0 +1,66 @@
+package net.ontopia.presto.spi.impl.couchdb;
+
+import org.ektorp.CouchDbConnector;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+// databases are not created, so none of these tests need a running server
+public class CouchDbConnectorRegistryTest {
+
+    private static final String URL = CouchDbConnectorRegistry.DEFAULT_URL;
+
+    @Before
+    public void setUp() {
+        CouchDbConnectorRegistry.shutdown();
+    }
+
+    @After
+    public void tearDown() {
+        CouchDbConnectorRegistry.shutdown();
+    }
+
+    private static CouchDbConnector getConnector(String url, String databaseName) {
+        return CouchDbConnectorRegistry.getConnector(url, databaseName, false);
+    }
+
+    @Test
+    public void testConnectorsKeyedByURLAndDatabase() {
+        CouchDbConnector connector = getConnector(URL, "a");
+        Assert.assertEquals("a", connector.getDatabaseName());
+        Assert.assertSame(connector, getConnector(URL, "a"));
+        Assert.assertNotSame(connector, getConnector(URL, "b"));
+        Assert.assertNotSame(connector, getConnector("http://127.0.0.1:5984", "a"));
+        Assert.assertEquals(3, CouchDbConnectorRegistry.getConnectorCount());
+    }
+
+    @Test
+    public void testDefaultURLShared() {
+        CouchDbConnector connector = getConnector(URL, "a");
+        // already made, so the database is not created
+        Assert.assertSame(connector, CouchDbConnectorRegistry.getConnector("a"));
+        Assert.assertEquals(1, CouchDbConnectorRegistry.getConnectorCount());
+    }
+
+    @Test
+    public void testPoolMetrics() {
+        getConnector(URL, "a");
+        CouchDbConnectorRegistry.setMaxConnections(5);
+        try {
+            getConnector(URL, "b");
+        } finally {
+            CouchDbConnectorRegistry.setMaxConnections(CouchDbConnectorRegistry.DEFAULT_MAX_CONNECTIONS);
+        }
+        Assert.assertEquals(CouchDbConnectorRegistry.DEFAULT_MAX_CONNECTIONS + 5, CouchDbConnectorRegistry.getPoolMax());
+    }
+
+    @Test
+    public void testShutdownDropsConnectors() {
+        CouchDbConnector connector = getConnector(URL, "a");
+        CouchDbConnectorRegistry.shutdown();
+        Assert.assertEquals(0, CouchDbConnectorRegistry.getConnectorCount());
+        Assert.assertNotSame(connector, getConnector(URL, "a"));
+    }
+
+}
@@ -0,0 +1,78 @@
+package net.ontopia.presto.spi.impl.mongodb;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import net.ontopia.presto.spi.PrestoSchemaProvider;
+import net.ontopia.presto.spi.impl.pojo.PojoSchemaProvider;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mongodb.Mongo;
+
+// clients connect lazily, so none of these tests need a running server
+public class MongoClientRegistryTest {
+
+    private static final String URI = "mongodb://localhost";
+
+    private PrestoSchemaProvider schemaProvider;
+
+    @Before
+    public void setUp() {
+        MongoClientRegistry.shutdown();
+        this.schemaProvider = PojoSchemaProvider.loadSchemaProvider("resolve", "resolve.schema.json");
+    }
+
+    @After
+    public void tearDown() {
+        MongoClientRegistry.shutdown();
+    }
+
+    @Test
+    public void testClientsKeyedByURIAndDatabase() {
+        Mongo client = MongoClientRegistry.getClient(URI, "a");
+        Assert.assertSame(client, MongoClientRegistry.getClient(URI, "a"));
+        Assert.assertNotSame(client, MongoClientRegistry.getClient(URI, "b"));
+        Assert.assertNotSame(client, MongoClientRegistry.getClient("mongodb://127.0.0.1", "a"));
+        Assert.assertEquals(3, MongoClientRegistry.getClientCount());
+        Assert.assertSame(client, MongoClientRegistry.getClient(MongoClientRegistry.getKey(URI, "a"), (MongoClientRegistry.ClientFactory)null));
+    }
+
+    @Test
+    public void testCollectionsShared() {
+        long misses = MongoClientRegistry.getCollectionMissCount();
+        Assert.assertSame(MongoClientRegistry.getCollection(URI, "a", "c"), MongoClientRegistry.getCollection(URI, "a", "c"));
+        Assert.assertNotSame(MongoClientRegistry.getCollection(URI, "a", "c"), MongoClientRegistry.getCollection(URI, "a", "d"));
+        Assert.assertNotSame(MongoClientRegistry.getCollection(URI, "a", "c"), MongoClientRegistry.getCollection(URI, "b", "c"));
+        Assert.assertEquals(3, MongoClientRegistry.getCollectionMissCount() - misses);
+        Assert.assertEquals(2, MongoClientRegistry.getClientCount());
+    }
+
+    @Test
+    public void testProvidersShareClients() {
+        TestMongoDataProvider dataProvider = new TestMongoDataProvider(schemaProvider);
+        TestMongoDataProvider other = new TestMongoDataProvider(schemaProvider);
+
+        Mongo mongo = dataProvider.getMongo("a");
+        Assert.assertSame(mongo, other.getMongo("a"));
+        Assert.assertSame(mongo, MongoClientRegistry.getClient(URI, "a"));
+        Assert.assertNotSame(mongo, other.getMongo("b"));
+        Assert.assertSame(dataProvider.getCollectionByTypeId("c:topic"), other.getCollectionByTypeId("c:topic"));
+
+        // created through the hook of the provider that needed it first
+        Assert.assertEquals(Arrays.asList("a", "presto"), dataProvider.getCreatedMongos());
+        Assert.assertEquals(Collections.singletonList("b"), other.getCreatedMongos());
+    }
+
+    @Test
+    public void testShutdownDropsClients() {
+        Mongo client = MongoClientRegistry.getClient(URI, "a");
+        MongoClientRegistry.shutdown();
+        Assert.assertEquals(0, MongoClientRegistry.getClientCount());
+        Assert.assertNotSame(client, MongoClientRegistry.getClient(URI, "a"));
+    }
+
+}
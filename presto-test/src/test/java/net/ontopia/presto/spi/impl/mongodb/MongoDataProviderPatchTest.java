@@ -0,0 +1,166 @@
+package net.ontopia.presto.spi.impl.mongodb;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.ontopia.presto.spi.PrestoField;
+import net.ontopia.presto.spi.PrestoSchemaProvider;
+import net.ontopia.presto.spi.PrestoType;
+import net.ontopia.presto.spi.impl.pojo.PojoSchemaProvider;
+import net.ontopia.presto.spi.jackson.JacksonBucketDataStrategy;
+import net.ontopia.presto.spi.jackson.JacksonDataStrategy;
+import net.ontopia.presto.spi.jackson.JacksonDefaultDataStrategy;
+import net.ontopia.presto.spi.jackson.JacksonTopic;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+
+public class MongoDataProviderPatchTest {
+
+    private PrestoSchemaProvider schemaProvider;
+    private PrestoType type;
+
+    @Before
+    public void setUp() {
+        this.schemaProvider = PojoSchemaProvider.loadSchemaProvider("resolve", "resolve.schema.json");
+        this.type = schemaProvider.getTypeById("c:person");
+    }
+
+    private PrestoField getField(String fieldId) {
+        return type.getFieldById(fieldId);
+    }
+
+    private JacksonTopic newTopic(TestMongoDataProvider dataProvider) {
+        return (JacksonTopic)dataProvider.newInstance(type, "p1");
+    }
+
+    private static BasicDBList list(Object... values) {
+        BasicDBList result = new BasicDBList();
+        result.addAll(Arrays.asList(values));
+        return result;
+    }
+
+    @Test
+    public void testSetAndUnset() {
+        TestMongoDataProvider dataProvider = new TestMongoDataProvider(schemaProvider);
+        JacksonTopic topic = newTopic(dataProvider);
+        topic.setValue(getField("nickname"), Collections.singletonList("Bob"));
+
+        List<PrestoField> fields = Arrays.asList(getField("nickname"), getField("interests"));
+        DBObject patch = dataProvider.createPatch(topic, fields);
+        Assert.assertEquals(new BasicDBObject("nickname", list("Bob")), patch.get("$set"));
+        Assert.assertEquals(new BasicDBObject("interests", ""), patch.get("$unset"));
+    }
+
+    @Test
+    public void testNameKeyPatchedWithNameField() {
+        TestMongoDataProvider dataProvider = new TestMongoDataProvider(schemaProvider) {
+            @Override
+            protected String getNameKey() {
+                return ":name-lc";
+            }
+        };
+        JacksonTopic topic = newTopic(dataProvider);
+        topic.setValue(getField("name"), Collections.singletonList("Bob"));
+        topic.getData().put(":name-lc", "bob");
+
+        DBObject patch = dataProvider.createPatch(topic, Collections.singletonList(getField("name")));
+        Assert.assertEquals(new BasicDBObject("name", list("Bob")).append(":name-lc", "bob"), patch.get("$set"));
+        Assert.assertNull(patch.get("$unset"));
+    }
+
+    @Test
+    public void testNothingToWrite() {
+        TestMongoDataProvider dataProvider = new TestMongoDataProvider(schemaProvider);
+        JacksonTopic topic = newTopic(dataProvider);
+        Assert.assertNull(dataProvider.createPatch(topic, null));
+        Assert.assertTrue(dataProvider.createPatch(topic, Collections.<PrestoField>emptyList()).keySet().isEmpty());
+    }
+
+    @Test
+    public void testDefaultStrategySubclassWritesDocument() {
+        TestMongoDataProvider dataProvider = new TestMongoDataProvider(schemaProvider) {
+            @Override
+            protected JacksonDataStrategy createDataStrategy(ObjectMapper mapper) {
+                return new JacksonDefaultDataStrategy() {
+                    @Override
+                    public void putFieldValue(ObjectNode doc, PrestoField field, ArrayNode value) {
+                        doc.put("f-" + field.getActualId(), value);
+                    }
+                    @Override
+                    public boolean supportsPartialUpdate() {
+                        return false;
+                    }
+                };
+            }
+        };
+        JacksonTopic topic = newTopic(dataProvider);
+        topic.setValue(getField("nickname"), Collections.singletonList("Bob"));
+        Assert.assertNull(dataProvider.createPatch(topic, Collections.singletonList(getField("nickname"))));
+    }
+
+    private static class TestBucketDataStrategy extends JacksonBucketDataStrategy {
+
+        TestBucketDataStrategy(ObjectMapper mapper) {
+            super(mapper);
+        }
+
+        @Override
+        public List<String> getReadBucketIds(ObjectNode doc) {
+            return Arrays.asList("user", "defaults");
+        }
+
+        @Override
+        public String getWriteBucketId(ObjectNode doc) {
+            return "user";
+        }
+    }
+
+    @Test
+    public void testBucketStrategyPatchesWriteBucket() {
+        TestMongoDataProvider dataProvider = new TestMongoDataProvider(schemaProvider) {
+            @Override
+            protected JacksonDataStrategy createDataStrategy(ObjectMapper mapper) {
+                return new TestBucketDataStrategy(mapper);
+            }
+        };
+        JacksonTopic topic = newTopic(dataProvider);
+        topic.setValue(getField("nickname"), Collections.singletonList("Bob"));
+
+        List<PrestoField> fields = Arrays.asList(getField("nickname"), getField("interests"));
+        DBObject patch = dataProvider.createPatch(topic, fields);
+        Assert.assertEquals(new BasicDBObject("user.nickname", list("Bob")), patch.get("$set"));
+        Assert.assertEquals(new BasicDBObject("user.interests", ""), patch.get("$unset"));
+    }
+
+    @Test
+    public void testBucketStrategyWithOwnWritesWritesDocument() {
+        TestMongoDataProvider dataProvider = new TestMongoDataProvider(schemaProvider) {
+            @Override
+            protected JacksonDataStrategy createDataStrategy(ObjectMapper mapper) {
+                return new TestBucketDataStrategy(mapper) {
+                    @Override
+                    protected ObjectNode getWriteBucket(ObjectNode doc, String fieldId, boolean create) {
+                        return doc;
+                    }
+                    @Override
+                    public boolean supportsPartialUpdate() {
+                        return false;
+                    }
+                };
+            }
+        };
+        JacksonTopic topic = newTopic(dataProvider);
+        Assert.assertNull(dataProvider.createPatch(topic, Collections.singletonList(getField("nickname"))));
+    }
+
+}
@@ -0,0 +1,199 @@
+package net.ontopia.presto.spi.impl.mongodb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.ontopia.presto.spi.PrestoTopic;
+import net.ontopia.presto.spi.PrestoTopic.PagedValues;
+import net.ontopia.presto.spi.PrestoTopic.Projection;
+import net.ontopia.presto.spi.utils.PrestoProjection;
+import net.ontopia.presto.spi.utils.PrestoVariableContext;
+import net.ontopia.presto.spi.utils.Utils;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mongojack.DBCursor;
+import org.mongojack.JacksonDBCollection;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+
+// the registry client connects lazily and the cursor is served from memory, so no server is needed
+public class MongoFieldResolverTest {
+
+    private List<ObjectNode> docs;
+    private TestCursor cursor;
+
+    @Before
+    public void setUp() {
+        this.docs = new ArrayList<ObjectNode>();
+        for (int i=0; i < 5; i++) {
+            ObjectNode doc = Utils.DEFAULT_OBJECT_MAPPER.createObjectNode();
+            doc.put("_id", "d" + i);
+            docs.add(doc);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        MongoClientRegistry.shutdown();
+    }
+
+    @Test
+    public void testFirstPageSortedAndCounted() {
+        ObjectNode config = createConfig();
+        config.putObject("sortKeys").put("name", ":name");
+
+        PagedValues values = resolve(config, new PrestoProjection(0, 2, "name desc"));
+
+        Assert.assertEquals(Arrays.asList("d0", "d1"), values.getValues());
+        Assert.assertEquals(5, values.getTotal());
+        Assert.assertEquals(new BasicDBObject(":name", -1), cursor.sort);
+        Assert.assertEquals(0, cursor.skip);
+        Assert.assertEquals(3, cursor.limit);
+        Assert.assertEquals(3, cursor.batchSize);
+        Assert.assertTrue(cursor.counted);
+        Assert.assertTrue(cursor.closed);
+    }
+
+    @Test
+    public void testMiddlePageWithoutCount() {
+        ObjectNode config = createConfig();
+        config.put("count", false);
+
+        PagedValues values = resolve(config, new PrestoProjection(2, 2));
+
+        Assert.assertEquals(Arrays.asList("d2", "d3"), values.getValues());
+        Assert.assertEquals(5, values.getTotal());
+        Assert.assertEquals(2, cursor.skip);
+        Assert.assertEquals(3, cursor.limit);
+        Assert.assertFalse(cursor.counted);
+    }
+
+    @Test
+    public void testLastPageNotCounted() {
+        PagedValues values = resolve(createConfig(), new PrestoProjection(4, 2));
+
+        Assert.assertEquals(Arrays.asList("d4"), values.getValues());
+        Assert.assertEquals(5, values.getTotal());
+        Assert.assertEquals(4, cursor.skip);
+        Assert.assertFalse(cursor.counted);
+    }
+
+    @Test
+    public void testConfigSortWhenProjectionUnsorted() {
+        ObjectNode config = createConfig();
+        config.putObject("sort").put(":name", 1);
+
+        PagedValues values = resolve(config, null);
+
+        Assert.assertEquals(Arrays.asList("d0", "d1", "d2", "d3", "d4"), values.getValues());
+        Assert.assertEquals(5, values.getTotal());
+        Assert.assertEquals(new BasicDBObject(":name", 1), cursor.sort);
+        Assert.assertEquals(0, cursor.skip);
+        Assert.assertEquals(0, cursor.limit);
+        Assert.assertFalse(cursor.counted);
+    }
+
+    private ObjectNode createConfig() {
+        ObjectNode config = Utils.DEFAULT_OBJECT_MAPPER.createObjectNode();
+        config.put("db", "test");
+        config.put("coll", "topics");
+        config.putObject("q").put(":type", "t");
+        return config;
+    }
+
+    private PagedValues resolve(ObjectNode config, Projection projection) {
+        TestMongoFieldResolver resolver = new TestMongoFieldResolver();
+        resolver.setConfig(config);
+        resolver.setVariableContext(new PrestoVariableContext(null, null));
+        return resolver.resolve(Collections.emptyList(), null, false, projection, null, null);
+    }
+
+    private class TestMongoFieldResolver extends MongoFieldResolver {
+
+        @Override
+        protected DBCursor<ObjectNode> find(DBCollection collection, DBObject q, DBObject keys) {
+            cursor = new TestCursor(collection, q);
+            return cursor;
+        }
+
+        @Override
+        protected PrestoTopic existingTopic(ObjectNode doc) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private class TestCursor extends DBCursor<ObjectNode> {
+
+        private DBObject sort;
+        private int skip;
+        private int limit;
+        private int batchSize;
+        private boolean counted;
+        private boolean closed;
+
+        private int index = -1;
+
+        TestCursor(DBCollection collection, DBObject q) {
+            super(JacksonDBCollection.wrap(collection, ObjectNode.class, String.class), collection.find(q));
+        }
+
+        @Override
+        public DBCursor<ObjectNode> sort(DBObject sort) {
+            this.sort = sort;
+            return this;
+        }
+
+        @Override
+        public DBCursor<ObjectNode> skip(int skip) {
+            this.skip = skip;
+            return this;
+        }
+
+        @Override
+        public DBCursor<ObjectNode> limit(int limit) {
+            this.limit = limit;
+            return this;
+        }
+
+        @Override
+        public DBCursor<ObjectNode> batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (index < 0) {
+                index = skip;
+            }
+            int end = limit > 0 ? Math.min(docs.size(), skip + limit) : docs.size();
+            return index < end;
+        }
+
+        @Override
+        public ObjectNode next() {
+            hasNext();
+            return docs.get(index++);
+        }
+
+        @Override
+        public int count() {
+            counted = true;
+            return docs.size();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+}
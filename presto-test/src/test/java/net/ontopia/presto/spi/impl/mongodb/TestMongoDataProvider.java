@@ -0,0 +1,70 @@
+package net.ontopia.presto.spi.impl.mongodb;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.ontopia.presto.spi.PrestoSchemaProvider;
+import net.ontopia.presto.spi.jackson.IdentityStrategy;
+import net.ontopia.presto.spi.jackson.JacksonDataStrategy;
+import net.ontopia.presto.spi.jackson.JacksonDefaultDataStrategy;
+
+import org.junit.Ignore;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.Mongo;
+
+/**
+ * Mongo data provider with one collection per type in the "presto"
+ * database, that records the databases it creates clients for. Nothing is
+ * read or written unless a server is running.
+ */
+@Ignore
+public class TestMongoDataProvider extends MongoDataProvider {
+
+    private final List<String> createdMongos = new ArrayList<String>();
+
+    public TestMongoDataProvider(PrestoSchemaProvider schemaProvider) {
+        super(schemaProvider);
+    }
+
+    public List<String> getCreatedMongos() {
+        return createdMongos;
+    }
+
+    @Override
+    protected Mongo createMongo(String databaseId) {
+        createdMongos.add(databaseId);
+        return super.createMongo(databaseId);
+    }
+
+    @Override
+    protected JacksonDataStrategy createDataStrategy(ObjectMapper mapper) {
+        return new JacksonDefaultDataStrategy();
+    }
+
+    @Override
+    protected IdentityStrategy createIdentityStrategy() {
+        return new ObjectIdIdentityStrategy();
+    }
+
+    @Override
+    protected String getCollectionKeyByTopicId(String topicId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected String getCollectionKeyByTypeId(String typeId) {
+        return "presto/" + typeId;
+    }
+
+    @Override
+    protected String getDatabaseIdByCollectionKey(String collectionKey) {
+        return collectionKey.substring(0, collectionKey.indexOf('/'));
+    }
+
+    @Override
+    protected String getCollectionIdByCollectionKey(String collectionKey) {
+        return collectionKey.substring(collectionKey.indexOf('/') + 1);
+    }
+
+}
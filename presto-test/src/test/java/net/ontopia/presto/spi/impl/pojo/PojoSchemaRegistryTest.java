@@ -0,0 +1,130 @@
+package net.ontopia.presto.spi.impl.pojo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PojoSchemaRegistryTest {
+
+    private static final String SCHEMA_FILE = "watch.schema.json";
+
+    private String userHome;
+    private long watchRetryInterval;
+    private File home;
+
+    @Before
+    public void setUp() throws IOException {
+        this.userHome = System.getProperty("user.home");
+        this.watchRetryInterval = PojoSchemaRegistry.watchRetryInterval;
+        this.home = File.createTempFile("presto-home", "");
+        Assert.assertTrue(home.delete() && home.mkdir());
+        System.setProperty("user.home", home.getPath());
+        PojoSchemaRegistry.stop();
+        PojoSchemaRegistry.clear();
+    }
+
+    @After
+    public void tearDown() {
+        PojoSchemaRegistry.stop();
+        PojoSchemaRegistry.clear();
+        PojoSchemaRegistry.watchRetryInterval = watchRetryInterval;
+        System.setProperty("user.home", userHome);
+        delete(home);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                delete(f);
+            }
+        }
+        file.delete();
+    }
+
+    private File getSchemaDirectory() {
+        return new File(home, "presto-schemas");
+    }
+
+    private void writeSchema(String typeName) throws IOException {
+        writeFile("{ \"id\" : \"watch\", \"name\" : \"Watch\", \"types\" : { \"w:topic\" : { \"name\" : \"" + typeName + "\", " +
+                "\"views\" : [{ \"id\" : \"info\", \"name\" : \"Info\", \"fields\" : [{ \"id\" : \"name\", \"name\" : \"Name\", \"nameField\" : true }] }] } } }");
+    }
+
+    private void writeFile(String content) throws IOException {
+        File dir = getSchemaDirectory();
+        dir.mkdir();
+        // write and rename, so that the watcher never sees a partial file
+        File tmp = new File(home, SCHEMA_FILE);
+        OutputStream out = new FileOutputStream(tmp);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        File file = new File(dir, SCHEMA_FILE);
+        file.delete();
+        Assert.assertTrue(tmp.renameTo(file));
+    }
+
+    private static PojoSchemaProvider getSchemaProvider() {
+        return PojoSchemaRegistry.getSchemaProvider("watch", SCHEMA_FILE);
+    }
+
+    private static String getTypeName() {
+        return getSchemaProvider().getTypeById("w:topic").getName();
+    }
+
+    @Test
+    public void testReloadOnChange() throws Exception {
+        writeSchema("Topic");
+        Assert.assertEquals("Topic", getTypeName());
+        Assert.assertTrue(PojoSchemaRegistry.isWatching());
+
+        writeSchema("Changed");
+        long deadline = System.currentTimeMillis() + 20000;
+        while (!getTypeName().equals("Changed") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        Assert.assertEquals("Changed", getTypeName());
+    }
+
+    @Test
+    public void testKeepOldSchemaOnParseFailure() throws Exception {
+        writeSchema("Topic");
+        PojoSchemaProvider schemaProvider = getSchemaProvider();
+
+        writeFile("{ \"id\" : ");
+        PojoSchemaRegistry.reload();
+        Assert.assertSame(schemaProvider, getSchemaProvider());
+        Assert.assertEquals("Topic", getTypeName());
+    }
+
+    @Test
+    public void testWatchingRetriedWhenDirectoryAppears() throws Exception {
+        PojoSchemaRegistry.watchRetryInterval = 0;
+        // found on the class path, as the schema directory does not exist
+        PojoSchemaRegistry.getSchemaProvider("resolve", "resolve.schema.json");
+        Assert.assertFalse(PojoSchemaRegistry.isWatching());
+
+        Assert.assertTrue(getSchemaDirectory().mkdir());
+        PojoSchemaRegistry.getSchemaProvider("resolve", "resolve.schema.json");
+        Assert.assertTrue(PojoSchemaRegistry.isWatching());
+    }
+
+    @Test
+    public void testStop() throws Exception {
+        writeSchema("Topic");
+        getSchemaProvider();
+        Assert.assertTrue(PojoSchemaRegistry.isWatching());
+        PojoSchemaRegistry.stop();
+        Assert.assertFalse(PojoSchemaRegistry.isWatching());
+    }
+
+}
@@ -0,0 +1,158 @@
+package net.ontopia.presto.spi.jackson;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.ontopia.presto.spi.PrestoField;
+import net.ontopia.presto.spi.PrestoTopic;
+
+import org.junit.Ignore;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Backend stand-in that counts how often each topic is fetched from the
+ * wrapped data provider. Full documents and stubs are counted separately.
+ */
+@Ignore
+public class CountingJacksonDataProvider extends JacksonDataProvider {
+
+    private final JacksonDataProvider dataProvider;
+
+    private final ConcurrentMap<String,AtomicInteger> fetches = new ConcurrentHashMap<String,AtomicInteger>();
+    private final ConcurrentMap<String,AtomicInteger> stubFetches = new ConcurrentHashMap<String,AtomicInteger>();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    public CountingJacksonDataProvider(JacksonDataProvider dataProvider) {
+        super(dataProvider);
+        this.dataProvider = dataProvider;
+    }
+
+    public int getFetchCount(String topicId) {
+        AtomicInteger count = fetches.get(topicId);
+        return count == null ? 0 : count.get();
+    }
+
+    public int getStubFetchCount(String topicId) {
+        AtomicInteger count = stubFetches.get(topicId);
+        return count == null ? 0 : count.get();
+    }
+
+    public Map<String,AtomicInteger> getFetchCounts() {
+        return fetches;
+    }
+
+    public int getCallCount() {
+        return calls.get();
+    }
+
+    public void reset() {
+        fetches.clear();
+        stubFetches.clear();
+        calls.set(0);
+    }
+
+    private void count(ConcurrentMap<String,AtomicInteger> counts, String topicId) {
+        AtomicInteger count = counts.get(topicId);
+        if (count == null) {
+            AtomicInteger existing = counts.putIfAbsent(topicId, count = new AtomicInteger());
+            if (existing != null) {
+                count = existing;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    @Override
+    protected JacksonDataStrategy createDataStrategy(ObjectMapper mapper) {
+        return dataProvider.getDataStrategy();
+    }
+
+    @Override
+    protected IdentityStrategy createIdentityStrategy() {
+        return dataProvider.getIdentityStrategy();
+    }
+
+    @Override
+    public String getProviderId() {
+        return dataProvider.getProviderId();
+    }
+
+    @Override
+    public PrestoTopic getTopicById(String topicId) {
+        calls.incrementAndGet();
+        count(fetches, topicId);
+        return rebind(dataProvider.getTopicById(topicId));
+    }
+
+    @Override
+    public Collection<PrestoTopic> getTopicsByIds(Collection<String> topicIds) {
+        calls.incrementAndGet();
+        for (String topicId : topicIds) {
+            count(fetches, topicId);
+        }
+        return rebind(dataProvider.getTopicsByIds(topicIds));
+    }
+
+    @Override
+    public Collection<PrestoTopic> getTopicStubsByIds(Collection<String> topicIds) {
+        calls.incrementAndGet();
+        for (String topicId : topicIds) {
+            count(stubFetches, topicId);
+        }
+        return rebind(dataProvider.getTopicStubsByIds(topicIds));
+    }
+
+    // rebind topics so that references followed from them are counted too
+    private Collection<PrestoTopic> rebind(Collection<PrestoTopic> topics) {
+        Collection<PrestoTopic> result = new ArrayList<PrestoTopic>(topics.size());
+        for (PrestoTopic topic : topics) {
+            result.add(rebind(topic));
+        }
+        return result;
+    }
+
+    private PrestoTopic rebind(PrestoTopic topic) {
+        if (topic instanceof JacksonStubTopic) {
+            return stub(((JacksonStubTopic)topic).data);
+        } else if (topic instanceof JacksonTopic && !topic.isLazy() && !topic.isInline()) {
+            return existing(((JacksonTopic)topic).getData());
+        }
+        return topic;
+    }
+
+    @Override
+    protected boolean isStubField(PrestoField field) {
+        return dataProvider.isStubField(field);
+    }
+
+    @Override
+    public Collection<? extends Object> getAvailableFieldValues(PrestoTopic topic, PrestoField field, String query) {
+        return dataProvider.getAvailableFieldValues(topic, field, query);
+    }
+
+    @Override
+    public void create(PrestoTopic topic) {
+        dataProvider.create(topic);
+    }
+
+    @Override
+    public void update(PrestoTopic topic) {
+        dataProvider.update(topic);
+    }
+
+    @Override
+    public boolean delete(PrestoTopic topic) {
+        return dataProvider.delete(topic);
+    }
+
+    @Override
+    public void close() {
+        dataProvider.close();
+    }
+
+}
@@ -0,0 +1,108 @@
+package net.ontopia.presto.spi.jackson;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.ontopia.presto.spi.PrestoChangeSet;
+import net.ontopia.presto.spi.PrestoDataProvider;
+import net.ontopia.presto.spi.PrestoField;
+import net.ontopia.presto.spi.PrestoSchemaProvider;
+import net.ontopia.presto.spi.PrestoTopic;
+import net.ontopia.presto.spi.PrestoType;
+import net.ontopia.presto.spi.impl.pojo.PojoSchemaProvider;
+import net.ontopia.presto.spi.resolve.PrestoResolver;
+import net.ontopia.presto.spi.resolve.PrestoResolverPipelineTest;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JacksonIdentityMapDataProviderTest {
+
+    private static final List<String> PERSONS = Arrays.asList("i:john.doe", "i:mary.poppins", "i:james.dean", "i:john.travolta");
+
+    private PrestoSchemaProvider schemaProvider;
+    private CountingJacksonDataProvider backend;
+    private JacksonIdentityMapDataProvider dataProvider;
+
+    @Before
+    public void setUp() {
+        this.schemaProvider = PojoSchemaProvider.loadSchemaProvider("resolve", "resolve.schema.json");
+        this.backend = new CountingJacksonDataProvider(PrestoResolverPipelineTest.createDataProvider(schemaProvider));
+        this.dataProvider = new JacksonIdentityMapDataProvider(backend);
+    }
+
+    private PrestoField getField(String fieldId) {
+        return PrestoResolverPipelineTest.getField(schemaProvider, "c:person", fieldId);
+    }
+
+    @Test
+    public void testOneFetchPerIdPerRequest() {
+        for (String topicId : PERSONS) {
+            PrestoTopic topic = dataProvider.getTopicById(topicId);
+            topic.getValues(getField("friends"));
+            topic.getValues(getField("favorite-beer"));
+            topic.getValues(getField("friends-beers"));
+            topic.getValues(getField("friends-breweries"));
+        }
+        Assert.assertEquals(1, backend.getFetchCount("i:ringnes"));
+        Assert.assertEquals(1, backend.getFetchCount("i:nogne-o"));
+        for (Map.Entry<String,AtomicInteger> entry : backend.getFetchCounts().entrySet()) {
+            Assert.assertEquals(entry.getKey(), 1, entry.getValue().get());
+        }
+    }
+
+    @Test
+    public void testResolverUsesIdentityMap() {
+        Assert.assertSame(dataProvider, dataProvider.getResolver().getDataProvider());
+
+        PrestoTopic topic = dataProvider.getTopicById("i:john.doe");
+        Assert.assertSame(topic, dataProvider.getTopicById("i:john.doe"));
+        Assert.assertSame(topic, dataProvider.getTopicsByIds(Arrays.asList("i:john.doe")).iterator().next());
+        Assert.assertEquals(1, backend.getFetchCount("i:john.doe"));
+    }
+
+    @Test
+    public void testClearedOnSave() {
+        PrestoTopic topic = dataProvider.getTopicById("i:john.doe");
+        PrestoType type = schemaProvider.getTypeById(topic.getTypeId());
+        PrestoField field = type.getFieldById("hobbies");
+
+        PrestoChangeSet changeSet = dataProvider.newChangeSet();
+        changeSet.updateTopic(topic, type).setValues(field, Arrays.asList("sailing"));
+        changeSet.save();
+
+        PrestoTopic updated = dataProvider.getTopicById("i:john.doe");
+        Assert.assertNotSame(topic, updated);
+        Assert.assertEquals(Arrays.asList("sailing"), updated.getValues(field));
+        Assert.assertEquals(2, backend.getFetchCount("i:john.doe"));
+    }
+
+    @Test
+    public void testUnwrap() {
+        Assert.assertSame(backend, JacksonIdentityMapDataProvider.unwrap(dataProvider));
+        Assert.assertSame(backend, JacksonIdentityMapDataProvider.unwrap(backend));
+    }
+
+    private static class CustomResolver extends PrestoResolver {
+        CustomResolver(PrestoDataProvider dataProvider, PrestoSchemaProvider schemaProvider, int virtualFieldCacheSize) {
+            super(dataProvider, schemaProvider, virtualFieldCacheSize);
+        }
+    }
+
+    @Test
+    public void testResolverCreatedByWrappedProvider() {
+        CountingJacksonDataProvider custom = new CountingJacksonDataProvider(PrestoResolverPipelineTest.createDataProvider(schemaProvider)) {
+            @Override
+            protected PrestoResolver createResolver(JacksonDataProvider dataProvider, int virtualFieldCacheSize) {
+                return new CustomResolver(dataProvider, schemaProvider, virtualFieldCacheSize);
+            }
+        };
+        JacksonIdentityMapDataProvider session = new JacksonIdentityMapDataProvider(custom);
+        Assert.assertTrue(session.getResolver() instanceof CustomResolver);
+        Assert.assertSame(session, session.getResolver().getDataProvider());
+    }
+
+}
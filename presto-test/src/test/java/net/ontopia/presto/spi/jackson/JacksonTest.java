@@ -10,6 +10,7 @@ import net.ontopia.presto.spi.PrestoSchemaProvider;
 import net.ontopia.presto.spi.PrestoTopic;
 import net.ontopia.presto.spi.PrestoType;
 import net.ontopia.presto.spi.impl.pojo.PojoSchemaProvider;
+import net.ontopia.presto.spi.resolve.PrestoResolver;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -217,4 +218,132 @@ public class JacksonTest {
         Assert.assertNull("i:ratebeer-grove not removed", ratebeer_grove);
     }
 
+    @Test
+    public void testCachingDataProvider() {
+        loadData("test.data.json");
+        JacksonTopicCache cache = new JacksonTopicCache(10);
+        CachingJacksonDataProvider cachingProvider = new CachingJacksonDataProvider(dataProvider, cache);
+
+        PrestoTopic johndoe = cachingProvider.getTopicById("i:john.doe");
+        Assert.assertEquals("John Doe", johndoe.getName());
+        Assert.assertEquals(0, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+
+        johndoe = cachingProvider.getTopicById("i:john.doe");
+        Assert.assertEquals("John Doe", johndoe.getName());
+        Assert.assertEquals(1, cache.getHitCount());
+
+        PrestoType person = schemaProvider.getTypeById("c:person");
+        PrestoChangeSet changeSet = cachingProvider.newChangeSet();
+        changeSet.deleteTopic(johndoe, person);
+        changeSet.save();
+
+        Assert.assertEquals(0, cache.getSize());
+        Assert.assertNull("i:john.doe not removed", cachingProvider.getTopicById("i:john.doe"));
+    }
+
+    @Test
+    public void testCachingDataProviderUsesResolverOfWrappedProvider() {
+        CountingJacksonDataProvider custom = new CountingJacksonDataProvider(dataProvider) {
+            @Override
+            protected PrestoResolver createResolver(JacksonDataProvider dataProvider, int virtualFieldCacheSize) {
+                return new PrestoResolver(dataProvider, schemaProvider, virtualFieldCacheSize) {};
+            }
+        };
+        CachingJacksonDataProvider cachingProvider = new CachingJacksonDataProvider(custom, new JacksonTopicCache(10));
+        Assert.assertNotSame(PrestoResolver.class, cachingProvider.getResolver().getClass());
+        Assert.assertSame(cachingProvider, cachingProvider.getResolver().getDataProvider());
+
+        JacksonIdentityMapDataProvider session = new JacksonIdentityMapDataProvider(cachingProvider);
+        Assert.assertSame(custom, JacksonIdentityMapDataProvider.unwrap(session));
+    }
+
+    @Test
+    public void testCacheSkipsDocumentsInvalidatedDuringRead() {
+        JacksonTopicCache cache = new JacksonTopicCache(10);
+        ObjectNode doc = getPersonObjectNode();
+
+        long generation = cache.getGeneration("i:john.doe");
+        cache.invalidate("i:john.doe");
+        Assert.assertFalse(cache.put("i:john.doe", doc, generation));
+        Assert.assertNull(cache.get("i:john.doe"));
+
+        Assert.assertTrue(cache.put("i:john.doe", doc, cache.getGeneration("i:john.doe")));
+        Assert.assertNotNull(cache.get("i:john.doe"));
+    }
+
+    @Test
+    public void testCacheGenerationsAreBounded() {
+        JacksonTopicCache cache = new JacksonTopicCache(1);
+        long generation = cache.getGeneration("i:john.doe");
+        cache.invalidate("i:john.doe");
+        cache.invalidate("i:jane.doe");
+        // forgotten generations still make the put fail
+        Assert.assertFalse(cache.put("i:john.doe", getPersonObjectNode(), generation));
+
+        generation = cache.getGeneration("i:john.doe");
+        cache.clear();
+        Assert.assertFalse(cache.put("i:john.doe", getPersonObjectNode(), generation));
+    }
+
+    @Test
+    public void testCachingDataProviderConcurrentUpdate() {
+        loadData("test.data.json");
+        final JacksonTopicCache cache = new JacksonTopicCache(10);
+        JacksonDataProvider racingProvider = new CountingJacksonDataProvider(dataProvider) {
+            @Override
+            public PrestoTopic getTopicById(String topicId) {
+                PrestoTopic result = super.getTopicById(topicId);
+                // a write completes while the document is being read
+                cache.invalidate(topicId);
+                return result;
+            }
+        };
+        CachingJacksonDataProvider cachingProvider = new CachingJacksonDataProvider(racingProvider, cache);
+
+        Assert.assertEquals("John Doe", cachingProvider.getTopicById("i:john.doe").getName());
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testCachingDataProviderStubs() {
+        loadData("test.data.json");
+        JacksonTopicCache cache = new JacksonTopicCache(10);
+        CountingJacksonDataProvider backend = new CountingJacksonDataProvider(dataProvider);
+        CachingJacksonDataProvider cachingProvider = new CachingJacksonDataProvider(backend, cache);
+
+        cachingProvider.getTopicById("i:john.doe");
+        PrestoTopic johndoe = cachingProvider.getTopicStubsByIds(Arrays.asList("i:john.doe")).iterator().next();
+        Assert.assertEquals("John Doe", johndoe.getName());
+        Assert.assertEquals(0, backend.getStubFetchCount("i:john.doe"));
+        Assert.assertEquals(1, backend.getFetchCount("i:john.doe"));
+
+        // data providers without partial documents return full topics, which are cached
+        cache.clear();
+        cachingProvider.getTopicStubsByIds(Arrays.asList("i:john.doe"));
+        Assert.assertEquals(1, backend.getStubFetchCount("i:john.doe"));
+        Assert.assertEquals(1, cache.getSize());
+        cachingProvider.getTopicById("i:john.doe");
+        Assert.assertEquals(1, backend.getFetchCount("i:john.doe"));
+    }
+
+    @Test
+    public void testStubValuesOptIn() {
+        loadData("test.data.json");
+        CountingJacksonDataProvider backend = new CountingJacksonDataProvider(dataProvider);
+
+        PrestoType beer = schemaProvider.getTypeById("c:beer");
+        Assert.assertTrue(backend.isStubField(beer.getFieldById("brewed-by")));
+
+        PrestoTopic johndoe = backend.getTopicById("i:john.doe");
+        PrestoType person = schemaProvider.getTypeById("c:person");
+        PrestoField favoriteBeer = person.getFieldById("favorite-beer");
+        Assert.assertFalse(backend.isStubField(favoriteBeer));
+
+        List<? extends Object> values = johndoe.getValues(favoriteBeer);
+        Assert.assertEquals("N\u00f8gne \u00d8 IPA", ((PrestoTopic)values.get(0)).getName());
+        Assert.assertEquals(1, backend.getFetchCount("i:nogne-o-ipa"));
+        Assert.assertEquals(0, backend.getStubFetchCount("i:nogne-o-ipa"));
+    }
+
 }
@@ -16,6 +16,8 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
 public class JacksonTopicTest {
 
     private PojoSchemaProvider schemaProvider;
@@ -378,5 +380,26 @@ public class JacksonTopicTest {
         topic.removeValue(field, inlineTopics(vtype, "G", "E", "H"));        
         JacksonTest.assertValuesEquals(inlineTopics(vtype), topic.getValues(field));
     }
+
+    @Test
+    public void testStubTopicLoadsFullData() {
+        PrestoType type = schemaProvider.getTypeById("sometype");
+        PrestoField field = type.getFieldById("strings");
+
+        PrestoTopic topic = createTopic(type, "stub1");
+        PrestoChangeSet changeSet = dataProvider.newChangeSet();
+        changeSet.updateTopic(topic, type).setValues(field, strings("A", "B"));
+        changeSet.save();
+
+        ObjectNode stubData = dataProvider.getObjectMapper().createObjectNode();
+        stubData.put("_id", "stub1");
+        stubData.put(":type", "sometype");
+        JacksonStubTopic stub = new JacksonStubTopic(dataProvider, stubData);
+
+        Assert.assertEquals("stub1", stub.getId());
+        Assert.assertEquals("sometype", stub.getTypeId());
+        JacksonTest.assertValuesEquals(strings("A", "B"), stub.getValues(field));
+        Assert.assertEquals(topic, stub);
+    }
     
 }
@@ -0,0 +1,119 @@
+package net.ontopia.presto.spi.resolve;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.ontopia.presto.spi.PrestoField;
+import net.ontopia.presto.spi.PrestoSchemaProvider;
+import net.ontopia.presto.spi.PrestoTopic;
+import net.ontopia.presto.spi.PrestoTopic.PagedValues;
+import net.ontopia.presto.spi.PrestoTopic.Projection;
+import net.ontopia.presto.spi.impl.pojo.PojoSchemaProvider;
+import net.ontopia.presto.spi.jackson.JacksonDataProvider;
+import net.ontopia.presto.spi.utils.PrestoProjection;
+import net.ontopia.presto.spi.utils.PrestoTopicFieldVariableResolver;
+import net.ontopia.presto.spi.utils.Utils;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+public class PrestoMergeResolverTest {
+
+    // i:john.doe -> friends: james.dean, john.travolta, mary.poppins
+    //            -> friends of friends: john.travolta, james.dean
+    private static final String BRANCHES = 
+            "\"branches\" : { \"friends\" : [{ \"type\" : \"traverse\", \"path\" : [\"friends\"] }], " +
+            "\"friends-of-friends\" : [{ \"type\" : \"traverse\", \"path\" : [\"friends\", \"friends\"] }] }";
+
+    private PrestoSchemaProvider schemaProvider;
+    private JacksonDataProvider dataProvider;
+
+    @Before
+    public void setUp() {
+        this.schemaProvider = PojoSchemaProvider.loadSchemaProvider("resolve", "resolve.schema.json");
+        this.dataProvider = PrestoResolverPipelineTest.createDataProvider(schemaProvider);
+    }
+
+    private PagedValues merge(String expression, Projection projection) throws Exception {
+        JsonNode resolveConfig = Utils.DEFAULT_OBJECT_MAPPER.readTree(
+                "[{ \"type\" : \"merge\", \"expression\" : " + expression + ", " + BRANCHES + " }]");
+        PrestoResolver resolver = dataProvider.getResolver();
+        PrestoField field = PrestoResolverPipelineTest.getField(schemaProvider, "c:person", "friends");
+        PrestoTopic johndoe = dataProvider.getTopicById("i:john.doe");
+        return resolver.resolveValues(Collections.singleton(johndoe), field, projection, resolveConfig, 
+                new PrestoTopicFieldVariableResolver(resolver));
+    }
+
+    private Set<String> mergeIds(String expression) throws Exception {
+        return getIds(merge(expression, null).getValues());
+    }
+
+    private static Set<String> getIds(List<? extends Object> values) {
+        Set<String> result = new HashSet<String>();
+        for (Object value : values) {
+            Assert.assertTrue("Duplicate value " + value, result.add(((PrestoTopic)value).getId()));
+        }
+        return result;
+    }
+
+    private static Set<String> ids(String... ids) {
+        return new HashSet<String>(Arrays.asList(ids));
+    }
+
+    @Test
+    public void testBranch() throws Exception {
+        Assert.assertEquals(ids("i:james.dean", "i:john.travolta", "i:mary.poppins"), mergeIds("\"friends\""));
+    }
+
+    @Test
+    public void testUnion() throws Exception {
+        Assert.assertEquals(ids("i:james.dean", "i:john.travolta", "i:mary.poppins"), 
+                mergeIds("{ \"UNION\" : [\"friends-of-friends\", \"friends\"] }"));
+    }
+
+    @Test
+    public void testIntersection() throws Exception {
+        Assert.assertEquals(ids("i:james.dean", "i:john.travolta"), 
+                mergeIds("{ \"INTERSECTION\" : [\"friends\", \"friends-of-friends\"] }"));
+    }
+
+    @Test
+    public void testMinus() throws Exception {
+        Assert.assertEquals(ids("i:mary.poppins"), mergeIds("{ \"MINUS\" : [\"friends\", \"friends-of-friends\"] }"));
+        Assert.assertEquals(ids(), mergeIds("{ \"MINUS\" : [\"friends-of-friends\", \"friends\"] }"));
+    }
+
+    @Test
+    public void testNestedExpressionWithInlineOperand() throws Exception {
+        String expression = "{ \"UNION\" : [ { \"MINUS\" : [\"friends\", \"friends-of-friends\"] }, " +
+                "[{ \"type\" : \"traverse\", \"path\" : [\"friends\", \"favorite-beer\"] }] ] }";
+        Assert.assertEquals(ids("i:mary.poppins", "i:nogne-o-ipa", "i:ringnes-pils"), mergeIds(expression));
+    }
+
+    @Test
+    public void testProjectionAndTotal() throws Exception {
+        PagedValues values = merge("\"friends\"", new PrestoProjection(1, 1));
+        Assert.assertEquals(1, values.getValues().size());
+        Assert.assertEquals(3, values.getTotal());
+
+        values = merge("\"friends\"", new PrestoProjection(2, 5));
+        Assert.assertEquals(1, values.getValues().size());
+        Assert.assertEquals(3, values.getTotal());
+
+        values = merge("{ \"MINUS\" : [\"friends-of-friends\", \"friends\"] }", new PrestoProjection(0, 5));
+        Assert.assertEquals(0, values.getValues().size());
+        Assert.assertEquals(0, values.getTotal());
+    }
+
+    @Test(expected=RuntimeException.class)
+    public void testUnknownBranch() throws Exception {
+        merge("\"enemies\"", null);
+    }
+
+}
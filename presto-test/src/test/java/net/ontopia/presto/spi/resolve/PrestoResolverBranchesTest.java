@@ -0,0 +1,123 @@
+package net.ontopia.presto.spi.resolve;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import net.ontopia.presto.spi.PrestoField;
+import net.ontopia.presto.spi.PrestoSchemaProvider;
+import net.ontopia.presto.spi.PrestoTopic.PagedValues;
+import net.ontopia.presto.spi.PrestoTopic.Projection;
+import net.ontopia.presto.spi.impl.pojo.PojoSchemaProvider;
+import net.ontopia.presto.spi.jackson.JacksonDataProvider;
+import net.ontopia.presto.spi.utils.PrestoPagedValues;
+import net.ontopia.presto.spi.utils.PrestoTopicFieldVariableResolver;
+import net.ontopia.presto.spi.utils.PrestoVariableResolver;
+import net.ontopia.presto.spi.utils.Utils;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class PrestoResolverBranchesTest {
+
+    private static volatile CountDownLatch interrupted;
+
+    private PrestoSchemaProvider schemaProvider;
+    private PrestoResolver resolver;
+
+    /**
+     * Returns the "values" of its config after sleeping "delay" milliseconds.
+     */
+    public static class DelayedResolver extends PrestoFieldResolver {
+        @Override
+        public PagedValues resolve(Collection<? extends Object> objects, PrestoField field, boolean isReference,
+                Projection projection, PrestoResolver prestoResolver, PrestoVariableResolver variableResolver) {
+            try {
+                Thread.sleep(getConfig().path("delay").asLong(0));
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                return new PrestoPagedValues(Collections.emptyList(), projection, 0);
+            }
+            List<Object> values = new ArrayList<Object>();
+            for (JsonNode value : getConfig().path("values")) {
+                values.add(value.textValue());
+            }
+            return new PrestoPagedValues(values, projection, values.size());
+        }
+    }
+
+    @Before
+    public void setUp() {
+        interrupted = new CountDownLatch(1);
+        this.schemaProvider = PojoSchemaProvider.loadSchemaProvider("resolve", "resolve.schema.json");
+        JacksonDataProvider dataProvider = PrestoResolverPipelineTest.createDataProvider(schemaProvider);
+        this.resolver = new PrestoResolver(dataProvider, schemaProvider) {
+            @Override
+            protected PrestoFieldResolver createFieldResolver(ObjectNode resolveConfig) {
+                if ("delayed".equals(resolveConfig.path("type").textValue())) {
+                    PrestoFieldResolver fieldResolver = new DelayedResolver();
+                    fieldResolver.setVariableContext(getVariableContext());
+                    fieldResolver.setConfig(resolveConfig);
+                    return fieldResolver;
+                }
+                return super.createFieldResolver(resolveConfig);
+            }
+        };
+    }
+
+    private static String branch(long delay, String value) {
+        return "[{ \"type\" : \"delayed\", \"delay\" : " + delay + ", \"values\" : [\"" + value + "\"] }]";
+    }
+
+    private List<? extends Object> resolve(String type, String options, String... branches) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (String branch : branches) {
+            sb.append(sb.length() == 0 ? "" : ", ").append(branch);
+        }
+        JsonNode resolveConfig = Utils.DEFAULT_OBJECT_MAPPER.readTree(
+                "[{ \"type\" : \"" + type + "\", \"parallel\" : true, " + options + " \"resolve\" : [" + sb + "] }]");
+        PrestoField field = PrestoResolverPipelineTest.getField(schemaProvider, "c:person", "friends");
+        return resolver.resolveValues(Collections.emptyList(), field, null, resolveConfig,
+                new PrestoTopicFieldVariableResolver(resolver)).getValues();
+    }
+
+    @Test
+    public void testUnionKeepsConfigurationOrder() throws Exception {
+        Assert.assertEquals(Arrays.asList("a", "b", "c"),
+                resolve("union", "", branch(200, "a"), branch(0, "b"), branch(100, "c")));
+    }
+
+    @Test
+    public void testCoalesceCancelsLaterBranches() throws Exception {
+        Assert.assertEquals(Arrays.asList("a"),
+                resolve("coalesce", "", branch(200, "a"), branch(60000, "b")));
+        Assert.assertTrue("Later branch not cancelled", interrupted.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testTimeoutFails() throws Exception {
+        try {
+            resolve("union", "\"timeout\" : 100,", branch(0, "a"), branch(60000, "b"));
+            Assert.fail("Timeout not reported");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().startsWith("Timed out"));
+        }
+        Assert.assertTrue("Timed out branch not cancelled", interrupted.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testTimeoutEmptyWhenEnabled() throws Exception {
+        Assert.assertEquals(Arrays.asList("a"),
+                resolve("union", "\"timeout\" : 100, \"onTimeout\" : \"empty\",", branch(0, "a"), branch(60000, "b")));
+        Assert.assertTrue("Timed out branch not cancelled", interrupted.await(10, TimeUnit.SECONDS));
+    }
+
+}
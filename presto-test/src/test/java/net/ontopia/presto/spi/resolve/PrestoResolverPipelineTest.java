@@ -0,0 +1,113 @@
+package net.ontopia.presto.spi.resolve;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import net.ontopia.presto.jaxrs.DataLoader;
+import net.ontopia.presto.spi.PrestoField;
+import net.ontopia.presto.spi.PrestoSchemaProvider;
+import net.ontopia.presto.spi.PrestoTopic;
+import net.ontopia.presto.spi.PrestoTopic.PagedValues;
+import net.ontopia.presto.spi.PrestoTopic.Projection;
+import net.ontopia.presto.spi.impl.pojo.PojoSchemaProvider;
+import net.ontopia.presto.spi.jackson.IdentityStrategy;
+import net.ontopia.presto.spi.jackson.InMemoryJacksonDataProvider;
+import net.ontopia.presto.spi.jackson.JacksonDataStrategy;
+import net.ontopia.presto.spi.jackson.JacksonDefaultDataStrategy;
+import net.ontopia.presto.spi.jackson.UUIDIdentityStrategy;
+import net.ontopia.presto.spi.utils.PrestoPagedValues;
+import net.ontopia.presto.spi.utils.PrestoVariableResolver;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class PrestoResolverPipelineTest {
+
+    public static InMemoryJacksonDataProvider createDataProvider(PrestoSchemaProvider schemaProvider) {
+        InMemoryJacksonDataProvider dataProvider = new InMemoryJacksonDataProvider(schemaProvider) {
+            @Override
+            protected IdentityStrategy createIdentityStrategy() {
+                return new UUIDIdentityStrategy();
+            }
+            @Override
+            protected JacksonDataStrategy createDataStrategy(ObjectMapper mapper) {
+                return new JacksonDefaultDataStrategy() {
+                    @Override
+                    public String getName(ObjectNode doc) {
+                        return getSingleStringFieldValue(doc, "name");
+                    }
+                };
+            }
+        };
+        DataLoader.loadData(dataProvider, schemaProvider, "resolve.data.json");
+        return dataProvider;
+    }
+
+    public static PrestoField getField(PrestoSchemaProvider schemaProvider, String typeId, String fieldId) {
+        return schemaProvider.getTypeById(typeId).getFieldById(fieldId);
+    }
+
+    static JsonNode getResolveConfig(PrestoField field) {
+        return ((ObjectNode)field.getExtra()).get("resolve");
+    }
+
+    @Test
+    public void testPipelineIsCached() {
+        PrestoSchemaProvider schemaProvider = PojoSchemaProvider.loadSchemaProvider("resolve", "resolve.schema.json");
+        PrestoResolver resolver = createDataProvider(schemaProvider).getResolver();
+        PrestoField field = getField(schemaProvider, "c:person", "friends-beers");
+
+        PrestoResolverPipeline pipeline = PrestoResolverPipeline.getPipeline(resolver, field, getResolveConfig(field));
+        Assert.assertSame(pipeline, PrestoResolverPipeline.getPipeline(resolver, field, getResolveConfig(field)));
+    }
+
+    @Test
+    public void testReloadedSchemaGetsNewPipeline() {
+        PrestoSchemaProvider schemaProvider = PojoSchemaProvider.loadSchemaProvider("resolve", "resolve.schema.json");
+        PrestoResolver resolver = createDataProvider(schemaProvider).getResolver();
+        PrestoField field = getField(schemaProvider, "c:person", "friends-beers");
+        PrestoResolverPipeline pipeline = PrestoResolverPipeline.getPipeline(resolver, field, getResolveConfig(field));
+
+        PrestoSchemaProvider reloadedSchemaProvider = PojoSchemaProvider.loadSchemaProvider("resolve", "resolve.schema.json");
+        InMemoryJacksonDataProvider reloadedDataProvider = createDataProvider(reloadedSchemaProvider);
+        PrestoResolver reloadedResolver = reloadedDataProvider.getResolver();
+        PrestoField reloadedField = getField(reloadedSchemaProvider, "c:person", "friends-beers");
+        PrestoResolverPipeline reloadedPipeline = PrestoResolverPipeline.getPipeline(reloadedResolver, reloadedField, getResolveConfig(reloadedField));
+        Assert.assertNotSame(pipeline, reloadedPipeline);
+
+        PrestoTopic johndoe = reloadedDataProvider.getTopicById("i:john.doe");
+        Assert.assertEquals(2, johndoe.getValues(reloadedField).size());
+    }
+
+    @Test
+    public void testCustomCreateFieldResolver() {
+        PrestoSchemaProvider schemaProvider = PojoSchemaProvider.loadSchemaProvider("resolve", "resolve.schema.json");
+        InMemoryJacksonDataProvider dataProvider = createDataProvider(schemaProvider);
+        PrestoResolver resolver = new PrestoResolver(dataProvider, schemaProvider) {
+            @Override
+            protected PrestoFieldResolver createFieldResolver(ObjectNode resolveConfig) {
+                return new PrestoFieldResolver() {
+                    @Override
+                    public PagedValues resolve(Collection<? extends Object> objects, PrestoField field, boolean isReference, 
+                            Projection projection, PrestoResolver prestoResolver, PrestoVariableResolver variableResolver) {
+                        List<String> values = Collections.singletonList("custom");
+                        return new PrestoPagedValues(values, projection, values.size());
+                    }
+                };
+            }
+        };
+        PrestoField field = getField(schemaProvider, "c:person", "friends-beers");
+        PrestoTopic johndoe = dataProvider.getTopicById("i:john.doe");
+        Assert.assertEquals(Arrays.asList("custom"), resolver.resolveValues(johndoe, field));
+
+        // the default resolver is not affected by the cached pipeline of the subclass
+        Assert.assertEquals(2, dataProvider.getResolver().resolveValues(johndoe, field).size());
+    }
+
+}
@@ -0,0 +1,87 @@
+package net.ontopia.presto.spi.resolve;
+
+import java.util.List;
+
+import net.ontopia.presto.spi.PrestoField;
+import net.ontopia.presto.spi.PrestoSchemaProvider;
+import net.ontopia.presto.spi.PrestoTopic;
+import net.ontopia.presto.spi.impl.pojo.PojoSchemaProvider;
+import net.ontopia.presto.spi.jackson.JacksonDataProvider;
+import net.ontopia.presto.spi.jackson.JacksonIdentityMapDataProvider;
+import net.ontopia.presto.spi.utils.PrestoTopicFieldVariableResolver;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+public class PrestoVirtualFieldsTest {
+
+    private static final String NAME = "friends-of-friends";
+
+    private PrestoSchemaProvider schemaProvider;
+    private JacksonDataProvider dataProvider;
+
+    @Before
+    public void setUp() {
+        this.schemaProvider = PojoSchemaProvider.loadSchemaProvider("resolve", "resolve.schema.json");
+        this.dataProvider = PrestoResolverPipelineTest.createDataProvider(schemaProvider);
+    }
+
+    private static List<? extends Object> resolve(PrestoResolver resolver, PrestoTopic topic) {
+        return resolve(resolver, topic, new PrestoTopicFieldVariableResolver(resolver));
+    }
+
+    private static List<? extends Object> resolve(PrestoResolver resolver, PrestoTopic topic, PrestoTopicFieldVariableResolver variableResolver) {
+        JsonNode resolveConfig = resolver.getVirtualFieldConfig(NAME);
+        PrestoField field = PrestoResolverPipelineTest.getField(resolver.getSchemaProvider(), "c:person", NAME);
+        return resolver.resolveVirtualField(NAME, topic, field, resolveConfig, variableResolver);
+    }
+
+    @Test
+    public void testNotMemoizedByDefault() {
+        PrestoResolver resolver = dataProvider.getResolver();
+        PrestoTopic johndoe = dataProvider.getTopicById("i:john.doe");
+        Assert.assertEquals(2, resolve(resolver, johndoe).size());
+        Assert.assertNotSame(resolve(resolver, johndoe), resolve(resolver, johndoe));
+    }
+
+    @Test
+    public void testMemoizedPerSession() {
+        JacksonIdentityMapDataProvider session = new JacksonIdentityMapDataProvider(dataProvider);
+        PrestoResolver resolver = session.getResolver();
+        PrestoTopic johndoe = session.getTopicById("i:john.doe");
+        List<? extends Object> values = resolve(resolver, johndoe);
+        Assert.assertEquals(2, values.size());
+        Assert.assertSame(values, resolve(resolver, johndoe));
+
+        // values are forgotten when the session changes data
+        session.clear();
+        Assert.assertNotSame(values, resolve(resolver, johndoe));
+
+        // and are not shared between sessions
+        JacksonIdentityMapDataProvider other = new JacksonIdentityMapDataProvider(dataProvider);
+        Assert.assertNotSame(resolve(resolver, johndoe), resolve(other.getResolver(), other.getTopicById("i:john.doe")));
+    }
+
+    @Test
+    public void testNotMemoizedForOtherVariableResolvers() {
+        PrestoResolver resolver = new PrestoResolver(dataProvider, schemaProvider, 10);
+        PrestoTopic johndoe = dataProvider.getTopicById("i:john.doe");
+        // variable resolvers that depend on where the topic is used
+        PrestoTopicFieldVariableResolver variableResolver = new PrestoTopicFieldVariableResolver(resolver) {
+        };
+        Assert.assertNotSame(resolve(resolver, johndoe, variableResolver), resolve(resolver, johndoe, variableResolver));
+    }
+
+    @Test
+    public void testMemoIsBounded() {
+        PrestoResolver resolver = new PrestoResolver(dataProvider, schemaProvider, 1);
+        PrestoTopic johndoe = dataProvider.getTopicById("i:john.doe");
+        PrestoTopic marypoppins = dataProvider.getTopicById("i:mary.poppins");
+        Assert.assertSame(resolve(resolver, johndoe), resolve(resolver, johndoe));
+        Assert.assertNotSame(resolve(resolver, marypoppins), resolve(resolver, marypoppins));
+    }
+
+}
@@ -0,0 +1,165 @@
+package net.ontopia.presto.spi.rules;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.ontopia.presto.spi.PrestoField;
+import net.ontopia.presto.spi.PrestoSchemaProvider;
+import net.ontopia.presto.spi.PrestoTopic;
+import net.ontopia.presto.spi.impl.pojo.PojoSchemaProvider;
+import net.ontopia.presto.spi.jackson.JacksonDataProvider;
+import net.ontopia.presto.spi.resolve.PrestoResolverPipelineTest;
+import net.ontopia.presto.spi.utils.AbstractHandler;
+import net.ontopia.presto.spi.utils.PrestoAttributes;
+import net.ontopia.presto.spi.utils.PrestoContext;
+import net.ontopia.presto.spi.utils.PrestoContextRules;
+import net.ontopia.presto.spi.utils.PrestoContextRules.FieldFlag;
+import net.ontopia.presto.spi.utils.PrestoContextRules.FieldRule;
+import net.ontopia.presto.spi.utils.Utils;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class CompiledRulesTest {
+
+    private static final AtomicInteger fieldValuesCount = new AtomicInteger();
+
+    public static class ConstantFieldRule extends BooleanFieldRule {
+        @Override
+        protected boolean getResult(FieldFlag flag, PrestoContextRules rules, PrestoField field, ObjectNode config) {
+            return config.path("value").booleanValue();
+        }
+    }
+
+    public static class CountingHasFieldValuesFieldRule extends HasFieldValuesFieldRule {
+        @Override
+        protected boolean getResult(FieldFlag flag, PrestoContextRules rules, PrestoField field, ObjectNode config) {
+            fieldValuesCount.incrementAndGet();
+            return super.getResult(flag, rules, field, config);
+        }
+    }
+
+    private PrestoSchemaProvider schemaProvider;
+    private JacksonDataProvider dataProvider;
+
+    @Before
+    public void setUp() {
+        this.schemaProvider = PojoSchemaProvider.loadSchemaProvider("resolve", "resolve.schema.json");
+        this.dataProvider = PrestoResolverPipelineTest.createDataProvider(schemaProvider);
+        fieldValuesCount.set(0);
+    }
+
+    private PrestoContextRules getRules(String topicId) {
+        PrestoTopic topic = dataProvider.getTopicById(topicId);
+        PrestoContext context = PrestoContext.create(dataProvider.getResolver(), topic);
+        return new PrestoContextRules(dataProvider, schemaProvider, context) {
+            @Override
+            public PrestoAttributes getAttributes() {
+                return null;
+            }
+            @Override
+            public PrestoContextRules getPrestoContextRules(PrestoContext context) {
+                return null;
+            }
+        };
+    }
+
+    private ObjectNode constant(boolean value) {
+        ObjectNode node = Utils.DEFAULT_OBJECT_MAPPER.createObjectNode();
+        node.put("class", ConstantFieldRule.class.getName());
+        node.put("value", value);
+        return node;
+    }
+
+    private ObjectNode hasInterests() {
+        ObjectNode node = Utils.DEFAULT_OBJECT_MAPPER.createObjectNode();
+        node.put("class", CountingHasFieldValuesFieldRule.class.getName());
+        node.put("field", "interests");
+        return node;
+    }
+
+    private Boolean evaluate(Class<? extends FieldRule> ruleClass, String topicId, JsonNode... handlers) {
+        ObjectNode config = Utils.DEFAULT_OBJECT_MAPPER.createObjectNode();
+        config.put("class", ruleClass.getName());
+        ArrayNode handlersNode = config.putArray("handlers");
+        for (JsonNode handler : handlers) {
+            handlersNode.add(handler);
+        }
+        FieldRule rule = AbstractHandler.getHandler(dataProvider, schemaProvider, FieldRule.class, config);
+        PrestoField field = schemaProvider.getTypeById("c:person").getFieldById("name");
+        return rule.getValue(FieldFlag.isReadOnlyField, getRules(topicId), field);
+    }
+
+    @Test
+    public void testFieldValuesRulesLast() {
+        ArrayNode handlers = Utils.DEFAULT_OBJECT_MAPPER.createArrayNode();
+        handlers.add(hasInterests());
+        handlers.add(constant(true));
+        handlers.add("net.ontopia.presto.spi.rules.HasFieldValuesFieldRule");
+        handlers.add(constant(false));
+
+        CompiledRules<FieldRule> rules = CompiledRules.getRules(schemaProvider, FieldRule.class, handlers);
+        Assert.assertSame(rules, CompiledRules.getRules(schemaProvider, FieldRule.class, handlers));
+
+        List<Class<?>> classes = new ArrayList<Class<?>>();
+        for (FieldRule handler : rules.getHandlers(dataProvider, schemaProvider)) {
+            classes.add(handler.getClass());
+        }
+        Assert.assertEquals(ConstantFieldRule.class, classes.get(0));
+        Assert.assertEquals(ConstantFieldRule.class, classes.get(1));
+        Assert.assertEquals(CountingHasFieldValuesFieldRule.class, classes.get(2));
+        Assert.assertEquals(HasFieldValuesFieldRule.class, classes.get(3));
+    }
+
+    @Test
+    public void testAndResults() {
+        // i:james.dean has interests, i:john.doe has none
+        Assert.assertTrue(evaluate(AndFieldRule.class, "i:james.dean", hasInterests(), constant(true)));
+        Assert.assertFalse(evaluate(AndFieldRule.class, "i:james.dean", hasInterests(), constant(false)));
+        Assert.assertFalse(evaluate(AndFieldRule.class, "i:john.doe", hasInterests(), constant(true)));
+        Assert.assertFalse(evaluate(AndFieldRule.class, "i:john.doe", hasInterests(), constant(false)));
+    }
+
+    @Test
+    public void testOrResults() {
+        Assert.assertTrue(evaluate(OrFieldRule.class, "i:james.dean", hasInterests(), constant(true)));
+        Assert.assertTrue(evaluate(OrFieldRule.class, "i:james.dean", hasInterests(), constant(false)));
+        Assert.assertTrue(evaluate(OrFieldRule.class, "i:john.doe", hasInterests(), constant(true)));
+        Assert.assertFalse(evaluate(OrFieldRule.class, "i:john.doe", hasInterests(), constant(false)));
+    }
+
+    @Test
+    public void testShortCircuitBeforeFieldValues() {
+        Assert.assertFalse(evaluate(AndFieldRule.class, "i:james.dean", hasInterests(), constant(false)));
+        Assert.assertTrue(evaluate(OrFieldRule.class, "i:james.dean", hasInterests(), constant(true)));
+        Assert.assertEquals(0, fieldValuesCount.get());
+
+        Assert.assertTrue(evaluate(AndFieldRule.class, "i:james.dean", hasInterests(), constant(true)));
+        Assert.assertEquals(1, fieldValuesCount.get());
+    }
+
+    @Test
+    public void testCompiledRulesCollectedWithSchema() throws Exception {
+        PrestoSchemaProvider other = PojoSchemaProvider.loadSchemaProvider("resolve", "resolve.schema.json");
+        ArrayNode handlers = Utils.DEFAULT_OBJECT_MAPPER.createArrayNode();
+        handlers.add(constant(true));
+        handlers.add("net.ontopia.presto.spi.rules.HasFieldValuesFieldRule");
+        CompiledRules.getRules(other, FieldRule.class, handlers).getHandlers(dataProvider, other);
+
+        WeakReference<PrestoSchemaProvider> ref = new WeakReference<PrestoSchemaProvider>(other);
+        other = null;
+        for (int i=0; i < 50 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertNull("Schema provider kept reachable by its compiled rules", ref.get());
+    }
+
+}
@@ -0,0 +1,125 @@
+package net.ontopia.presto.spi.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.ontopia.presto.spi.PrestoField;
+import net.ontopia.presto.spi.PrestoSchemaProvider;
+import net.ontopia.presto.spi.PrestoTopic;
+import net.ontopia.presto.spi.impl.pojo.PojoSchemaProvider;
+import net.ontopia.presto.spi.jackson.JacksonDataProvider;
+import net.ontopia.presto.spi.resolve.PrestoResolverPipelineTest;
+import net.ontopia.presto.spi.utils.PrestoContextRules.FieldFlag;
+import net.ontopia.presto.spi.utils.PrestoContextRules.FieldRule;
+import net.ontopia.presto.spi.utils.PrestoContextRules.FieldValueFlag;
+import net.ontopia.presto.spi.utils.PrestoContextRules.FieldValueRule;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+public class PrestoContextRulesTest {
+
+    private static final AtomicInteger count = new AtomicInteger();
+
+    public static class CountingRule extends AbstractHandler implements FieldRule, FieldValueRule {
+
+        @Override
+        public Boolean getValue(FieldFlag flag, PrestoContextRules rules, PrestoField field) {
+            count.incrementAndGet();
+            return getValue();
+        }
+
+        @Override
+        public Boolean getValue(FieldValueFlag flag, PrestoContextRules rules, PrestoField field, Object value) {
+            count.incrementAndGet();
+            return getValue();
+        }
+
+        private Boolean getValue() {
+            JsonNode value = getConfig().path("value");
+            return value.isBoolean() ? value.booleanValue() : null;
+        }
+    }
+
+    private PrestoSchemaProvider schemaProvider;
+    private JacksonDataProvider dataProvider;
+    private PrestoField nickname;
+
+    @Before
+    public void setUp() {
+        this.schemaProvider = PojoSchemaProvider.loadSchemaProvider("resolve", "resolve.schema.json");
+        this.dataProvider = PrestoResolverPipelineTest.createDataProvider(schemaProvider);
+        this.nickname = PrestoResolverPipelineTest.getField(schemaProvider, "c:person", "nickname");
+        count.set(0);
+    }
+
+    private PrestoContextRules createRules() {
+        PrestoTopic topic = dataProvider.getTopicById("i:john.doe");
+        PrestoContext context = PrestoContext.create(dataProvider.getResolver(), topic);
+        return new PrestoContextRules(dataProvider, schemaProvider, context) {
+            @Override
+            public PrestoAttributes getAttributes() {
+                return null;
+            }
+            @Override
+            public PrestoContextRules getPrestoContextRules(PrestoContext context) {
+                return null;
+            }
+        };
+    }
+
+    @Test
+    public void testFieldFlagMemoized() {
+        PrestoContextRules rules = createRules();
+        Assert.assertTrue(rules.isReadOnlyField(nickname));
+        Assert.assertTrue(rules.isReadOnlyField(nickname));
+        Assert.assertEquals(1, count.get());
+
+        // memo is per rules instance
+        Assert.assertTrue(createRules().isReadOnlyField(nickname));
+        Assert.assertEquals(2, count.get());
+    }
+
+    @Test
+    public void testNullFlagMemoizedAndDefaultApplied() {
+        PrestoContextRules rules = createRules();
+        Assert.assertTrue(rules.isSortedField(nickname, PrestoProjection.UNPAGED_ASC));
+        Assert.assertFalse(rules.isSortedField(nickname, null));
+        Assert.assertEquals(1, count.get());
+    }
+
+    @Test
+    public void testResolveSortedFieldServerPaged() {
+        PrestoContextRules rules = createRules();
+        Assert.assertTrue(rules.isResolveSortedField(nickname));
+        Assert.assertTrue(rules.isServerPagedField(nickname, PrestoProjection.UNPAGED_ASC));
+
+        PrestoField friends = PrestoResolverPipelineTest.getField(schemaProvider, "c:person", "friends");
+        Assert.assertFalse(rules.isResolveSortedField(friends));
+        Assert.assertFalse(rules.isServerPagedField(friends, null));
+    }
+
+    @Test
+    public void testFieldValueFlagMemoizedPerValue() {
+        PrestoContextRules rules = createRules();
+        Assert.assertFalse(rules.isRemovableFieldValue(nickname, "a"));
+        Assert.assertFalse(rules.isRemovableFieldValue(nickname, "a"));
+        Assert.assertEquals(1, count.get());
+
+        Assert.assertFalse(rules.isRemovableFieldValue(nickname, "b"));
+        Assert.assertEquals(2, count.get());
+
+        PrestoTopic topic = dataProvider.getTopicById("i:james.dean");
+        Assert.assertFalse(rules.isRemovableFieldValue(nickname, topic));
+        Assert.assertFalse(rules.isRemovableFieldValue(nickname, dataProvider.getTopicById("i:james.dean")));
+        Assert.assertEquals(3, count.get());
+
+        // other value types are not memoized
+        Assert.assertFalse(rules.isRemovableFieldValue(nickname, 1));
+        Assert.assertFalse(rules.isRemovableFieldValue(nickname, 1));
+        Assert.assertEquals(5, count.get());
+    }
+
+}
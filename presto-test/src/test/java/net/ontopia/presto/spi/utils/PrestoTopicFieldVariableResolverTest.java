@@ -0,0 +1,109 @@
+package net.ontopia.presto.spi.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.ontopia.presto.spi.PrestoField;
+import net.ontopia.presto.spi.PrestoSchemaProvider;
+import net.ontopia.presto.spi.PrestoTopic;
+import net.ontopia.presto.spi.impl.pojo.PojoSchemaProvider;
+import net.ontopia.presto.spi.jackson.CountingJacksonDataProvider;
+import net.ontopia.presto.spi.resolve.PrestoResolverPipelineTest;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PrestoTopicFieldVariableResolverTest {
+
+    private PrestoSchemaProvider schemaProvider;
+    private CountingJacksonDataProvider dataProvider;
+    private PrestoTopicFieldVariableResolver variableResolver;
+
+    @Before
+    public void setUp() {
+        this.schemaProvider = PojoSchemaProvider.loadSchemaProvider("resolve", "resolve.schema.json");
+        this.dataProvider = new CountingJacksonDataProvider(PrestoResolverPipelineTest.createDataProvider(schemaProvider)) {
+            @Override
+            protected boolean isStubField(PrestoField field) {
+                // same as "stubValues" : true on the field
+                return field.getId().equals("brewed-by");
+            }
+        };
+        this.variableResolver = new PrestoTopicFieldVariableResolver(dataProvider.getResolver());
+    }
+
+    private List<PrestoTopic> getTopics(String... topicIds) {
+        List<PrestoTopic> result = new ArrayList<PrestoTopic>();
+        for (String topicId : topicIds) {
+            result.add(dataProvider.getTopicById(topicId));
+        }
+        return result;
+    }
+
+    private static List<String> getIds(List<? extends Object> values) {
+        List<String> result = new ArrayList<String>();
+        for (Object value : values) {
+            result.add(((PrestoTopic)value).getId());
+        }
+        return result;
+    }
+
+    @Test
+    public void testBatchKeepsOrderAndMultiplicity() {
+        List<PrestoTopic> topics = getTopics("i:mary.poppins", "i:john.travolta", "i:john.doe");
+        List<Object> expected = new ArrayList<Object>();
+        for (PrestoTopic topic : topics) {
+            expected.addAll(variableResolver.getValues(topic, "friends"));
+        }
+        dataProvider.reset();
+        List<? extends Object> values = variableResolver.getValues(topics, "friends");
+        Assert.assertEquals(1, dataProvider.getCallCount());
+        Assert.assertEquals(Arrays.asList("i:john.travolta", "i:james.dean", "i:james.dean", "i:john.travolta", "i:mary.poppins"), getIds(values));
+        Assert.assertEquals(getIds(expected), getIds(values));
+    }
+
+    @Test
+    public void testBatchMixesStoredAndOtherValues() {
+        List<PrestoTopic> topics = getTopics("i:james.dean", "i:mary.poppins");
+        List<Object> values = new ArrayList<Object>(topics);
+        values.add(1, "not a topic");
+        List<? extends Object> result = variableResolver.getValues(values, "favorite-beer");
+        Assert.assertEquals(Arrays.asList("i:nogne-o-ipa", "i:nogne-o-ipa"), getIds(result));
+    }
+
+    @Test
+    public void testTwoHopPathFetchesOncePerHop() {
+        PrestoTopic johndoe = dataProvider.getTopicById("i:john.doe");
+        dataProvider.reset();
+
+        List<? extends Object> values = johndoe.getValues(PrestoResolverPipelineTest.getField(schemaProvider, "c:person", "friends-beers"));
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("i:nogne-o-ipa", "i:ringnes-pils")), new HashSet<String>(getIds(values)));
+
+        // one call for the friends, and one for their favorite beers
+        Assert.assertEquals(2, dataProvider.getCallCount());
+        for (String topicId : Arrays.asList("i:james.dean", "i:john.travolta", "i:mary.poppins", "i:nogne-o-ipa", "i:ringnes-pils")) {
+            Assert.assertEquals(topicId, 1, dataProvider.getFetchCount(topicId));
+        }
+    }
+
+    @Test
+    public void testBatchHonoursStubFields() {
+        PrestoTopic johndoe = dataProvider.getTopicById("i:john.doe");
+        dataProvider.reset();
+
+        List<? extends Object> values = johndoe.getValues(PrestoResolverPipelineTest.getField(schemaProvider, "c:person", "friends-breweries"));
+        Set<String> breweries = new HashSet<String>(getIds(values));
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("i:nogne-o", "i:ringnes")), breweries);
+
+        Assert.assertEquals(3, dataProvider.getCallCount());
+        for (String topicId : breweries) {
+            Assert.assertEquals(topicId, 0, dataProvider.getFetchCount(topicId));
+            Assert.assertEquals(topicId, 1, dataProvider.getStubFetchCount(topicId));
+        }
+    }
+
+}
@@ -12,18 +12,18 @@ import net.ontopia.presto.jaxrs.EditorResource;
 import net.ontopia.presto.jaxrs.Presto;
 import net.ontopia.presto.spi.PrestoSchemaProvider;
 import net.ontopia.presto.spi.impl.couchdb.CouchDataProvider;
+import net.ontopia.presto.spi.impl.couchdb.CouchDbConnectorRegistry;
 import net.ontopia.presto.spi.impl.pojo.PojoSchemaProvider;
 import net.ontopia.presto.spi.impl.riak.RiakDataProvider;
+import net.ontopia.presto.spi.jackson.CachingJacksonDataProvider;
 import net.ontopia.presto.spi.jackson.DataProviderIdentityStrategy;
 import net.ontopia.presto.spi.jackson.IdentityStrategy;
 import net.ontopia.presto.spi.jackson.JacksonBucketDataStrategy;
+import net.ontopia.presto.spi.jackson.JacksonDataProvider;
 import net.ontopia.presto.spi.jackson.JacksonDataStrategy;
+import net.ontopia.presto.spi.jackson.JacksonTopicCache;
 
 import org.ektorp.CouchDbConnector;
-import org.ektorp.CouchDbInstance;
-import org.ektorp.http.HttpClient;
-import org.ektorp.http.StdHttpClient;
-import org.ektorp.impl.StdCouchDbInstance;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -41,6 +41,9 @@ public class DemoEditorResource extends EditorResource {
     public static final String WRITE_BUCKET = BUCKET_WRITE;
 	
     public static final List<String> READ_BUCKETS = Arrays.asList(new String[] { BUCKET_WRITE, BUCKET_READ, BUCKET_INITIAL });
+
+    // topic documents shared across requests; all writes go through this application
+    private static final JacksonTopicCache topicCache = new JacksonTopicCache();
 	
     private Map<String,String> databases = new HashMap<String,String>();
 	
@@ -54,11 +57,11 @@ public class DemoEditorResource extends EditorResource {
         // schema stored in json format
         PojoSchemaProvider schemaProvider = PojoSchemaProvider.getSchemaProvider(databaseId, databaseId + ".presto.json");
         
-        // data stored in couchdb
-        final CouchDataProvider dataProvider = createCouchDbDataProvider(schemaProvider);
+        // data stored in couchdb, with topics cached across requests
+        final JacksonDataProvider dataProvider = new CachingJacksonDataProvider(createCouchDbDataProvider(schemaProvider), topicCache);
         
         // data stored in riak
-//        final RiakDataProvider dataProvider = createRiakDataProvider(schemaProvider);
+//        final JacksonDataProvider dataProvider = new CachingJacksonDataProvider(createRiakDataProvider(schemaProvider), topicCache);
 
         return new EditorResourcePresto(databaseId, getDatabaseName(databaseId), schemaProvider, dataProvider, getAttributes()) {
             @Override
@@ -72,9 +75,7 @@ public class DemoEditorResource extends EditorResource {
         return new CouchDataProvider(schemaProvider) {
             @Override
             protected CouchDbConnector createCouchDbConnector() {
-                HttpClient httpClient = new StdHttpClient.Builder().build();
-                CouchDbInstance dbInstance = new StdCouchDbInstance(httpClient);
-                return dbInstance.createConnector(DB_NAME, true);
+                return CouchDbConnectorRegistry.getConnector(DB_NAME);
             }
 
             @Override